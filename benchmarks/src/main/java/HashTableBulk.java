@@ -0,0 +1,18 @@
+import org.example.bench.BulkMap;
+
+import java.util.Map;
+
+// Lets the packaged benchmarks reach the parallel bulk operations of a HashTable they created through MapImpl
+public class HashTableBulk implements BulkMap {
+
+    private final HashTable<Integer, Integer> table;
+
+    public HashTableBulk(Map<Integer, Integer> table) {
+        this.table = (HashTable<Integer, Integer>) table;
+    }
+
+    @Override
+    public long sumValues(long parallelismThreshold) {
+        return table.reduceValuesToLong(parallelismThreshold, Integer::longValue, 0, Long::sum);
+    }
+}
@@ -0,0 +1,21 @@
+import org.example.bench.BoundedCache;
+
+// Lets the packaged benchmarks create a bounded HashTable, whose eviction policy type is not visible to them
+public class HashTableCache implements BoundedCache {
+
+    private final HashTable<Object, Object> table;
+
+    public HashTableCache(int maximumSize, String eviction) {
+        table = new HashTable<>(maximumSize, HashTable.Eviction.valueOf(eviction));
+    }
+
+    @Override
+    public Object get(Object key) {
+        return table.get(key);
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        table.put(key, value);
+    }
+}
@@ -0,0 +1,22 @@
+import org.example.bench.Counter;
+
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+// Lets the packaged benchmarks reach HashTable.upsert, which the Map interface does not have
+public class HashTableCounter implements Counter {
+
+    private static final Supplier<int[]> NEW_COUNT = () -> new int[1];
+    private static final Consumer<int[]> INCREMENT = count -> count[0]++;
+
+    private final HashTable<Object, int[]> table;
+
+    public HashTableCounter(int capacity, float loadFactor) {
+        table = new HashTable<>(capacity, loadFactor);
+    }
+
+    @Override
+    public int increment(Object key) {
+        return table.upsert(key, NEW_COUNT, INCREMENT)[0];
+    }
+}
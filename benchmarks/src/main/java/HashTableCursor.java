@@ -0,0 +1,28 @@
+import org.example.bench.ScanCursor;
+
+import java.util.Map;
+
+// Lets the packaged benchmarks walk a HashTable they created through MapImpl with its cursor
+public class HashTableCursor implements ScanCursor {
+
+    private final HashTable.Cursor<Integer, Integer> cursor;
+
+    public HashTableCursor(Map<Integer, Integer> table) {
+        cursor = ((HashTable<Integer, Integer>) table).cursor();
+    }
+
+    @Override
+    public boolean advance() {
+        return cursor.advance();
+    }
+
+    @Override
+    public Integer value() {
+        return cursor.value();
+    }
+
+    @Override
+    public void reset() {
+        cursor.reset();
+    }
+}
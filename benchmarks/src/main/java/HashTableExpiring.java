@@ -0,0 +1,22 @@
+import org.example.bench.ExpiringMap;
+
+import java.time.Duration;
+
+// Lets the packaged benchmarks drive the clock of a HashTable with per-entry TTL
+public class HashTableExpiring implements ExpiringMap {
+
+    private long now;
+    private final HashTable<Object, Object> table = new HashTable<>(16, null, null, () -> now);
+
+    @Override
+    public Object get(Object key, long now) {
+        this.now = now;
+        return table.get(key);
+    }
+
+    @Override
+    public void put(Object key, Object value, long ttlNanos, long now) {
+        this.now = now;
+        table.put(key, value, Duration.ofNanos(ttlNanos));
+    }
+}
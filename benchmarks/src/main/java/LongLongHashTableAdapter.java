@@ -0,0 +1,26 @@
+import org.example.bench.LongLongMap;
+
+// Lets the packaged benchmarks reach LongLongHashTable, which lives in the unnamed package
+public class LongLongHashTableAdapter implements LongLongMap {
+
+    private final LongLongHashTable table;
+
+    public LongLongHashTableAdapter(int capacity, float loadFactor) {
+        table = new LongLongHashTable(capacity, loadFactor, 0L);
+    }
+
+    @Override
+    public long get(long key) {
+        return table.get(key);
+    }
+
+    @Override
+    public long put(long key, long value) {
+        return table.put(key, value);
+    }
+
+    @Override
+    public long addTo(long key, long increment) {
+        return table.addTo(key, increment);
+    }
+}
@@ -0,0 +1,129 @@
+package org.example.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sweeps the batch size of the {@code HashTable} batch operations against a plain loop over the same keys.
+ * Every invocation handles {@link #KEYS_PER_INVOCATION} keys, split into batches of {@code batchSize}, so the
+ * scores are per key and comparable across batch sizes. A table far larger than the caches is where the
+ * overlapped home-slot reads of the batches should show.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BatchBenchmark {
+
+    private static final int KEYS_PER_INVOCATION = 512;
+
+    @Param({"10000", "1000000"})
+    public int size;
+
+    @Param({"1", "8", "64", "512"})
+    public int batchSize;
+
+    private BatchMap batch;
+    private Map<Object, Object> map;
+    private Object[][] present;
+    private Object[][] absent;
+    private Object[] out;
+    private int cursor;
+
+    @Setup
+    public void setUp() {
+        Keys keys = Keys.distinct(size * 2, 42);
+        batch = BatchMap.hashTable(16, 0.75f);
+        map = batch.map();
+        Integer[] stored = keys.slice(0, size);
+        batch.putAll(stored, stored);
+
+        present = chunks(stored);
+        absent = chunks(keys.slice(size, size * 2));
+        out = new Object[batchSize];
+    }
+
+//  The keys cut into batches, with the number of batches a multiple of the batches per invocation
+    private Object[][] chunks(Integer[] keys) {
+        int perInvocation = KEYS_PER_INVOCATION / batchSize;
+        int count = keys.length / KEYS_PER_INVOCATION * perInvocation;
+        Object[][] chunks = new Object[count][];
+        for (int i = 0; i < count; i++) {
+            int from = i * batchSize;
+            chunks[i] = Arrays.copyOfRange(keys, from, from + batchSize, Object[].class);
+        }
+        return chunks;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(KEYS_PER_INVOCATION)
+    public int getLoop() {
+        int found = 0;
+        for (int n = KEYS_PER_INVOCATION / batchSize; n > 0; n--) {
+            for (Object key : present[next()]) {
+                if (map.get(key) != null) {
+                    found++;
+                }
+            }
+        }
+        return found;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(KEYS_PER_INVOCATION)
+    public int getAll() {
+        int found = 0;
+        for (int n = KEYS_PER_INVOCATION / batchSize; n > 0; n--) {
+            found += batch.getAll(present[next()], out);
+        }
+        return found;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(KEYS_PER_INVOCATION)
+    public int putRemoveLoop() {
+        for (int n = KEYS_PER_INVOCATION / batchSize; n > 0; n--) {
+            Object[] keys = absent[next()];
+            for (Object key : keys) {
+                map.put(key, key);
+            }
+            for (Object key : keys) {
+                map.remove(key);
+            }
+        }
+        return map.size();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(KEYS_PER_INVOCATION)
+    public int putAllRemoveAll() {
+        for (int n = KEYS_PER_INVOCATION / batchSize; n > 0; n--) {
+            Object[] keys = absent[next()];
+            batch.putAll(keys, keys);
+            batch.removeAll(Arrays.asList(keys));
+        }
+        return map.size();
+    }
+
+    private int next() {
+        int i = cursor;
+        cursor = i + 1 == present.length ? 0 : i + 1;
+        return i;
+    }
+}
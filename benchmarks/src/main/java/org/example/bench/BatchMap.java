@@ -0,0 +1,30 @@
+package org.example.bench;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * The batch operations of {@code HashTable}, which the {@code Map} interface does not have; the implementation
+ * lives in the unnamed package as {@code HashTableBatch}. {@link #map()} is the same table seen as a {@code Map},
+ * for the per-key baseline.
+ */
+public interface BatchMap {
+
+    int getAll(Object[] keys, Object[] out);
+
+    void putAll(Object[] keys, Object[] values);
+
+    boolean removeAll(Collection<?> keys);
+
+    Map<Object, Object> map();
+
+    static BatchMap hashTable(int capacity, float loadFactor) {
+        try {
+            return (BatchMap) Class.forName("HashTableBatch")
+                    .getConstructor(int.class, float.class)
+                    .newInstance(capacity, loadFactor);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot instantiate HashTableBatch", e);
+        }
+    }
+}
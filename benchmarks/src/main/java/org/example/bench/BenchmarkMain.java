@@ -0,0 +1,44 @@
+package org.example.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Runs the JMH suite with the GC profiler attached, so every result carries allocation per operation
+ * ({@code gc.alloc.rate.norm}), and finishes with the {@link ProbeLengthReport} for the same parameters.
+ *
+ * <p>Accepts the usual JMH command line, e.g. {@code java -jar benchmarks.jar GetBenchmark -p size=100000}.
+ */
+public final class BenchmarkMain {
+
+    private BenchmarkMain() {
+    }
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException, IOException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        if (commandLine.shouldHelp() || commandLine.shouldList() || commandLine.shouldListProfilers()
+                || commandLine.shouldListResultFormats() || commandLine.shouldListWithParams()) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+
+        Options options = new OptionsBuilder()
+                .parent(commandLine)
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+
+        Collection<String> sizes = commandLine.getParameter("size").orElse(List.of("1000", "100000", "1000000"));
+        Collection<String> loadFactors = commandLine.getParameter("loadFactor").orElse(List.of("0.5", "0.75", "0.9"));
+        ProbeLengthReport.print(sizes, loadFactors, System.out);
+    }
+}
@@ -0,0 +1,131 @@
+package org.example.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What the value index of a bidirectional {@code HashTable} costs and buys. {@code containsValue} and
+ * {@code inverseGet} look values up, by scanning in {@code PLAIN} and {@code HASH_MAP}, the latter through
+ * {@code containsValue} and a search for the key; {@code get} and {@code churn} (a remove and a put) show what
+ * keeping the index costs the other operations. {@code build} fills a table from empty, and its
+ * {@code gc.alloc.rate.norm} under {@code -prof gc} is the memory the index adds.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BidirectionalBenchmark {
+
+    public enum Variant { PLAIN, BIDIRECTIONAL, HASH_MAP }
+
+    @Param({"PLAIN", "BIDIRECTIONAL", "HASH_MAP"})
+    public Variant variant;
+
+    @Param({"1000", "100000"})
+    public int size;
+
+    private Integer[] keys;
+    private Integer[] values;
+    private Map<Integer, Integer> map;
+    private Map<Integer, Integer> inverse;
+    private int next;
+
+    @Setup
+    public void setUp() throws ReflectiveOperationException {
+        keys = new Integer[size];
+        values = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = i;
+            values[i] = size + i * 7;
+        }
+        map = create();
+        for (int i = 0; i < size; i++) {
+            map.put(keys[i], values[i]);
+        }
+        if (variant == Variant.BIDIRECTIONAL) {
+            inverse = invoke(map, "inverse");
+        }
+    }
+
+    private Map<Integer, Integer> create() throws ReflectiveOperationException {
+        switch (variant) {
+            case PLAIN:
+                return MapImpl.HASH_TABLE.create(16, 0.75f);
+            case BIDIRECTIONAL:
+                return invoke(null, "bidirectional");
+            default:
+                return new HashMap<>();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<Integer, Integer> invoke(Map<Integer, Integer> target, String method)
+            throws ReflectiveOperationException {
+        Class<?> table = Class.forName("HashTable");
+        if (target == null) {
+            return (Map<Integer, Integer>) table.getMethod(method, int.class, float.class).invoke(null, 16, 0.75f);
+        }
+        return (Map<Integer, Integer>) table.getMethod(method).invoke(target);
+    }
+
+    private int nextIndex() {
+        int index = next;
+        next = next + 1 == size ? 0 : next + 1;
+        return index;
+    }
+
+    @Benchmark
+    public boolean containsValue() {
+        return map.containsValue(values[nextIndex()]);
+    }
+
+    @Benchmark
+    public Integer inverseGet() {
+        Integer value = values[nextIndex()];
+        if (inverse != null) {
+            return inverse.get(value);
+        }
+        for (Map.Entry<Integer, Integer> entry : map.entrySet()) {
+            if (entry.getValue().equals(value)) {
+                return entry.getKey();
+            }
+        }
+        return null;
+    }
+
+    @Benchmark
+    public Integer get() {
+        return map.get(keys[nextIndex()]);
+    }
+
+    @Benchmark
+    public Integer churn() {
+        int index = nextIndex();
+        map.remove(keys[index]);
+        return map.put(keys[index], values[index]);
+    }
+
+    @Benchmark
+    public Map<Integer, Integer> build() throws ReflectiveOperationException {
+        Map<Integer, Integer> built = create();
+        for (int i = 0; i < size; i++) {
+            built.put(keys[i], values[i]);
+        }
+        return built;
+    }
+}
@@ -0,0 +1,45 @@
+package org.example.bench;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A look-aside cache of bounded size: a bounded {@code HashTable}, whose implementation lives in the unnamed
+ * package as {@code HashTableCache}, or an access-ordered {@code LinkedHashMap} as the LRU baseline.
+ */
+public interface BoundedCache {
+
+    Object get(Object key);
+
+    void put(Object key, Object value);
+
+    static BoundedCache hashTable(int maximumSize, String eviction) {
+        try {
+            return (BoundedCache) Class.forName("HashTableCache")
+                    .getConstructor(int.class, String.class)
+                    .newInstance(maximumSize, eviction);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot instantiate HashTableCache", e);
+        }
+    }
+
+    static BoundedCache lru(int maximumSize) {
+        Map<Object, Object> map = new LinkedHashMap<>(maximumSize * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, Object> eldest) {
+                return size() > maximumSize;
+            }
+        };
+        return new BoundedCache() {
+            @Override
+            public Object get(Object key) {
+                return map.get(key);
+            }
+
+            @Override
+            public void put(Object key, Object value) {
+                map.put(key, value);
+            }
+        };
+    }
+}
@@ -0,0 +1,22 @@
+package org.example.bench;
+
+import java.util.Map;
+
+/**
+ * The parallel bulk operations of {@code HashTable}, which the {@code Map} interface does not have;
+ * the implementation lives in the unnamed package as {@code HashTableBulk}.
+ */
+public interface BulkMap {
+
+    long sumValues(long parallelismThreshold);
+
+    static BulkMap of(Map<Integer, Integer> hashTable) {
+        try {
+            return (BulkMap) Class.forName("HashTableBulk")
+                    .getConstructor(Map.class)
+                    .newInstance(hashTable);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot instantiate HashTableBulk", e);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package org.example.bench;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays a Zipfian trace against a look-aside cache: get, and put on a miss. Compares the bounded
+ * {@code HashTable} under CLOCK and TinyLFU with an LRU {@code LinkedHashMap}. The {@code hits} and {@code misses}
+ * counters give the hit ratio; the score is the throughput of the whole get-or-load step.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CacheBenchmark {
+
+    private static final int TRACE_LENGTH = 1 << 21;
+    private static final int UNIVERSE = 1 << 20;
+
+    @Param({"CLOCK", "TINY_LFU", "LRU"})
+    public String policy;
+
+    @Param({"1000", "100000"})
+    public int maximumSize;
+
+    @Param({"0.8", "0.99"})
+    public double skew;
+
+    private BoundedCache cache;
+    private Integer[] trace;
+    private int cursor;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Ratio {
+        public long hits;
+        public long misses;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            hits = 0;
+            misses = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        trace = Zipf.trace(TRACE_LENGTH, UNIVERSE, skew, 42);
+        cache = policy.equals("LRU") ? BoundedCache.lru(maximumSize) : BoundedCache.hashTable(maximumSize, policy);
+    }
+
+    @Benchmark
+    public Object getOrLoad(Ratio ratio) {
+        Integer key = trace[cursor];
+        cursor = (cursor + 1) & (TRACE_LENGTH - 1);
+        Object value = cache.get(key);
+        if (value == null) {
+            ratio.misses++;
+            cache.put(key, key);
+        } else {
+            ratio.hits++;
+        }
+        return value;
+    }
+}
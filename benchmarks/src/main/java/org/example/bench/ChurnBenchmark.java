@@ -0,0 +1,43 @@
+package org.example.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remove-heavy workload: every operation removes the oldest key and inserts a new one,
+ * so the map stays at {@code size} entries while its slots keep turning over.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ChurnBenchmark {
+
+    private int cursor;
+
+    @Benchmark
+    public Integer removeThenPut(MapState state) {
+        int size = state.size;
+        int i = cursor;
+        cursor = i + 1 == 2 * size ? 0 : i + 1;
+
+        state.map.remove(key(state, i));
+        Integer added = key(state, i < size ? i + size : i - size);
+        return state.map.put(added, added);
+    }
+
+    private static Integer key(MapState state, int i) {
+        return i < state.size ? state.keys[i] : state.missingKeys[i - state.size];
+    }
+}
@@ -0,0 +1,48 @@
+package org.example.bench;
+
+import java.util.Objects;
+
+/**
+ * A composite key shaped like our session keys: equal keys share a long tenant and session prefix and differ
+ * only at the end, so {@code equals} walks most of two strings before it can answer, and {@code hashCode}
+ * is recomputed on every call like a record's.
+ */
+public final class CompositeKey {
+
+    private static final String PREFIX = "session/eu-west-1/customer-portal/authenticated/";
+
+    private final String tenant;
+    private final String session;
+    private final long sequence;
+
+    public CompositeKey(String tenant, long id) {
+        this.tenant = tenant;
+        this.session = PREFIX + Long.toHexString(id);
+        this.sequence = id & 0xFF;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof CompositeKey)) return false;
+        CompositeKey other = (CompositeKey) o;
+        return sequence == other.sequence && tenant.equals(other.tenant) && session.equals(other.session);
+    }
+
+    @Override
+    public int hashCode() {
+        int h = 17;
+        for (int i = 0; i < tenant.length(); i++) {
+            h = 31 * h + tenant.charAt(i);
+        }
+        for (int i = 0; i < session.length(); i++) {
+            h = 31 * h + session.charAt(i);
+        }
+        return 31 * h + Long.hashCode(sequence);
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toString(tenant) + ':' + session + ':' + sequence;
+    }
+}
@@ -0,0 +1,50 @@
+package org.example.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counting-style updates of keys that are already present.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ComputeBenchmark {
+
+    private static final Integer ONE = 1;
+
+    private int cursor;
+
+    @Benchmark
+    public Integer merge(MapState state) {
+        return state.map.merge(state.keys[next(state.size)], ONE, Integer::sum);
+    }
+
+    @Benchmark
+    public Integer compute(MapState state) {
+        return state.map.compute(state.keys[next(state.size)], (key, value) -> value == null ? 1 : value + 1);
+    }
+
+    @Benchmark
+    public Integer computeIfAbsent(MapState state) {
+        return state.map.computeIfAbsent(state.keys[next(state.size)], key -> key);
+    }
+
+    private int next(int bound) {
+        int i = cursor;
+        cursor = i + 1 == bound ? 0 : i + 1;
+        return i;
+    }
+}
@@ -0,0 +1,98 @@
+package org.example.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shared-map workloads for the thread-safe implementations. Runs on every core by default;
+ * compare {@code -t 1}, {@code -t 2}, ... to see how read throughput scales.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(Threads.MAX)
+public class ConcurrentBenchmark {
+
+    private static final Integer ONE = 1;
+
+    @State(Scope.Benchmark)
+    public static class SharedMap {
+
+        @Param({"CONCURRENT_HASH_TABLE", "NON_BLOCKING_HASH_TABLE", "CONCURRENT_HASH_MAP", "JDK_HASHTABLE"})
+        public MapImpl impl;
+
+        @Param({"1000", "1000000"})
+        public int size;
+
+        public Map<Integer, Integer> map;
+        public Integer[] keys;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            keys = Keys.distinct(size, 42).slice(0, size);
+            map = impl.create(16, 0.75f);
+            for (Integer key : keys) {
+                map.put(key, key);
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+
+        @Setup(Level.Trial)
+        public void setUp(SharedMap shared) {
+            next = ThreadLocalRandom.current().nextInt(shared.size);
+        }
+
+        int next(int bound) {
+            int i = next;
+            next = i + 1 == bound ? 0 : i + 1;
+            return i;
+        }
+    }
+
+    @Benchmark
+    public Integer get(SharedMap shared, Cursor cursor) {
+        return shared.map.get(shared.keys[cursor.next(shared.size)]);
+    }
+
+    @Benchmark
+    public Integer merge(SharedMap shared, Cursor cursor) {
+        return shared.map.merge(shared.keys[cursor.next(shared.size)], ONE, Integer::sum);
+    }
+
+//  Every thread merges into the same few keys, as event-ingest counters do
+    @Benchmark
+    public Integer mergeHotKeys(SharedMap shared, Cursor cursor) {
+        return shared.map.merge(shared.keys[cursor.next(shared.size) & 7], ONE, Integer::sum);
+    }
+
+//  Nine reads for every merge
+    @Benchmark
+    public Integer mixed(SharedMap shared, Cursor cursor) {
+        int i = cursor.next(shared.size);
+        if (i % 10 == 0) {
+            return shared.map.merge(shared.keys[i], ONE, Integer::sum);
+        }
+        return shared.map.get(shared.keys[i]);
+    }
+}
@@ -0,0 +1,20 @@
+package org.example.bench;
+
+/**
+ * A per-key counter backed by {@code HashTable.upsert}, which the {@code Map} interface does not have;
+ * the implementation lives in the unnamed package as {@code HashTableCounter}.
+ */
+public interface Counter {
+
+    int increment(Object key);
+
+    static Counter hashTable(int capacity, float loadFactor) {
+        try {
+            return (Counter) Class.forName("HashTableCounter")
+                    .getConstructor(int.class, float.class)
+                    .newInstance(capacity, loadFactor);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot instantiate HashTableCounter", e);
+        }
+    }
+}
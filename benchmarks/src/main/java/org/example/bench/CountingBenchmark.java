@@ -0,0 +1,70 @@
+package org.example.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts occurrences of keys the way our counting workloads do: with {@code merge(key, 1, Integer::sum)},
+ * which boxes a new count on every call, and with {@code HashTable.upsert}, which bumps a mutable count in place.
+ * The first pass over the keys inserts them, later passes find them present.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CountingBenchmark {
+
+    private static final Integer ONE = 1;
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private Integer[] keys;
+    private Map<Integer, Integer> hashTable;
+    private Map<Integer, Integer> hashMap;
+    private Counter counter;
+    private int cursor;
+
+    @Setup
+    public void setUp() {
+        keys = Keys.distinct(size, 42).slice(0, size);
+        hashTable = MapImpl.HASH_TABLE.create(16, 0.75f);
+        hashMap = MapImpl.HASH_MAP.create(16, 0.75f);
+        counter = Counter.hashTable(16, 0.75f);
+    }
+
+    @Benchmark
+    public Integer mergeHashTable() {
+        return hashTable.merge(next(), ONE, Integer::sum);
+    }
+
+    @Benchmark
+    public int upsertHashTable() {
+        return counter.increment(next());
+    }
+
+    @Benchmark
+    public Integer mergeHashMap() {
+        return hashMap.merge(next(), ONE, Integer::sum);
+    }
+
+    private Integer next() {
+        int i = cursor;
+        cursor = i + 1 == size ? 0 : i + 1;
+        return keys[i];
+    }
+}
@@ -0,0 +1,90 @@
+package org.example.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookups and growth with {@link CompositeKey}s, whose {@code hashCode} and {@code equals} are expensive.
+ * Tables that keep each entry's hash reject other keys on a probe path without calling {@code equals}
+ * and grow without calling {@code hashCode} again.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ExpensiveKeyBenchmark {
+
+    @Param({"HASH_TABLE", "ROBIN_HOOD_HASH_TABLE", "SWISS_HASH_TABLE", "CUCKOO_HASH_TABLE", "HASH_MAP"})
+    public MapImpl impl;
+
+    @Param({"100000"})
+    public int size;
+
+    @Param({"0.9"})
+    public float loadFactor;
+
+    private CompositeKey[] keys;
+    private CompositeKey[] missingKeys;
+    private Map<CompositeKey, Integer> map;
+    private Map<CompositeKey, Integer> growing;
+    private int hit;
+    private int miss;
+    private int grown;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        keys = new CompositeKey[size];
+        missingKeys = new CompositeKey[size];
+        for (int i = 0; i < size; i++) {
+            String tenant = "tenant-" + random.nextInt(16);
+            keys[i] = new CompositeKey(tenant, 2L * i);
+            missingKeys[i] = new CompositeKey(tenant, 2L * i + 1);
+        }
+
+        map = impl.create(16, loadFactor);
+        for (int i = 0; i < size; i++) {
+            map.put(keys[i], i);
+        }
+        growing = impl.create(16, loadFactor);
+    }
+
+    @Benchmark
+    public Integer getHit() {
+        CompositeKey key = keys[hit];
+        hit = hit + 1 == size ? 0 : hit + 1;
+        return map.get(key);
+    }
+
+    @Benchmark
+    public Integer getMiss() {
+        CompositeKey key = missingKeys[miss];
+        miss = miss + 1 == size ? 0 : miss + 1;
+        return map.get(key);
+    }
+
+    @Benchmark
+    public Integer putGrowing() {
+        if (grown == size) {
+            growing = impl.create(16, loadFactor);
+            grown = 0;
+        }
+        CompositeKey key = keys[grown];
+        return growing.put(key, grown++);
+    }
+}
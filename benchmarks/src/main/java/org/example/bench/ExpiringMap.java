@@ -0,0 +1,56 @@
+package org.example.bench;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A map whose entries expire after a time to live, on a clock the caller drives: a {@code HashTable} with
+ * per-entry TTL, whose implementation lives in the unnamed package as {@code HashTableExpiring}, or a
+ * {@code HashMap} of timestamped values that is purged by a full scan once per scan interval.
+ */
+public interface ExpiringMap {
+
+    Object get(Object key, long now);
+
+    void put(Object key, Object value, long ttlNanos, long now);
+
+    static ExpiringMap hashTable() {
+        try {
+            return (ExpiringMap) Class.forName("HashTableExpiring").getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot instantiate HashTableExpiring", e);
+        }
+    }
+
+    static ExpiringMap scanned(long scanIntervalNanos) {
+        return new ExpiringMap() {
+            private final Map<Object, Timed> map = new HashMap<>();
+            private long nextScan = scanIntervalNanos;
+
+            @Override
+            public Object get(Object key, long now) {
+                Timed timed = map.get(key);
+                return timed == null || timed.deadline <= now ? null : timed.value;
+            }
+
+            @Override
+            public void put(Object key, Object value, long ttlNanos, long now) {
+                if (now >= nextScan) {
+                    map.values().removeIf(timed -> timed.deadline <= now);
+                    nextScan = now + scanIntervalNanos;
+                }
+                map.put(key, new Timed(value, now + ttlNanos));
+            }
+        };
+    }
+
+    final class Timed {
+        final Object value;
+        final long deadline;
+
+        Timed(Object value, long deadline) {
+            this.value = value;
+            this.deadline = deadline;
+        }
+    }
+}
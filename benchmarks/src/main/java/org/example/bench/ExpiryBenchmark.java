@@ -0,0 +1,70 @@
+package org.example.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A session store in steady state: every operation opens a session with a one-minute TTL and reads one opened
+ * half a minute earlier, on a simulated clock that makes about {@code sessions} of them live at a time.
+ * Compares reclamation through the timing wheel of {@code HashTable} with a {@code HashMap} scanned once per
+ * simulated second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ExpiryBenchmark {
+
+    private static final long TTL = TimeUnit.MINUTES.toNanos(1);
+    private static final int KEYS = 1 << 22;
+
+    @Param({"wheel", "scan"})
+    public String reclamation;
+
+    @Param({"10000", "1000000"})
+    public int sessions;
+
+    private ExpiringMap map;
+    private Integer[] keys;
+    private long step;
+    private long now;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        map = reclamation.equals("wheel") ? ExpiringMap.hashTable() : ExpiringMap.scanned(TimeUnit.SECONDS.toNanos(1));
+        keys = new Integer[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            keys[i] = i;
+        }
+        step = TTL / sessions;
+        for (int i = 0; i < sessions; i++) {
+            open();
+        }
+    }
+
+    @Benchmark
+    public Object openAndRead() {
+        open();
+        return map.get(keys[(next - sessions / 2) & (KEYS - 1)], now);
+    }
+
+    private void open() {
+        now += step;
+        map.put(keys[next], Boolean.TRUE, TTL, now);
+        next = (next + 1) & (KEYS - 1);
+    }
+}
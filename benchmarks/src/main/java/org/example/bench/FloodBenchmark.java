@@ -0,0 +1,77 @@
+package org.example.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds a map of {@code size} string keys and looks every key up once. {@code COLLIDING} keys are made of
+ * "Aa" and "BB" blocks and all share one {@code hashCode}, as in a hash-flooding attack; {@code RANDOM} keys
+ * have the same length. {@code HASH_TABLE} notices the long probes and switches strings to SipHash, and
+ * {@code HASH_MAP} turns the colliding bin into a tree, so both stay within a small factor of their random-key
+ * time, while a table without a defence such as {@code SWISS_HASH_TABLE} goes quadratic.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FloodBenchmark {
+
+    public enum KeySet { RANDOM, COLLIDING }
+
+    @Param({"HASH_TABLE", "SWISS_HASH_TABLE", "HASH_MAP"})
+    public MapImpl impl;
+
+    @Param({"RANDOM", "COLLIDING"})
+    public KeySet keySet;
+
+    @Param({"1024", "16384"})
+    public int size;
+
+    private String[] keys;
+
+    @Setup
+    public void setUp() {
+        int bits = 32 - Integer.numberOfLeadingZeros(size - 1);
+        Random random = new Random(42);
+        keys = new String[size];
+        for (int i = 0; i < size; i++) {
+            StringBuilder key = new StringBuilder(2 * bits);
+            for (int bit = 0; bit < bits; bit++) {
+                if (keySet == KeySet.COLLIDING) {
+                    key.append((i >>> bit & 1) == 0 ? "Aa" : "BB");
+                } else {
+                    key.append((char) ('a' + random.nextInt(26))).append((char) ('a' + random.nextInt(26)));
+                }
+            }
+            keys[i] = key.toString();
+        }
+    }
+
+    @Benchmark
+    public long buildAndLookUp() {
+        Map<String, Integer> map = impl.create(16, 0.75f);
+        for (int i = 0; i < keys.length; i++) {
+            map.put(keys[i], i);
+        }
+        long sum = 0;
+        for (String key : keys) {
+            sum += map.get(key);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,40 @@
+package org.example.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GetBenchmark {
+
+    private int cursor;
+
+    @Benchmark
+    public Integer getHit(MapState state) {
+        return state.map.get(state.keys[next(state.size)]);
+    }
+
+    @Benchmark
+    public Integer getMiss(MapState state) {
+        return state.map.get(state.missingKeys[next(state.size)]);
+    }
+
+    private int next(int bound) {
+        int i = cursor;
+        cursor = i + 1 == bound ? 0 : i + 1;
+        return i;
+    }
+}
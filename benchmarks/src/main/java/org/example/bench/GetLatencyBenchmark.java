@@ -0,0 +1,70 @@
+package org.example.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Samples the latency of single lookups in a full map of the open-addressing engines. Probe chains show up in
+ * the high percentiles, where cuckoo hashing, which inspects at most two buckets, should stay flat.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class GetLatencyBenchmark {
+
+    @Param({"HASH_TABLE", "ROBIN_HOOD_HASH_TABLE", "SWISS_HASH_TABLE", "CUCKOO_HASH_TABLE"})
+    public MapImpl impl;
+
+    @Param({"1000000"})
+    public int size;
+
+    @Param({"0.9"})
+    public float loadFactor;
+
+    private Map<Integer, Integer> map;
+    private Integer[] keys;
+    private Integer[] missingKeys;
+    private int hit;
+    private int miss;
+
+    @Setup
+    public void setUp() {
+        Keys generated = Keys.distinct(2 * size, 42);
+        keys = generated.slice(0, size);
+        missingKeys = generated.slice(size, 2 * size);
+
+        map = impl.create(16, loadFactor);
+        for (Integer key : keys) {
+            map.put(key, key);
+        }
+    }
+
+    @Benchmark
+    public Integer getHit() {
+        Integer key = keys[hit];
+        hit = hit + 1 == keys.length ? 0 : hit + 1;
+        return map.get(key);
+    }
+
+    @Benchmark
+    public Integer getMiss() {
+        Integer key = missingKeys[miss];
+        miss = miss + 1 == missingKeys.length ? 0 : miss + 1;
+        return map.get(key);
+    }
+}
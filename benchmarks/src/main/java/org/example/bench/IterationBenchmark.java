@@ -0,0 +1,76 @@
+package org.example.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One operation is a full pass over the map, so the score is passes per second. {@code cursor} reuses one
+ * {@code HashTable.Cursor} for every pass and only runs for {@code HASH_TABLE}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IterationBenchmark {
+
+    @Benchmark
+    public long entrySet(MapState state) {
+        long sum = 0;
+        for (Map.Entry<Integer, Integer> entry : state.map.entrySet()) {
+            sum += entry.getValue();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long keySet(MapState state) {
+        long sum = 0;
+        for (Integer key : state.map.keySet()) {
+            sum += key;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long forEach(MapState state) {
+        long[] sum = new long[1];
+        state.map.forEach((key, value) -> sum[0] += value);
+        return sum[0];
+    }
+
+    @State(Scope.Thread)
+    public static class CursorState {
+        ScanCursor cursor;
+
+        @Setup
+        public void setUp(MapState state) {
+            cursor = state.impl == MapImpl.HASH_TABLE ? ScanCursor.of(state.map) : null;
+        }
+    }
+
+    @Benchmark
+    public long cursor(CursorState state) {
+        ScanCursor cursor = state.cursor;
+        if (cursor == null) {
+            return 0;
+        }
+        long sum = 0;
+        cursor.reset();
+        while (cursor.advance()) {
+            sum += cursor.value();
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,36 @@
+package org.example.bench;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Pseudo-random distinct boxed integer keys, reproducible from a seed.
+ */
+public final class Keys {
+
+    private final Integer[] keys;
+
+    private Keys(Integer[] keys) {
+        this.keys = keys;
+    }
+
+    public static Keys distinct(int count, long seed) {
+        Random random = new Random(seed);
+        Set<Integer> seen = new HashSet<>(count * 2);
+        Integer[] keys = new Integer[count];
+        int i = 0;
+        while (i < count) {
+            int key = random.nextInt();
+            if (seen.add(key)) {
+                keys[i++] = key;
+            }
+        }
+        return new Keys(keys);
+    }
+
+    public Integer[] slice(int from, int to) {
+        return Arrays.copyOfRange(keys, from, to);
+    }
+}
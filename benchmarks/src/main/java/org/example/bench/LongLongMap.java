@@ -0,0 +1,47 @@
+package org.example.bench;
+
+import java.util.Map;
+
+/**
+ * The long-to-long operations the primitive benchmark drives, so boxed maps and the unboxed
+ * {@code LongLongHashTable} (unnamed package, reached through {@code LongLongHashTableAdapter}) run the same code.
+ */
+public interface LongLongMap {
+
+    long get(long key);
+
+    long put(long key, long value);
+
+    long addTo(long key, long increment);
+
+    static LongLongMap unboxed(int capacity, float loadFactor) {
+        try {
+            return (LongLongMap) Class.forName("LongLongHashTableAdapter")
+                    .getConstructor(int.class, float.class)
+                    .newInstance(capacity, loadFactor);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot instantiate LongLongHashTableAdapter", e);
+        }
+    }
+
+    static LongLongMap boxed(Map<Long, Long> map) {
+        return new LongLongMap() {
+            @Override
+            public long get(long key) {
+                Long value = map.get(key);
+                return value == null ? 0 : value;
+            }
+
+            @Override
+            public long put(long key, long value) {
+                Long old = map.put(key, value);
+                return old == null ? 0 : old;
+            }
+
+            @Override
+            public long addTo(long key, long increment) {
+                return map.merge(key, increment, Long::sum);
+            }
+        };
+    }
+}
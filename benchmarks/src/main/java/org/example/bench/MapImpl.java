@@ -0,0 +1,120 @@
+package org.example.bench;
+
+import java.lang.reflect.Constructor;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Map implementations compared by the benchmarks.
+ *
+ * <p>{@code HashTable} lives in the unnamed package, which JMH-generated code cannot import,
+ * so it and its siblings are instantiated reflectively and driven through the {@link Map} interface like the rest.
+ * {@code INCREMENTAL_HASH_TABLE} is {@code HashTable} with incremental rehashing switched on.
+ * {@code OFF_HEAP_HASH_TABLE} stores {@code Integer} keys and values through {@code Codec.INTEGER}.
+ */
+@SuppressWarnings("unchecked")
+public enum MapImpl {
+
+    HASH_TABLE {
+        @Override
+        public <K, V> Map<K, V> create(int capacity, float loadFactor) {
+            return newInstance("HashTable", capacity, loadFactor);
+        }
+    },
+
+    INCREMENTAL_HASH_TABLE {
+        @Override
+        public <K, V> Map<K, V> create(int capacity, float loadFactor) {
+            try {
+                Constructor<?> constructor = Class.forName("HashTable")
+                        .getConstructor(int.class, float.class, boolean.class);
+                return (Map<K, V>) constructor.newInstance(capacity, loadFactor, true);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Cannot instantiate HashTable", e);
+            }
+        }
+    },
+
+    ROBIN_HOOD_HASH_TABLE {
+        @Override
+        public <K, V> Map<K, V> create(int capacity, float loadFactor) {
+            return newInstance("RobinHoodHashTable", capacity, loadFactor);
+        }
+    },
+
+    SWISS_HASH_TABLE {
+        @Override
+        public <K, V> Map<K, V> create(int capacity, float loadFactor) {
+            return newInstance("SwissHashTable", capacity, loadFactor);
+        }
+    },
+
+    CUCKOO_HASH_TABLE {
+        @Override
+        public <K, V> Map<K, V> create(int capacity, float loadFactor) {
+            return newInstance("CuckooHashTable", capacity, loadFactor);
+        }
+    },
+
+    OFF_HEAP_HASH_TABLE {
+        @Override
+        public <K, V> Map<K, V> create(int capacity, float loadFactor) {
+            try {
+                Object codec = Class.forName("Codec").getField("INTEGER").get(null);
+                Constructor<?> constructor = Class.forName("OffHeapHashTable")
+                        .getConstructor(Class.forName("Codec"), Class.forName("Codec"), int.class, float.class);
+                return (Map<K, V>) constructor.newInstance(codec, codec, capacity, loadFactor);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Cannot instantiate OffHeapHashTable", e);
+            }
+        }
+    },
+
+    CONCURRENT_HASH_TABLE {
+        @Override
+        public <K, V> Map<K, V> create(int capacity, float loadFactor) {
+            return newInstance("ConcurrentHashTable", capacity, loadFactor);
+        }
+    },
+
+    NON_BLOCKING_HASH_TABLE {
+        @Override
+        public <K, V> Map<K, V> create(int capacity, float loadFactor) {
+            return newInstance("NonBlockingHashTable", capacity, loadFactor);
+        }
+    },
+
+    HASH_MAP {
+        @Override
+        public <K, V> Map<K, V> create(int capacity, float loadFactor) {
+            return new HashMap<>(capacity, loadFactor);
+        }
+    },
+
+    JDK_HASHTABLE {
+        @Override
+        public <K, V> Map<K, V> create(int capacity, float loadFactor) {
+            return new Hashtable<>(capacity, loadFactor);
+        }
+    },
+
+    CONCURRENT_HASH_MAP {
+        @Override
+        public <K, V> Map<K, V> create(int capacity, float loadFactor) {
+            return new ConcurrentHashMap<>(capacity, loadFactor);
+        }
+    };
+
+    public abstract <K, V> Map<K, V> create(int capacity, float loadFactor);
+
+    static <K, V> Map<K, V> newInstance(String className, int capacity, float loadFactor) {
+        try {
+            Constructor<?> constructor = Class.forName(className).getConstructor(int.class, float.class);
+            return (Map<K, V>) constructor.newInstance(capacity, loadFactor);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot instantiate " + className, e);
+        }
+    }
+}
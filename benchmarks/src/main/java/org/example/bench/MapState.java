@@ -0,0 +1,42 @@
+package org.example.bench;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Map;
+
+/**
+ * A map of {@code size} entries built with the given load factor, plus disjoint hit and miss key sets.
+ * Keys are boxed up front so the measured loops do not allocate on their own.
+ */
+@State(Scope.Benchmark)
+public class MapState {
+
+    @Param({"HASH_TABLE", "ROBIN_HOOD_HASH_TABLE", "SWISS_HASH_TABLE", "CUCKOO_HASH_TABLE", "OFF_HEAP_HASH_TABLE", "HASH_MAP", "JDK_HASHTABLE", "CONCURRENT_HASH_MAP"})
+    public MapImpl impl;
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    @Param({"0.5", "0.75", "0.9"})
+    public float loadFactor;
+
+    public Map<Integer, Integer> map;
+    public Integer[] keys;
+    public Integer[] missingKeys;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Keys generated = Keys.distinct(2 * size, 42);
+        keys = generated.slice(0, size);
+        missingKeys = generated.slice(size, 2 * size);
+
+        map = impl.create(16, loadFactor);
+        for (Integer key : keys) {
+            map.put(key, key);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package org.example.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost of the {@code HashTable} metrics: every operation runs once in a JVM started with
+ * {@code -Dhashtable.metrics=false} and once with {@code true}, so the difference is what the
+ * probe histograms and rehash timers add. With metrics off the hooks should not be measurable.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Thread)
+public class MetricsBenchmark {
+
+    @Param({"1000", "1000000"})
+    public int size;
+
+    private Map<Integer, Integer> map;
+    private Integer[] keys;
+    private Integer[] missingKeys;
+    private int cursor;
+
+    @Setup
+    public void setUp() {
+        Keys generated = Keys.distinct(2 * size, 42);
+        keys = generated.slice(0, size);
+        missingKeys = generated.slice(size, 2 * size);
+        map = MapImpl.HASH_TABLE.create(16, 0.75f);
+        for (Integer key : keys) {
+            map.put(key, key);
+        }
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-Dhashtable.metrics=false")
+    public Integer getHitOff() {
+        return map.get(keys[next()]);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-Dhashtable.metrics=true")
+    public Integer getHitOn() {
+        return map.get(keys[next()]);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-Dhashtable.metrics=false")
+    public Integer getMissOff() {
+        return map.get(missingKeys[next()]);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-Dhashtable.metrics=true")
+    public Integer getMissOn() {
+        return map.get(missingKeys[next()]);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-Dhashtable.metrics=false")
+    public Integer putRemoveOff() {
+        Integer key = missingKeys[next()];
+        map.put(key, key);
+        return map.remove(key);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-Dhashtable.metrics=true")
+    public Integer putRemoveOn() {
+        Integer key = missingKeys[next()];
+        map.put(key, key);
+        return map.remove(key);
+    }
+
+    private int next() {
+        int i = cursor;
+        cursor = i + 1 == size ? 0 : i + 1;
+        return i;
+    }
+}
@@ -0,0 +1,68 @@
+package org.example.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sums all values of a table: with {@code HashTable.reduceValuesToLong} on the calling thread and on the common
+ * pool, and through sequential and parallel streams over {@code values()}. {@code HashMap} streams are the baseline
+ * for how well the slot-range spliterator splits.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParallelBenchmark {
+
+    @Param({"HASH_TABLE", "HASH_MAP"})
+    public MapImpl impl;
+
+    @Param({"100000", "1000000"})
+    public int size;
+
+    private Map<Integer, Integer> map;
+    private BulkMap bulk;
+
+    @Setup
+    public void setUp() {
+        map = impl.create(16, 0.75f);
+        for (Integer key : Keys.distinct(size, 42).slice(0, size)) {
+            map.put(key, key);
+        }
+        bulk = impl == MapImpl.HASH_TABLE ? BulkMap.of(map) : null;
+    }
+
+    @Benchmark
+    public long stream() {
+        return map.values().stream().mapToLong(Integer::longValue).sum();
+    }
+
+    @Benchmark
+    public long parallelStream() {
+        return map.values().parallelStream().mapToLong(Integer::longValue).sum();
+    }
+
+    @Benchmark
+    public long reduceSequential() {
+        return bulk == null ? 0 : bulk.sumValues(Long.MAX_VALUE);
+    }
+
+    @Benchmark
+    public long reduceParallel() {
+        return bulk == null ? 0 : bulk.sumValues(1);
+    }
+}
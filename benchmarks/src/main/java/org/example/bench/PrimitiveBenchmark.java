@@ -0,0 +1,77 @@
+package org.example.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unboxed {@code LongLongHashTable} against {@code HashTable<Long, Long>} and {@code HashMap<Long, Long>}.
+ * The keys are primitive here, so the boxed maps pay for boxing the way real callers do.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PrimitiveBenchmark {
+
+    @Param({"LONG_LONG_HASH_TABLE", "HASH_TABLE", "HASH_MAP"})
+    public String impl;
+
+    @Param({"1000", "1000000"})
+    public int size;
+
+    private LongLongMap map;
+    private long[] keys;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        keys = random.longs(size).toArray();
+
+        switch (impl) {
+            case "LONG_LONG_HASH_TABLE":
+                map = LongLongMap.unboxed(16, 0.75f);
+                break;
+            case "HASH_TABLE":
+                map = LongLongMap.boxed(MapImpl.HASH_TABLE.create(16, 0.75f));
+                break;
+            default:
+                map = LongLongMap.boxed(new HashMap<>(16, 0.75f));
+        }
+        for (long key : keys) {
+            map.put(key, key);
+        }
+    }
+
+    @Benchmark
+    public long getHit() {
+        return map.get(keys[next()]);
+    }
+
+    @Benchmark
+    public long addTo() {
+        return map.addTo(keys[next()], 1);
+    }
+
+    private int next() {
+        int i = cursor;
+        cursor = i + 1 == size ? 0 : i + 1;
+        return i;
+    }
+}
@@ -0,0 +1,118 @@
+package org.example.bench;
+
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Probe-length distributions of the open-addressing tables for hits and misses at each size and load factor.
+ *
+ * <p>The JDK maps chain their collisions, so only {@code HashTable} (double hashing) and
+ * {@code RobinHoodHashTable} (linear probing) have a probe sequence to report.
+ * Lengths come from their package-private {@code probeLength(Object)}.
+ */
+public final class ProbeLengthReport {
+
+    private static final int SAMPLE = 2_000;
+    private static final MapImpl[] IMPLS = {MapImpl.HASH_TABLE, MapImpl.ROBIN_HOOD_HASH_TABLE};
+    private static final int[] BUCKETS = {1, 2, 3, 4, 8, 16, 64, 256, Integer.MAX_VALUE};
+
+    private ProbeLengthReport() {
+    }
+
+    public static void main(String[] args) {
+        print(List.of("1000", "100000", "1000000"), List.of("0.5", "0.75", "0.9"), System.out);
+    }
+
+    public static void print(Iterable<String> sizes, Iterable<String> loadFactors, PrintStream out) {
+        out.println();
+        out.println("Probe lengths (" + SAMPLE + " sampled lookups per row)");
+        out.printf("%-22s %-10s %-6s %-5s %8s %6s %6s %8s  %s%n",
+                "impl", "size", "load", "kind", "mean", "p50", "p99", "max", histogramHeader());
+
+        for (MapImpl impl : IMPLS) {
+            for (String size : sizes) {
+                for (String loadFactor : loadFactors) {
+                    report(impl, Integer.parseInt(size), Float.parseFloat(loadFactor), out);
+                }
+            }
+        }
+    }
+
+    private static void report(MapImpl impl, int size, float loadFactor, PrintStream out) {
+        Keys generated = Keys.distinct(2 * size, 42);
+        Integer[] keys = generated.slice(0, size);
+        Integer[] missingKeys = generated.slice(size, 2 * size);
+
+        Map<Integer, Integer> map = impl.create(16, loadFactor);
+        for (Integer key : keys) {
+            map.put(key, key);
+        }
+
+        Method probeLength = probeLengthMethod(map);
+        row(impl, size, loadFactor, "hit", lengths(map, probeLength, keys), out);
+        row(impl, size, loadFactor, "miss", lengths(map, probeLength, missingKeys), out);
+    }
+
+    private static int[] lengths(Map<Integer, Integer> map, Method probeLength, Integer[] keys) {
+        int samples = Math.min(SAMPLE, keys.length);
+        int step = keys.length / samples;
+        int[] lengths = new int[samples];
+        try {
+            for (int i = 0; i < samples; i++) {
+                lengths[i] = (int) probeLength.invoke(map, keys[i * step]);
+            }
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException(e);
+        }
+        Arrays.sort(lengths);
+        return lengths;
+    }
+
+    private static void row(MapImpl impl, int size, float loadFactor, String kind, int[] lengths, PrintStream out) {
+        long total = 0;
+        int[] histogram = new int[BUCKETS.length];
+        for (int length : lengths) {
+            total += length;
+            int bucket = 0;
+            while (length > BUCKETS[bucket]) {
+                bucket++;
+            }
+            histogram[bucket]++;
+        }
+
+        StringBuilder cells = new StringBuilder();
+        for (int count : histogram) {
+            cells.append(String.format("%7.1f%%", 100.0 * count / lengths.length));
+        }
+
+        out.printf("%-22s %-10d %-6.2f %-5s %8.2f %6d %6d %8d  %s%n",
+                impl, size, loadFactor, kind, (double) total / lengths.length,
+                lengths[lengths.length / 2], lengths[lengths.length * 99 / 100], lengths[lengths.length - 1],
+                cells);
+    }
+
+    private static String histogramHeader() {
+        StringBuilder header = new StringBuilder();
+        int from = 1;
+        for (int to : BUCKETS) {
+            String label = to == Integer.MAX_VALUE ? from + "+" : (from == to ? String.valueOf(to) : from + "-" + to);
+            header.append(String.format("%8s", label));
+            from = to + 1;
+        }
+        return header.toString();
+    }
+
+    private static Method probeLengthMethod(Map<?, ?> map) {
+        try {
+            Method method = map.getClass().getDeclaredMethod("probeLength", Object.class);
+            method.setAccessible(true);
+            return method;
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(map.getClass() + " does not expose probe lengths", e);
+        }
+    }
+}
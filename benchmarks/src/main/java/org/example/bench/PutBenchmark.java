@@ -0,0 +1,48 @@
+package org.example.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Inserts into a map that starts empty and grows to {@code size} entries, then starts over,
+ * so the cost of resizing is amortized into every put.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PutBenchmark {
+
+    private Map<Integer, Integer> map;
+    private int cursor;
+
+    @Setup(Level.Iteration)
+    public void setUp(MapState state) {
+        map = state.impl.create(16, state.loadFactor);
+        cursor = 0;
+    }
+
+    @Benchmark
+    public Integer put(MapState state) {
+        if (cursor == state.size) {
+            map = state.impl.create(16, state.loadFactor);
+            cursor = 0;
+        }
+        Integer key = state.keys[cursor++];
+        return map.put(key, key);
+    }
+}
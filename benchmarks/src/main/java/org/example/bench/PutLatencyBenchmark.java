@@ -0,0 +1,64 @@
+package org.example.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Samples the latency of single puts into a growing map. The throughput benchmark hides resizes in the average;
+ * here they show up in the high percentiles, which is where incremental rehashing should differ from a full rebuild.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class PutLatencyBenchmark {
+
+    @Param({"HASH_TABLE", "INCREMENTAL_HASH_TABLE", "HASH_MAP"})
+    public MapImpl impl;
+
+    @Param({"1000000"})
+    public int size;
+
+    @Param({"0.75"})
+    public float loadFactor;
+
+    private Integer[] keys;
+    private Map<Integer, Integer> map;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setUpKeys() {
+        keys = Keys.distinct(size, 42).slice(0, size);
+    }
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        map = impl.create(16, loadFactor);
+        cursor = 0;
+    }
+
+    @Benchmark
+    public Integer put() {
+        if (cursor == size) {
+            map = impl.create(16, loadFactor);
+            cursor = 0;
+        }
+        Integer key = keys[cursor++];
+        return map.put(key, key);
+    }
+}
@@ -0,0 +1,26 @@
+package org.example.bench;
+
+import java.util.Map;
+
+/**
+ * A reusable, allocation-free pass over the entries of a {@code HashTable} through its {@code cursor()};
+ * the implementation lives in the unnamed package as {@code HashTableCursor}.
+ */
+public interface ScanCursor {
+
+    boolean advance();
+
+    Integer value();
+
+    void reset();
+
+    static ScanCursor of(Map<Integer, Integer> hashTable) {
+        try {
+            return (ScanCursor) Class.forName("HashTableCursor")
+                    .getConstructor(Map.class)
+                    .newInstance(hashTable);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot instantiate HashTableCursor", e);
+        }
+    }
+}
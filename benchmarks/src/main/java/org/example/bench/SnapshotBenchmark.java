@@ -0,0 +1,78 @@
+package org.example.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Restores a table from an in-memory snapshot, so the scores show the CPU cost that remains once I/O is
+ * taken out: the binary {@code HashTable} snapshot, its raw-layout variant, and Java serialization of a
+ * {@code HashMap} built from the entries, which is what we used to dump.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SnapshotBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int size;
+
+    private Snapshotter snapshotter;
+    private byte[] binary;
+    private byte[] raw;
+    private byte[] serialized;
+
+    @Setup
+    public void setUp() throws IOException {
+        Map<Integer, Integer> table = MapImpl.HASH_TABLE.create(16, 0.75f);
+        for (Integer key : Keys.distinct(size, 42).slice(0, size)) {
+            table.put(key, key);
+        }
+        snapshotter = Snapshotter.hashTable();
+        binary = snapshotter.write(table, false);
+        raw = snapshotter.write(table, true);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(new HashMap<>(table));
+        }
+        serialized = bytes.toByteArray();
+    }
+
+    @Benchmark
+    public Map<Integer, Integer> restoreBinary() throws IOException {
+        return snapshotter.read(binary);
+    }
+
+    @Benchmark
+    public Map<Integer, Integer> restoreRawLayout() throws IOException {
+        return snapshotter.read(raw);
+    }
+
+    @Benchmark
+    public Object restoreJavaSerialization() throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(serialized))) {
+            return in.readObject();
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package org.example.bench;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Binary snapshots of an {@code Integer -> Integer} {@code HashTable} through {@code HashTable.writeSnapshot}
+ * and {@code readSnapshot}, which the {@code Map} interface does not have; the implementation lives in the
+ * unnamed package as {@code HashTableSnapshotter}.
+ */
+public interface Snapshotter {
+
+    byte[] write(Map<Integer, Integer> table, boolean rawLayout) throws IOException;
+
+    Map<Integer, Integer> read(byte[] snapshot) throws IOException;
+
+    static Snapshotter hashTable() {
+        try {
+            return (Snapshotter) Class.forName("HashTableSnapshotter").getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot instantiate HashTableSnapshotter", e);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package org.example.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookups by {@code byte[]} content with lookup keys that are equal copies of the stored ones, as they would be
+ * if read from a buffer. {@code strategy} is a {@code HashTable} with {@code HashingStrategy.BYTE_ARRAYS} that is
+ * queried with the raw array; the {@code wrapped} cases key {@code HashTable} and {@code HashMap} by
+ * {@link ByteBuffer} and wrap every lookup key, the usual way to get content equality for arrays.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StrategyBenchmark {
+
+    @Param({"100000"})
+    public int size;
+
+    @Param({"16"})
+    public int keyLength;
+
+    private byte[][] probes;
+    private Map<byte[], Integer> strategyTable;
+    private Map<ByteBuffer, Integer> wrappedTable;
+    private Map<ByteBuffer, Integer> wrappedHashMap;
+    private int next;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() throws ReflectiveOperationException {
+        Class<?> strategyClass = Class.forName("HashingStrategy");
+        Object byteArrays = strategyClass.getField("BYTE_ARRAYS").get(null);
+        strategyTable = (Map<byte[], Integer>) Class.forName("HashTable")
+                .getConstructor(int.class, float.class, strategyClass)
+                .newInstance(16, 0.75f, byteArrays);
+        wrappedTable = MapImpl.HASH_TABLE.create(16, 0.75f);
+        wrappedHashMap = new HashMap<>();
+
+        Random random = new Random(42);
+        probes = new byte[size][];
+        for (int i = 0; i < size; i++) {
+            byte[] key = new byte[keyLength];
+            random.nextBytes(key);
+            strategyTable.put(key, i);
+            wrappedTable.put(ByteBuffer.wrap(key), i);
+            wrappedHashMap.put(ByteBuffer.wrap(key), i);
+            probes[i] = key.clone();
+        }
+    }
+
+    private byte[] nextProbe() {
+        byte[] probe = probes[next];
+        next = next + 1 == size ? 0 : next + 1;
+        return probe;
+    }
+
+    @Benchmark
+    public Integer strategy() {
+        return strategyTable.get(nextProbe());
+    }
+
+    @Benchmark
+    public Integer wrappedHashTable() {
+        return wrappedTable.get(ByteBuffer.wrap(nextProbe()));
+    }
+
+    @Benchmark
+    public Integer wrappedHashMap() {
+        return wrappedHashMap.get(ByteBuffer.wrap(nextProbe()));
+    }
+}
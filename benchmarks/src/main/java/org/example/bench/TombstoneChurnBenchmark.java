@@ -0,0 +1,77 @@
+package org.example.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Long-running insert/delete churn: a window of {@code size} live keys slides over a pool eight times larger,
+ * so every removed key leaves a tombstone in a different slot and the table never sees the same layout twice.
+ * Misses are measured alongside because they walk over tombstones until they reach an empty slot.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class TombstoneChurnBenchmark {
+
+    private static final int POOL_FACTOR = 8;
+
+    @Param({"HASH_TABLE", "INCREMENTAL_HASH_TABLE", "ROBIN_HOOD_HASH_TABLE", "SWISS_HASH_TABLE", "CUCKOO_HASH_TABLE", "HASH_MAP"})
+    public MapImpl impl;
+
+    @Param({"100000"})
+    public int size;
+
+    @Param({"0.75", "0.9"})
+    public float loadFactor;
+
+    private Integer[] pool;
+    private Integer[] missingKeys;
+    private Map<Integer, Integer> map;
+    private int oldest;
+    private int miss;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Keys generated = Keys.distinct((POOL_FACTOR + 1) * size, 42);
+        pool = generated.slice(0, POOL_FACTOR * size);
+        missingKeys = generated.slice(POOL_FACTOR * size, (POOL_FACTOR + 1) * size);
+
+        map = impl.create(16, loadFactor);
+        for (int i = 0; i < size; i++) {
+            map.put(pool[i], pool[i]);
+        }
+        oldest = 0;
+    }
+
+    @Benchmark
+    public Integer removeOldestPutNew() {
+        Integer added = pool[(oldest + size) % pool.length];
+        map.remove(pool[oldest]);
+        oldest = oldest + 1 == pool.length ? 0 : oldest + 1;
+        return map.put(added, added);
+    }
+
+    @Benchmark
+    public Integer churnThenGetMiss() {
+        removeOldestPutNew();
+        Integer key = missingKeys[miss];
+        miss = miss + 1 == missingKeys.length ? 0 : miss + 1;
+        return map.get(key);
+    }
+}
@@ -0,0 +1,36 @@
+package org.example.bench;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Reproducible Zipfian key traces: rank k of the universe is drawn with probability proportional to
+ * 1 / k^skew, and ranks are scattered over the int range so the hot keys are not neighbours.
+ */
+public final class Zipf {
+
+    private Zipf() {
+    }
+
+    public static Integer[] trace(int length, int universe, double skew, long seed) {
+        double[] cumulative = new double[universe];
+        double sum = 0;
+        for (int k = 0; k < universe; k++) {
+            sum += 1 / Math.pow(k + 1, skew);
+            cumulative[k] = sum;
+        }
+
+        Integer[] keys = new Integer[universe];
+        for (int k = 0; k < universe; k++) {
+            keys[k] = k * 0x9E3779B9;
+        }
+
+        Random random = new Random(seed);
+        Integer[] trace = new Integer[length];
+        for (int i = 0; i < length; i++) {
+            int rank = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+            trace[i] = keys[Math.min(rank < 0 ? -rank - 1 : rank, universe - 1)];
+        }
+        return trace;
+    }
+}
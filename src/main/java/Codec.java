@@ -0,0 +1,117 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// Serializes keys or values for the tables that keep their data outside of the Java heap.
+// Encodings must be canonical: equal objects have to produce identical bytes, since stored keys
+// are compared byte by byte.
+public interface Codec<T> {
+
+//  Length of every encoding, or -1 if it depends on the value
+    default int fixedLength() {
+        return -1;
+    }
+
+    int length(T value);
+
+//  Writes the value at the buffer's position and advances it by length(value) bytes
+    void write(T value, ByteBuffer target);
+
+//  Reads a value of the given encoded length from the buffer's position and advances past it
+    T read(ByteBuffer source, int length);
+
+    Codec<Integer> INTEGER = new Codec<>() {
+        @Override
+        public int fixedLength() {
+            return Integer.BYTES;
+        }
+
+        @Override
+        public int length(Integer value) {
+            return Integer.BYTES;
+        }
+
+        @Override
+        public void write(Integer value, ByteBuffer target) {
+            target.putInt(value);
+        }
+
+        @Override
+        public Integer read(ByteBuffer source, int length) {
+            return source.getInt();
+        }
+    };
+
+    Codec<Long> LONG = new Codec<>() {
+        @Override
+        public int fixedLength() {
+            return Long.BYTES;
+        }
+
+        @Override
+        public int length(Long value) {
+            return Long.BYTES;
+        }
+
+        @Override
+        public void write(Long value, ByteBuffer target) {
+            target.putLong(value);
+        }
+
+        @Override
+        public Long read(ByteBuffer source, int length) {
+            return source.getLong();
+        }
+    };
+
+    Codec<byte[]> BYTES = new Codec<>() {
+        @Override
+        public int length(byte[] value) {
+            return value.length;
+        }
+
+        @Override
+        public void write(byte[] value, ByteBuffer target) {
+            target.put(value);
+        }
+
+        @Override
+        public byte[] read(ByteBuffer source, int length) {
+            byte[] value = new byte[length];
+            source.get(value);
+            return value;
+        }
+    };
+
+    Codec<String> STRING = new Codec<>() {
+        @Override
+        public int length(String value) {
+//          UTF-8 length without encoding; unpaired surrogates are written as a single '?'
+            int length = value.length();
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                        && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    length += 2;
+                    i++;
+                } else if (c >= 0x800 && !Character.isSurrogate(c)) {
+                    length += 2;
+                } else if (c >= 0x80 && !Character.isSurrogate(c)) {
+                    length++;
+                }
+            }
+            return length;
+        }
+
+        @Override
+        public void write(String value, ByteBuffer target) {
+            target.put(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public String read(ByteBuffer source, int length) {
+            byte[] bytes = new byte[length];
+            source.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    };
+}
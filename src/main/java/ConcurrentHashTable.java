@@ -0,0 +1,600 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.*;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+// A thread-safe HashTable split into lock stripes.
+//
+// The top bits of the spread hash pick a segment, and each segment is a small double-hashing table
+// guarded by its own lock. Lookups never lock: a new key is published with a release write before its
+// value, which gets a release write of its own, and once set a key never changes for the lifetime of that
+// table. A reader that finds the key and then reads a null value treats the key as absent, whether the
+// value is not written yet or was removed; any other value it reads was current at some point. Removal
+// clears only the value; such slots are dropped when the segment is rebuilt. Every write, including the
+// atomic compute/merge/putIfAbsent family, holds exactly one segment lock.
+//
+// A segment resizes alone, under its own lock, rather than with other threads helping to move its entries
+// as in ConcurrentHashMap. Only writers to the same segment could help, and they would have to wait for its
+// lock anyway; meanwhile the rest of the table takes writes, readers keep using the old table until the new
+// one is published, and a pause only ever moves one segment's share of the entries.
+//
+// Like ConcurrentHashMap it permits neither null keys nor null values, and its iterators are weakly
+// consistent.
+public class ConcurrentHashTable<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V> {
+
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+    private static final int MAXIMUM_SEGMENTS = 1 << 16;
+
+    private static final VarHandle SLOTS = MethodHandles.arrayElementVarHandle(Object[].class);
+
+    private final Segment[] segments;
+    private final int segmentShift;
+
+    private Set<Map.Entry<K, V>> entrySet;
+
+    public ConcurrentHashTable(int capacity, float loadFactor, int concurrencyLevel) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException(
+                    "Illegal Capacity: " + capacity
+            );
+        }
+
+        if (loadFactor <= 0 || Float.isNaN(loadFactor)) {
+            throw new IllegalArgumentException("Illegal Load: " + loadFactor);
+        }
+
+        if (concurrencyLevel <= 0) {
+            throw new IllegalArgumentException("Illegal Concurrency Level: " + concurrencyLevel);
+        }
+
+        int segmentCount = tableSizeFor(Math.min(concurrencyLevel, MAXIMUM_SEGMENTS));
+        int segmentCapacity = tableSizeFor(Math.max(2, (capacity + segmentCount - 1) / segmentCount));
+
+        segmentShift = 32 - Integer.numberOfTrailingZeros(segmentCount);
+        segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(segmentCapacity, loadFactor);
+        }
+    }
+
+    public ConcurrentHashTable(int capacity, float loadFactor) {
+        this(capacity, loadFactor, 16);
+    }
+
+    public ConcurrentHashTable(int capacity) {
+        this(capacity, 0.75f, 16);
+    }
+
+    public ConcurrentHashTable() {
+        this(16, 0.75f, 16);
+    }
+
+    @Override
+    public int size() {
+        long size = 0;
+        for (Segment segment : segments) {
+            size += segment.count;
+        }
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        for (Segment segment : segments) {
+            if (segment.count != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public V get(Object key) {
+        if (key == null) throw new NullPointerException("ConcurrentHashTable does not permit null keys");
+        int hash = spread(key.hashCode());
+        Table table = segmentFor(hash).table;
+
+        Object[] keys = table.keys;
+        int mask = keys.length - 1;
+        int step = hash2(hash);
+        int index = hash & mask;
+        for (int n = 0; n <= mask; n++) {
+            Object k = SLOTS.getAcquire(keys, index);
+            if (k == null) {
+                return null;
+            }
+            if (k == key || k.equals(key)) {
+                return valueAt(table, index);
+            }
+            index = (index + step) & mask;
+        }
+        return null;
+    }
+
+    @Override
+    public V getOrDefault(Object key, V defaultValue) {
+        V value = get(key);
+        return value == null ? defaultValue : value;
+    }
+
+    @Override
+    public V put(K key, V value) {
+        if (value == null || key == null) {
+            throw new NullPointerException();
+        }
+        int hash = spread(key.hashCode());
+        Segment segment = segmentFor(hash);
+        segment.lock();
+        try {
+            int index = segment.findOrInsert(key, hash);
+            V oldValue = valueAt(segment.table, index);
+            segment.setValue(index, value);
+            return oldValue;
+        } finally {
+            segment.unlock();
+        }
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        if (value == null || key == null) {
+            throw new NullPointerException();
+        }
+        int hash = spread(key.hashCode());
+        Segment segment = segmentFor(hash);
+        segment.lock();
+        try {
+            int index = segment.findOrInsert(key, hash);
+            V oldValue = valueAt(segment.table, index);
+            if (oldValue == null) {
+                segment.setValue(index, value);
+            }
+            return oldValue;
+        } finally {
+            segment.unlock();
+        }
+    }
+
+    @Override
+    public V remove(Object key) {
+        if (key == null) throw new NullPointerException("ConcurrentHashTable does not permit null keys");
+        int hash = spread(key.hashCode());
+        Segment segment = segmentFor(hash);
+        segment.lock();
+        try {
+            int index = segment.find(key, hash);
+            if (index < 0) {
+                return null;
+            }
+            V oldValue = valueAt(segment.table, index);
+            segment.setValue(index, null);
+            return oldValue;
+        } finally {
+            segment.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        if (key == null) throw new NullPointerException("ConcurrentHashTable does not permit null keys");
+        if (value == null) {
+            return false;
+        }
+        int hash = spread(key.hashCode());
+        Segment segment = segmentFor(hash);
+        segment.lock();
+        try {
+            int index = segment.find(key, hash);
+            if (index < 0 || !value.equals(valueAt(segment.table, index))) {
+                return false;
+            }
+            segment.setValue(index, null);
+            return true;
+        } finally {
+            segment.unlock();
+        }
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        if (key == null || oldValue == null || newValue == null) {
+            throw new NullPointerException();
+        }
+        int hash = spread(key.hashCode());
+        Segment segment = segmentFor(hash);
+        segment.lock();
+        try {
+            int index = segment.find(key, hash);
+            if (index < 0 || !oldValue.equals(valueAt(segment.table, index))) {
+                return false;
+            }
+            segment.setValue(index, newValue);
+            return true;
+        } finally {
+            segment.unlock();
+        }
+    }
+
+    @Override
+    public V replace(K key, V value) {
+        if (value == null || key == null) {
+            throw new NullPointerException();
+        }
+        int hash = spread(key.hashCode());
+        Segment segment = segmentFor(hash);
+        segment.lock();
+        try {
+            int index = segment.find(key, hash);
+            V oldValue = index < 0 ? null : valueAt(segment.table, index);
+            if (oldValue != null) {
+                segment.setValue(index, value);
+            }
+            return oldValue;
+        } finally {
+            segment.unlock();
+        }
+    }
+
+    @Override
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        Objects.requireNonNull(mappingFunction);
+        V value = get(key);
+        if (value != null) {
+            return value;
+        }
+
+        int hash = spread(key.hashCode());
+        Segment segment = segmentFor(hash);
+        segment.lock();
+        try {
+            int index = segment.find(key, hash);
+            V oldValue = index < 0 ? null : valueAt(segment.table, index);
+            if (oldValue != null) {
+                return oldValue;
+            }
+            V newValue = mappingFunction.apply(key);
+            if (newValue != null) {
+                segment.setValue(segment.findOrInsert(key, hash), newValue);
+            }
+            return newValue;
+        } finally {
+            segment.unlock();
+        }
+    }
+
+    @Override
+    public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        Objects.requireNonNull(remappingFunction);
+        if (key == null) throw new NullPointerException("ConcurrentHashTable does not permit null keys");
+        int hash = spread(key.hashCode());
+        Segment segment = segmentFor(hash);
+        segment.lock();
+        try {
+            int index = segment.find(key, hash);
+            V oldValue = index < 0 ? null : valueAt(segment.table, index);
+            if (oldValue == null) {
+                return null;
+            }
+            V newValue = remappingFunction.apply(key, oldValue);
+            segment.setValue(index, newValue);
+            return newValue;
+        } finally {
+            segment.unlock();
+        }
+    }
+
+    @Override
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        Objects.requireNonNull(remappingFunction);
+        if (key == null) throw new NullPointerException("ConcurrentHashTable does not permit null keys");
+        int hash = spread(key.hashCode());
+        Segment segment = segmentFor(hash);
+        segment.lock();
+        try {
+            int index = segment.find(key, hash);
+            V oldValue = index < 0 ? null : valueAt(segment.table, index);
+            V newValue = remappingFunction.apply(key, oldValue);
+            if (newValue != null) {
+                segment.setValue(index < 0 ? segment.findOrInsert(key, hash) : index, newValue);
+            } else if (index >= 0) {
+                segment.setValue(index, null);
+            }
+            return newValue;
+        } finally {
+            segment.unlock();
+        }
+    }
+
+    @Override
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        Objects.requireNonNull(remappingFunction);
+        if (value == null || key == null) {
+            throw new NullPointerException();
+        }
+        int hash = spread(key.hashCode());
+        Segment segment = segmentFor(hash);
+        segment.lock();
+        try {
+            int index = segment.findOrInsert(key, hash);
+            V oldValue = valueAt(segment.table, index);
+            V newValue = oldValue == null ? value : remappingFunction.apply(oldValue, value);
+            segment.setValue(index, newValue);
+            return newValue;
+        } finally {
+            segment.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.lock();
+            try {
+                segment.clear();
+            } finally {
+                segment.unlock();
+            }
+        }
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new EntrySet();
+        }
+        return entrySet;
+    }
+
+    private class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+        @Override
+        public Iterator<Map.Entry<K, V>> iterator() {
+            return new EntryIterator();
+        }
+
+        @Override
+        public int size() {
+            return ConcurrentHashTable.this.size();
+        }
+
+        @Override
+        public void clear() {
+            ConcurrentHashTable.this.clear();
+        }
+    }
+
+//  Walks each segment's table as it was when the iterator reached that segment
+    private class EntryIterator implements Iterator<Map.Entry<K, V>> {
+        int segmentIndex = -1;
+        Table table;
+        int index = -1;
+        K nextKey;
+        V nextValue;
+        K lastKey;
+
+        EntryIterator() {
+            advance();
+        }
+
+        @SuppressWarnings("unchecked")
+        private void advance() {
+            nextKey = null;
+            while (true) {
+                if (table != null) {
+                    while (++index < table.keys.length) {
+                        Object k = SLOTS.getAcquire(table.keys, index);
+                        V v = k == null ? null : valueAt(table, index);
+                        if (v != null) {
+                            nextKey = (K) k;
+                            nextValue = v;
+                            return;
+                        }
+                    }
+                }
+                if (++segmentIndex >= segments.length) {
+                    return;
+                }
+                table = segments[segmentIndex].table;
+                index = -1;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextKey != null;
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+            if (nextKey == null) {
+                throw new NoSuchElementException();
+            }
+            Map.Entry<K, V> entry = new WriteThroughEntry(nextKey, nextValue);
+            lastKey = nextKey;
+            advance();
+            return entry;
+        }
+
+        @Override
+        public void remove() {
+            if (lastKey == null) {
+                throw new IllegalStateException();
+            }
+            ConcurrentHashTable.this.remove(lastKey);
+            lastKey = null;
+        }
+    }
+
+    private class WriteThroughEntry extends AbstractMap.SimpleEntry<K, V> {
+        WriteThroughEntry(K key, V value) {
+            super(key, value);
+        }
+
+        @Override
+        public V setValue(V value) {
+//          replace() writes only while the key is present, so a removed key stays removed
+            replace(getKey(), value);
+            return super.setValue(value);
+        }
+    }
+
+    private static int spread(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+//  The segment is chosen by the top bits, so the step is taken from a remix of the hash instead
+    private static int hash2(int hash) {
+        return Integer.reverse(hash * 0x9e3779b9) | 1;
+    }
+
+    private static int tableSizeFor(int capacity) {
+        int n = -1 >>> Integer.numberOfLeadingZeros(capacity - 1);
+        return n < 0 ? 1 : (n >= MAXIMUM_CAPACITY ? MAXIMUM_CAPACITY : n + 1);
+    }
+
+    private Segment segmentFor(int hash) {
+        return segments.length == 1 ? segments[0] : segments[hash >>> segmentShift];
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> V valueAt(Table table, int index) {
+        return (V) SLOTS.getAcquire(table.values, index);
+    }
+
+    private static final class Table {
+        final Object[] keys;
+        final Object[] values;
+
+        Table(int capacity) {
+            keys = new Object[capacity];
+            values = new Object[capacity];
+        }
+    }
+
+    private static final class Segment extends ReentrantLock {
+        private final float loadFactor;
+
+        volatile Table table;
+        volatile int count;
+
+//      Slots holding a key, live or removed; guarded by the lock
+        private int used;
+        private int threshold;
+
+        Segment(int capacity, float loadFactor) {
+            this.loadFactor = loadFactor;
+            this.table = new Table(capacity);
+            this.threshold = thresholdFor(capacity);
+        }
+
+        private int thresholdFor(int capacity) {
+            return (int) Math.min((long) (capacity * loadFactor), capacity - 1);
+        }
+
+//      Returns the slot holding key, live or removed, or -1; called with the lock held
+        int find(Object key, int hash) {
+            Object[] keys = table.keys;
+            int mask = keys.length - 1;
+            int step = hash2(hash);
+            int index = hash & mask;
+            for (int n = 0; n <= mask; n++) {
+                Object k = keys[index];
+                if (k == null) {
+                    return -1;
+                }
+                if (k == key || k.equals(key)) {
+                    return index;
+                }
+                index = (index + step) & mask;
+            }
+            return -1;
+        }
+
+//      Returns the slot of key, claiming an empty one for it if needed; called with the lock held
+        int findOrInsert(Object key, int hash) {
+            int index = find(key, hash);
+            if (index >= 0) {
+                return index;
+            }
+
+            if (used >= threshold) {
+                rehash();
+            }
+
+            Object[] keys = table.keys;
+            int mask = keys.length - 1;
+            int step = hash2(hash);
+            index = hash & mask;
+            while (keys[index] != null) {
+                index = (index + step) & mask;
+            }
+            SLOTS.setRelease(keys, index, key);
+            used++;
+            return index;
+        }
+
+//      Publishes a value for an occupied slot; null marks the key as removed
+        void setValue(int index, Object value) {
+            Object[] values = table.values;
+            Object oldValue = values[index];
+            SLOTS.setRelease(values, index, value);
+            if (oldValue == null && value != null) {
+                count = count + 1;
+            } else if (oldValue != null && value == null) {
+                count = count - 1;
+            }
+        }
+
+        void clear() {
+            table = new Table(table.keys.length);
+            used = 0;
+            count = 0;
+        }
+
+//      Builds a new table without removed slots and publishes it; readers keep using the old one until then.
+//      Only this segment's writers wait, which is why no other thread is asked to help with the move.
+        private void rehash() {
+            Table oldTable = table;
+            int capacity = oldTable.keys.length;
+            if (count >= threshold / 2) {
+                if (capacity == MAXIMUM_CAPACITY) {
+                    throw new IllegalStateException("ConcurrentHashTable capacity exceeded");
+                }
+                capacity = capacity * 2;
+            }
+
+            Table newTable = new Table(capacity);
+            int mask = capacity - 1;
+            for (int i = 0; i < oldTable.keys.length; i++) {
+                Object key = oldTable.keys[i];
+                Object value = oldTable.values[i];
+                if (key != null && value != null) {
+                    int hash = spread(key.hashCode());
+                    int step = hash2(hash);
+                    int index = hash & mask;
+                    while (newTable.keys[index] != null) {
+                        index = (index + step) & mask;
+                    }
+                    newTable.keys[index] = key;
+                    newTable.values[index] = value;
+                }
+            }
+
+            used = count;
+            threshold = thresholdFor(capacity);
+            table = newTable;
+        }
+    }
+}
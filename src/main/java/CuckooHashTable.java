@@ -0,0 +1,390 @@
+import java.util.*;
+
+// A HashTable built on bucketized cuckoo hashing.
+//
+// Slots are grouped into buckets of four, and every key may live in one of exactly two buckets chosen by two
+// hash functions, so a lookup inspects at most eight slots plus a small stash and never walks a probe chain.
+// An insert that finds both buckets full moves a resident of one of them to that resident's other bucket,
+// and so on for at most MAX_KICKS moves. An entry left over after that goes into the stash, and only when the
+// stash is full does the table grow. Keys whose hashes collide outright cannot be separated by growing, so
+// while the table is less than half full the stash grows instead.
+//
+// The spread hash of every entry is kept next to it: both buckets are derived from it, so moving an entry
+// never calls hashCode() again, it lets most mismatches be rejected before equals(), and 0 marks an empty slot.
+public class CuckooHashTable<K, V> extends SlotTable<K, V> {
+
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+    private static final int BUCKET_SIZE = 4;
+    private static final int MAX_KICKS = 64;
+    private static final int STASH_SIZE = 8;
+
+    private int size = 0;
+    private int capacity;
+    private final float loadFactor;
+    private int threshold;
+
+    private int[] hashes;
+    private Object[] keyTable;
+    private Object[] valueTable;
+
+    private int[] stashHashes = new int[STASH_SIZE];
+    private Object[] stashKeys = new Object[STASH_SIZE];
+    private Object[] stashValues = new Object[STASH_SIZE];
+    private int stashSize = 0;
+
+//  The entry a failed tryInsert() ended up holding, which may be one it displaced rather than the one it got
+    private int carriedHash;
+    private Object carriedKey;
+    private Object carriedValue;
+
+//  Picks which resident of a full bucket to move; a fixed seed keeps runs reproducible
+    private int random = 0x2545F491;
+
+    public CuckooHashTable(int capacity, float loadFactor) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException(
+                    "Illegal Capacity: " + capacity
+            );
+        }
+
+        if (loadFactor <= 0 || Float.isNaN(loadFactor)) {
+            throw new IllegalArgumentException("Illegal Load: " + loadFactor);
+        }
+
+        this.loadFactor = loadFactor;
+        allocate(tableSizeFor(Math.max(capacity, 2 * BUCKET_SIZE)));
+    }
+
+    public CuckooHashTable(int capacity) {
+        this(capacity, 0.9f);
+    }
+
+    public CuckooHashTable() {
+        this(16, 0.9f);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return find(key) >= 0;
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        if (value == null) {
+            throw new NullPointerException("HashTable does not permit null values");
+        }
+
+        for (int i = 0; i < capacity; i++) {
+            if (hashes[i] != 0 && value.equals(valueTable[i])) {
+                return true;
+            }
+        }
+        for (int i = 0; i < stashSize; i++) {
+            if (value.equals(stashValues[i])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public V get(Object key) {
+        int index = find(key);
+        return index < 0 ? null : valueAt(index);
+    }
+
+    @Override
+    public V put(K key, V value) {
+        if (value == null) {
+            throw new NullPointerException();
+        }
+
+        int index = find(key);
+        if (index >= 0) {
+            V oldValue = valueAt(index);
+            setValueAt(index, value);
+            return oldValue;
+        }
+
+        if (size >= threshold) {
+            rehash(capacity * 2);
+        }
+        insert(hashOf(key), key, value);
+        size++;
+        return null;
+    }
+
+    @Override
+    public V remove(Object key) {
+        int index = find(key);
+        if (index < 0) {
+            return null;
+        }
+
+        V oldValue = valueAt(index);
+        removeAt(index);
+        return oldValue;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(hashes, 0);
+        Arrays.fill(keyTable, null);
+        Arrays.fill(valueTable, null);
+        Arrays.fill(stashKeys, null);
+        Arrays.fill(stashValues, null);
+        stashSize = 0;
+        size = 0;
+    }
+
+    @Override
+    Iterator<Map.Entry<K, V>> entryIterator() {
+        return new EntryIterator();
+    }
+
+//  Walks the stash and then the table downwards. Removing a stashed entry moves the last one into its place,
+//  which the iterator has already returned, and removing from the table moves nothing.
+    private class EntryIterator implements Iterator<Map.Entry<K, V>> {
+        int remaining = size;
+        int index = capacity + stashSize;
+        int last = -1;
+
+        @Override
+        public boolean hasNext() {
+            return remaining > 0;
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+            if (remaining == 0) {
+                throw new NoSuchElementException();
+            }
+            do {
+                index--;
+            } while (index < capacity && hashes[index] == 0);
+            remaining--;
+            last = index;
+            return new Cell(index);
+        }
+
+        @Override
+        public void remove() {
+            if (last < 0) {
+                throw new IllegalStateException();
+            }
+            removeAt(last);
+            last = -1;
+        }
+    }
+
+    private int bucket1(int hash) {
+        return hash & (capacity / BUCKET_SIZE - 1);
+    }
+
+//  Remixes the stored hash so the second bucket does not follow from the first
+    private int bucket2(int hash) {
+        int h = hash * 0x9e3779b9;
+        return (h ^ (h >>> 16)) & (capacity / BUCKET_SIZE - 1);
+    }
+
+    private static int tableSizeFor(int capacity) {
+        int n = -1 >>> Integer.numberOfLeadingZeros(capacity - 1);
+        return n < 0 ? 1 : (n >= MAXIMUM_CAPACITY ? MAXIMUM_CAPACITY : n + 1);
+    }
+
+    private void allocate(int capacity) {
+        this.capacity = capacity;
+        threshold = (int) Math.min((long) (capacity * loadFactor), capacity);
+        hashes = new int[capacity];
+        keyTable = new Object[capacity];
+        valueTable = new Object[capacity];
+    }
+
+//  Returns the slot of the key; slots from capacity upwards are stash entries
+    @Override
+    int find(Object key) {
+        if (key == null) throw new NullPointerException("HashTable does not permit null keys");
+        int hash = hashOf(key);
+
+        int index = bucket1(hash) * BUCKET_SIZE;
+        for (int i = index; i < index + BUCKET_SIZE; i++) {
+            if (hashes[i] == hash && keyTable[i].equals(key)) {
+                return i;
+            }
+        }
+        index = bucket2(hash) * BUCKET_SIZE;
+        for (int i = index; i < index + BUCKET_SIZE; i++) {
+            if (hashes[i] == hash && keyTable[i].equals(key)) {
+                return i;
+            }
+        }
+        for (int i = 0; i < stashSize; i++) {
+            if (stashHashes[i] == hash && stashKeys[i].equals(key)) {
+                return capacity + i;
+            }
+        }
+        return -1;
+    }
+
+//  Places an entry that is not in the table yet, growing the table if neither cuckoo moves nor the stash help
+    private void insert(int hash, Object key, Object value) {
+        while (!tryInsert(hash, key, value)) {
+            hash = carriedHash;
+            key = carriedKey;
+            value = carriedValue;
+            carriedKey = null;
+            carriedValue = null;
+            if (size >= capacity / 2) {
+                rehash(capacity * 2);
+            } else {
+                stashHashes = Arrays.copyOf(stashHashes, stashHashes.length * 2);
+                stashKeys = Arrays.copyOf(stashKeys, stashKeys.length * 2);
+                stashValues = Arrays.copyOf(stashValues, stashValues.length * 2);
+            }
+        }
+    }
+
+    private boolean tryInsert(int hash, Object key, Object value) {
+        int bucket = bucket1(hash);
+        if (placeInBucket(bucket, hash, key, value) || placeInBucket(bucket2(hash), hash, key, value)) {
+            return true;
+        }
+
+        for (int kick = 0; kick < MAX_KICKS; kick++) {
+            random ^= random << 13;
+            random ^= random >>> 17;
+            random ^= random << 5;
+            int victim = bucket * BUCKET_SIZE + (random & (BUCKET_SIZE - 1));
+
+            int h = hashes[victim];
+            Object k = keyTable[victim];
+            Object v = valueTable[victim];
+            hashes[victim] = hash;
+            keyTable[victim] = key;
+            valueTable[victim] = value;
+            hash = h;
+            key = k;
+            value = v;
+
+            bucket = bucket1(hash) == bucket ? bucket2(hash) : bucket1(hash);
+            if (placeInBucket(bucket, hash, key, value)) {
+                return true;
+            }
+        }
+
+        if (stashSize < stashKeys.length) {
+            stashHashes[stashSize] = hash;
+            stashKeys[stashSize] = key;
+            stashValues[stashSize] = value;
+            stashSize++;
+            return true;
+        }
+
+        carriedHash = hash;
+        carriedKey = key;
+        carriedValue = value;
+        return false;
+    }
+
+    private boolean placeInBucket(int bucket, int hash, Object key, Object value) {
+        int index = bucket * BUCKET_SIZE;
+        for (int i = index; i < index + BUCKET_SIZE; i++) {
+            if (hashes[i] == 0) {
+                hashes[i] = hash;
+                keyTable[i] = key;
+                valueTable[i] = value;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void removeAt(int index) {
+        if (index < capacity) {
+            hashes[index] = 0;
+            keyTable[index] = null;
+            valueTable[index] = null;
+        } else {
+            int i = index - capacity;
+            int last = --stashSize;
+            stashHashes[i] = stashHashes[last];
+            stashKeys[i] = stashKeys[last];
+            stashValues[i] = stashValues[last];
+            stashKeys[last] = null;
+            stashValues[last] = null;
+        }
+        size--;
+    }
+
+//  Moves every entry, stashed ones included, into a table of newCapacity slots
+    private void rehash(int newCapacity) {
+        if (newCapacity > MAXIMUM_CAPACITY) {
+            throw new IllegalStateException("HashTable capacity exceeded");
+        }
+
+        int oldCapacity = capacity;
+        int[] oldHashes = hashes;
+        Object[] oldKeys = keyTable;
+        Object[] oldValues = valueTable;
+        int[] oldStashHashes = stashHashes;
+        Object[] oldStashKeys = stashKeys;
+        Object[] oldStashValues = stashValues;
+        int oldStashSize = stashSize;
+
+        allocate(newCapacity);
+        stashHashes = new int[STASH_SIZE];
+        stashKeys = new Object[STASH_SIZE];
+        stashValues = new Object[STASH_SIZE];
+        stashSize = 0;
+
+        for (int i = 0; i < oldCapacity; i++) {
+            if (oldHashes[i] != 0) {
+                insert(oldHashes[i], oldKeys[i], oldValues[i]);
+            }
+        }
+        for (int i = 0; i < oldStashSize; i++) {
+            insert(oldStashHashes[i], oldStashKeys[i], oldStashValues[i]);
+        }
+    }
+
+//  Number of stashed entries, for tests of keys that no bucket can take
+    int stashSize() {
+        return stashSize;
+    }
+
+    @Override
+    int slotLimit() {
+        return capacity + stashSize;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    K keyAt(int index) {
+        return (K) (index < capacity ? keyTable[index] : stashKeys[index - capacity]);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    V valueAt(int index) {
+        return (V) (index < capacity ? valueTable[index] : stashValues[index - capacity]);
+    }
+
+    @Override
+    void setValueAt(int index, V value) {
+        if (index < capacity) {
+            valueTable[index] = value;
+        } else {
+            stashValues[index - capacity] = value;
+        }
+    }
+}
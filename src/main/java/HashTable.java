@@ -1,20 +1,178 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.security.SecureRandom;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
+import java.util.function.BiPredicate;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.IntPredicate;
+import java.util.function.LongBinaryOperator;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.ToIntBiFunction;
+import java.util.function.ToLongFunction;
 
 public class HashTable<K, V> implements Map<K, V> {
 
-    private final int HASH_CONST = 47;
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+//  Slot states; a slot that was never used ends every probe sequence that reaches it
+    private static final byte EMPTY = 0;
+    private static final byte FULL = 1;
+    private static final byte DELETED = 2;
+//  Only used while purgeDeleted() runs: an entry that has not been put back yet
+    private static final byte PENDING = 3;
+
+//  A remove() that leaves more than this share of the slots as tombstones cleans the table up in place
+    private static final float MAX_DELETED_RATIO = 0.25f;
 
     private int size = 0;
     private int capacity = 16;
-    private boolean[] deletedCells;
+    private int deletedCount = 0;
+//  Bumped by every change that adds, removes or moves entries
+    private int modCount = 0;
     private float loadFactor = 0.75f;
-    private Cell<K,V>[] table;
+    private int threshold;
+
+//  Entries are stored column-wise: keyTable[i] and valueTable[i] belong to slot i, states[i] says whether it is in use.
+//  hashes[i] caches the spread hash of the key, so probes compare it before calling equals() and
+//  rebuilding the table never calls hashCode() again.
+    private Object[] keyTable;
+    private Object[] valueTable;
+    private int[] hashes;
+    private byte[] states;
+
+//  While an incremental rehash is in progress the previous arrays stay here and are drained a few
+//  slots per update. Slot numbers from capacity upwards address them, so callers see a single index space.
+    private static final int MIGRATION_STEP = 64;
+    private final boolean incrementalRehash;
+    private Object[] oldKeyTable;
+    private Object[] oldValueTable;
+    private int[] oldHashes;
+    private byte[] oldStates;
+    private int migrateIndex;
+
+//  In bounded mode entries are evicted once their total weight exceeds maximumWeight; weigher is null otherwise.
+//  referenced[i] is the CLOCK bit of slot i: every access sets it, and the hand clears it while sweeping past,
+//  so the first entry the hand finds unreferenced is the victim. TINY_LFU also requires a new entry to have
+//  been seen more often than the victim, according to the sketch, or evicts the new entry instead.
+    public enum Eviction { CLOCK, TINY_LFU }
+
+    private final long maximumWeight;
+    private final ToIntBiFunction<? super K, ? super V> weigher;
+    private final FrequencySketch sketch;
+    private long weightedSize;
+    private byte[] referenced;
+    private byte[] oldReferenced;
+    private int clockHand;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+//  Entries with a deadline count as absent once the ticker has passed it, and the wheel reclaims them as
+//  tombstones on a later update. deadlines[i] is the deadline of slot i in nanoseconds since epoch, 0 for none;
+//  the array and the wheel only exist once some entry has had a deadline. With an expiry policy every entry is
+//  given one: writes set it to expiryNanos from now, and under AFTER_ACCESS every lookup that finds the entry
+//  moves it that far ahead as well. Without a policy only put(key, value, ttl) sets deadlines.
+    public enum Expiry { AFTER_WRITE, AFTER_ACCESS }
+
+    private Expiry expiry;
+    private long expiryNanos;
+    private LongSupplier ticker = System::nanoTime;
+    private long epoch;
+    private long[] deadlines;
+    private long[] oldDeadlines;
+    private TimerWheel wheel;
+
+//  Probe and rehash metrics, only kept when -Dhashtable.metrics=true; otherwise metrics is null and every
+//  "if (METRICS)" hook is folded away by the JIT. probes passes the length of the last find() to its caller.
+    private static final boolean METRICS = HashTableMetrics.ENABLED;
+    private final HashTableMetrics metrics = METRICS ? new HashTableMetrics() : null;
+    private int probes;
+
+//  Every table mixes its own random seed into the hashes, so which keys share a probe sequence differs from table
+//  to table and cannot be worked out in advance. Keys with equal hashCode() values still collide under any seed;
+//  against those only a keyed hash of the contents helps, and strings get one, as do byte arrays under
+//  HashingStrategy.BYTE_ARRAYS: an insert that probes more than probeLimit slots, far more than the load
+//  factor explains, makes the table hash those with SipHash under fresh keys, take a new seed and rebuild
+//  itself in place. Other keys only get the new seed. A table
+//  reseeds at most once per doubling of its size, so keys that keep colliding cost a rebuild per doubling
+//  rather than one per insert.
+    private static final int MIN_PROBE_LIMIT = 100;
+//  Compares and hashes the keys in place of their equals() and hashCode(); null for those
+    private final HashingStrategy<? super K> strategy;
+    private static final SecureRandom SIP_KEYS = new SecureRandom();
+    private int seed = ThreadLocalRandom.current().nextInt();
+    private boolean keyed;
+    private long sipKey0;
+    private long sipKey1;
+    private int probeLimit;
+    private int reseedCount;
+    private int reseedSize;
+
+//  In bidirectional mode inverseIndex maps every value to its key, so that containsValue() and inverse() find
+//  values with a probe instead of a scan; null otherwise. Values are then unique just like the keys.
+    private ValueIndex inverseIndex;
+    private Map<V, K> inverse;
+
+
+    public HashTable(int capacity, float loadFactor, boolean incrementalRehash) {
+        this(capacity, loadFactor, incrementalRehash, Long.MAX_VALUE, null, null, null);
+    }
+
+//  A table that compares and hashes keys with the strategy instead of their own equals() and hashCode().
+//  Lookups hand the strategy whatever key they are given, so a key of the wrong type fails with a
+//  ClassCastException. equals() and hashCode() of the table itself still follow those of Map.
+    public HashTable(int capacity, float loadFactor, HashingStrategy<? super K> strategy) {
+        this(capacity, loadFactor, false, Long.MAX_VALUE, null, null, Objects.requireNonNull(strategy));
+    }
 
+    public HashTable(HashingStrategy<? super K> strategy) {
+        this(16, 0.75f, strategy);
+    }
+
+//  A table that also indexes its values by their equals() and hashCode(), so that containsValue() takes a probe
+//  and inverse() looks keys up by value. Values must be unique: storing a value that another key holds throws
+//  IllegalArgumentException and leaves the table as it was. Values must not change their equals() or hashCode()
+//  while stored, since the index would no longer find them; upsert(), which exists to mutate values in place,
+//  throws IllegalStateException on such a table.
+    public static <K, V> HashTable<K, V> bidirectional(int capacity, float loadFactor) {
+        HashTable<K, V> table = new HashTable<>(capacity, loadFactor);
+        table.inverseIndex = new ValueIndex();
+        return table;
+    }
+
+//  A bounded table of at most maximumSize entries. Evictions leave tombstones that are only purged once they take
+//  a quarter of the slots, so the table starts at twice the size it will ever hold and never has to grow.
+    public HashTable(int maximumSize, Eviction eviction) {
+        this((int) Math.min(2L * maximumSize + 2, MAXIMUM_CAPACITY), 0.75f, false,
+                maximumSize, (key, value) -> 1, Objects.requireNonNull(eviction), null);
+    }
+
+//  A bounded table whose entries weigh at most maximumWeight together. An entry is weighed when it is stored,
+//  and its weight must not change while it stays in the table.
+    public HashTable(long maximumWeight, ToIntBiFunction<? super K, ? super V> weigher, Eviction eviction) {
+        this(16, 0.75f, false, maximumWeight, Objects.requireNonNull(weigher), Objects.requireNonNull(eviction), null);
+    }
+
+    private HashTable(int capacity, float loadFactor, boolean incrementalRehash,
+                      long maximumWeight, ToIntBiFunction<? super K, ? super V> weigher, Eviction eviction,
+                      HashingStrategy<? super K> strategy) {
+        if (maximumWeight < 0) {
+            throw new IllegalArgumentException("Illegal Maximum: " + maximumWeight);
+        }
 
-    public HashTable(int capacity, float loadFactor) {
         if (capacity < 0) {
             throw new IllegalArgumentException(
                     "Illegal Capacity: " + capacity
@@ -30,8 +188,42 @@ public class HashTable<K, V> implements Map<K, V> {
         }
 
         this.loadFactor = loadFactor;
-        table = new Cell[capacity];
-        deletedCells = new boolean[capacity];
+        this.incrementalRehash = incrementalRehash;
+        this.strategy = strategy;
+        this.capacity = tableSizeFor(capacity);
+        this.threshold = thresholdFor(this.capacity);
+        this.probeLimit = probeLimitFor(loadFactor);
+        keyTable = new Object[this.capacity];
+        valueTable = new Object[this.capacity];
+        hashes = new int[this.capacity];
+        states = new byte[this.capacity];
+
+        this.maximumWeight = maximumWeight;
+        this.weigher = weigher;
+        if (weigher != null) {
+            referenced = new byte[this.capacity];
+            sketch = eviction == Eviction.TINY_LFU ? new FrequencySketch(maximumWeight) : null;
+        } else {
+            sketch = null;
+        }
+    }
+
+//  A table whose entries expire the given time after they were last written, or last read or written
+    public HashTable(int capacity, Expiry expiry, Duration duration) {
+        this(capacity, Objects.requireNonNull(expiry), duration, System::nanoTime);
+    }
+
+//  Lets tests supply the clock; expiry may be null for a table whose entries only expire through put(key, value, ttl)
+    HashTable(int capacity, Expiry expiry, Duration duration, LongSupplier ticker) {
+        this(capacity, 0.75f);
+        this.expiry = expiry;
+        this.expiryNanos = expiry == null ? 0 : toNanos(duration);
+        this.ticker = Objects.requireNonNull(ticker);
+        enableExpiry();
+    }
+
+    public HashTable(int capacity, float loadFactor) {
+        this(capacity, loadFactor, false);
     }
 
     public HashTable(int capacity) {
@@ -62,10 +254,18 @@ public class HashTable<K, V> implements Map<K, V> {
         if (value == null) {
             throw new NullPointerException("HashTable does not permit null values");
         }
+        if (inverseIndex != null) {
+            return slotOfValue(value) >= 0;
+        }
 
         for (int i = 0; i < capacity; i++) {
-            if (!deletedCells[i] && table[i] != null) {
-                if (value.equals(table[i].getValue())) {
+            if (states[i] == FULL && value.equals(valueTable[i]) && !isExpired(i)) {
+                return true;
+            }
+        }
+        if (oldStates != null) {
+            for (int i = migrateIndex; i < oldStates.length; i++) {
+                if (oldStates[i] == FULL && value.equals(oldValueTable[i]) && !isExpired(capacity + i)) {
                     return true;
                 }
             }
@@ -76,10 +276,13 @@ public class HashTable<K, V> implements Map<K, V> {
     @Override
     public V get(Object key) {
         int index = contains(key);
+        if (weigher != null) {
+            recordRead(index);
+        }
         if (index < 0) {
             return null;
         }
-        return table[index].getValue();
+        return valueAt(index);
     }
 
     @Override
@@ -88,45 +291,132 @@ public class HashTable<K, V> implements Map<K, V> {
             throw new NullPointerException();
         }
 
-        if (contains(key) >= 0) {
-            int index = this.contains(key);
-            V oldValue = table[index].getValue();
-            table[index].setValue(value);
+        int index = findOrInsertSlot(key);
+        if (index >= 0) {
+            V oldValue = valueAt(index);
+            setValueAt(index, value);
             return oldValue;
         }
 
-        size++;
-        double newLoadFactor = (double) size / capacity;
-        if (newLoadFactor >= loadFactor) {
-            rehash();
+        insertAt(-index - 1, key, value);
+//      Returns null if there was no mapping for key before
+        return null;
+    }
+
+//  Same as put(), but the entry expires once ttl has passed, whatever the expiry policy of the table.
+//  Only a later write that comes with its own ttl or falls under a policy changes the deadline again.
+    public V put(K key, V value, Duration ttl) {
+        if (value == null || key == null) {
+            throw new NullPointerException();
         }
+        long nanos = toNanos(ttl);
+        enableExpiry();
 
-        int index = findEmptyIndex(key);
-        Cell<K,V> newCell = new Cell<>(key, value);
-        table[index] = newCell;
+        int index = findOrInsertSlot(key);
+        long deadline = deadlineAfter(nanos);
+        if (index >= 0) {
+            V oldValue = valueAt(index);
+            setValueAt(index, value);
+//          A bounded table may have evicted the entry right away
+            if (stateAt(index) == FULL) {
+                expireAt(index, deadline);
+            }
+            return oldValue;
+        }
 
-//      Returns null if there was no mapping for key before
+        insertAt(-index - 1, key, value, deadline);
         return null;
     }
 
+//  Creates the value with init if key has none, then passes the stored value to update, all with a single probe.
+//  Meant for mutable values that are changed in place, e.g. upsert(word, LongAdder::new, LongAdder::increment).
+    public V upsert(K key, Supplier<? extends V> init, Consumer<? super V> update) {
+        Objects.requireNonNull(init);
+        Objects.requireNonNull(update);
+        if (inverseIndex != null) {
+            throw new IllegalStateException("upsert() is not supported by a bidirectional HashTable");
+        }
+
+        int index = findOrInsertSlot(key);
+        V value;
+        if (index >= 0) {
+            value = valueAt(index);
+            if (expiry != null) {
+                expireAt(index, deadlineAfter(expiryNanos));
+            }
+        } else {
+            int expectedModCount = modCount;
+            value = Objects.requireNonNull(init.get(), "Initial value is null");
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            insertAt(-index - 1, key, value);
+        }
+        update.accept(value);
+        return value;
+    }
+
 
     @Override
     public V remove(Object key) {
+        expireEntries();
         int index = contains(key);
 
         if (index < 0) {
             return null;
         }
 
-        V deletedValue = table[index].getValue();
+        V deletedValue = valueAt(index);
+        removeAt(index);
+        return deletedValue;
+    }
+
+    private void removeAt(int index) {
+        removeSlot(index);
+        cleanUpAfterRemoval();
+    }
 
+    private void removeSlot(int index) {
+        if (inverseIndex != null) {
+            inverseIndex.remove(valueAt(index));
+        }
+        if (weigher != null) {
+            weightedSize -= weigh(keyAt(index), valueAt(index));
+            referenced[index] = 0;
+        }
         size--;
-        deletedCells[index] = true;
-        return deletedValue;
+        modCount++;
+        if (index < capacity) {
+            deletedCount++;
+            keyTable[index] = null;
+            valueTable[index] = null;
+            states[index] = DELETED;
+        } else {
+//          The old table is discarded once drained, so its tombstones are not counted
+            index -= capacity;
+            oldKeyTable[index] = null;
+            oldValueTable[index] = null;
+            oldStates[index] = DELETED;
+        }
+    }
+
+    private void cleanUpAfterRemoval() {
+        if (oldStates != null) {
+            migrate(MIGRATION_STEP);
+        } else if (deletedCount > capacity * MAX_DELETED_RATIO) {
+//          An incremental table must not stop for a rebuild of every slot, so it migrates into a fresh
+//          table of the same size instead, which later updates drain MIGRATION_STEP slots at a time
+            if (incrementalRehash) {
+                resize(capacity);
+            } else {
+                purgeDeleted();
+            }
+        }
     }
 
     @Override
     public void putAll(Map<? extends K, ? extends V> map) {
+        presize(size + map.size());
         for (Map.Entry<? extends K, ? extends V> elem : map.entrySet()) {
             put(elem.getKey(), elem.getValue());
         }
@@ -134,11 +424,329 @@ public class HashTable<K, V> implements Map<K, V> {
 
     @Override
     public void clear() {
-        for (int i = 0; i < capacity; i++) {
-            table[i] = null;
+        Arrays.fill(keyTable, null);
+        Arrays.fill(valueTable, null);
+        Arrays.fill(states, EMPTY);
+        dropOldTable();
+        if (inverseIndex != null) {
+            inverseIndex.clear();
         }
         size = 0;
-        deletedCells = new boolean[capacity];
+        deletedCount = 0;
+        modCount++;
+        if (referenced != null) {
+            Arrays.fill(referenced, (byte) 0);
+            weightedSize = 0;
+        }
+        if (deadlines != null) {
+            Arrays.fill(deadlines, 0);
+            wheel.clear();
+        }
+    }
+
+//  Drops all tombstones and finishes a pending incremental rehash, so that misses stop as early as possible
+    public void compact() {
+        if (oldStates != null) {
+            migrate(oldStates.length);
+        }
+        if (deletedCount > 0) {
+            purgeDeleted();
+        }
+    }
+
+//  The batch operations work on groups of BATCH keys in two passes. The first hashes every key of the group
+//  and reads the state of its home slot; these reads do not depend on each other, so their cache misses
+//  overlap instead of being paid one after another. The second pass resolves the keys, settling those whose
+//  home slot was empty without a probe, and finds the other home slots already in cache.
+    private static final int BATCH = 16;
+
+//  Looks up every key, storing its value, or null when absent, at the same index of out; returns the number found
+    public int getAll(K[] keys, V[] out) {
+        if (out.length < keys.length) {
+            throw new IllegalArgumentException("Output too short: " + out.length + " < " + keys.length);
+        }
+
+        int[] batchHashes = new int[Math.min(BATCH, keys.length)];
+        byte[] homeStates = new byte[batchHashes.length];
+        int found = 0;
+        for (int from = 0; from < keys.length; from += BATCH) {
+            int to = Math.min(from + BATCH, keys.length);
+            hashBatch(keys, from, to, batchHashes, homeStates);
+            for (int i = from; i < to; i++) {
+                int hash = batchHashes[i - from];
+                byte homeState = homeStates[i - from];
+                int home = hash1(hash, capacity);
+                int index;
+//              Nothing changes between the passes, so an empty home slot still means the key is absent
+                if (homeState == EMPTY && oldStates == null) {
+                    index = -1;
+                    if (METRICS) {
+                        metrics.lookup(false, 1, capacity, size);
+                    }
+                } else if (homeState == FULL && deadlines == null
+                        && hashes[home] == hash && keyEquals(keyTable[home], keys[i])) {
+                    index = home;
+                    if (METRICS) {
+                        metrics.lookup(true, 1, capacity, size);
+                    }
+                } else {
+                    index = contains(keys[i], hash);
+                }
+                if (weigher != null) {
+                    recordRead(index);
+                }
+                if (index >= 0) {
+                    out[i] = valueAt(index);
+                    found++;
+                } else {
+                    out[i] = null;
+                }
+            }
+        }
+        return found;
+    }
+
+//  Same as put() for every pair, with a later duplicate key winning, but the table grows at most once
+    public void putAll(K[] keys, V[] values) {
+        if (keys.length != values.length) {
+            throw new IllegalArgumentException("Keys and values differ in length: " + keys.length + " != " + values.length);
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] == null) throw new NullPointerException("HashTable does not permit null keys");
+            if (values[i] == null) throw new NullPointerException();
+        }
+
+        presize(size + keys.length);
+        int[] batchHashes = new int[Math.min(BATCH, keys.length)];
+        byte[] homeStates = new byte[batchHashes.length];
+        for (int from = 0; from < keys.length; from += BATCH) {
+            int to = Math.min(from + BATCH, keys.length);
+            hashBatch(keys, from, to, batchHashes, homeStates);
+            int batchReseeds = reseedCount;
+            for (int i = from; i < to; i++) {
+//              A key earlier in the batch may have made the table reseed, which leaves the batch hashes stale
+                if (reseedCount != batchReseeds) {
+                    put(keys[i], values[i]);
+                    continue;
+                }
+                int hash = batchHashes[i - from];
+                int home = hash1(hash, capacity);
+//              An earlier key of the batch may have taken the home slot since, so it is checked again. While
+//              it is still empty the key cannot be anywhere in the table and the slot is where it goes.
+                if (homeStates[i - from] == EMPTY && states[home] == EMPTY
+                        && oldStates == null && size + deletedCount < threshold) {
+                    hashes[home] = hash;
+                    insertAt(home, keys[i], values[i]);
+                    continue;
+                }
+                int index = findOrInsertSlot(keys[i], hash);
+                if (index >= 0) {
+                    setValueAt(index, values[i]);
+                } else {
+                    insertAt(-index - 1, keys[i], values[i]);
+                }
+            }
+        }
+    }
+
+//  Removes every key of the collection that is in the table; returns whether the table changed
+    public boolean removeAll(Collection<?> keys) {
+        Object[] batch = keys.toArray();
+        int[] batchHashes = new int[Math.min(BATCH, batch.length)];
+        byte[] homeStates = new byte[batchHashes.length];
+        boolean modified = false;
+        for (int from = 0; from < batch.length; from += BATCH) {
+            int to = Math.min(from + BATCH, batch.length);
+            hashBatch(batch, from, to, batchHashes, homeStates);
+//          Removals may finish a migration midway, so it matters whether an old table existed when the states were read
+            boolean migrated = oldStates == null;
+            for (int i = from; i < to; i++) {
+//              Removals only ever take keys out, so a key whose home slot was empty is still absent
+                if (homeStates[i - from] == EMPTY && migrated) {
+                    continue;
+                }
+                int index = contains(batch[i], batchHashes[i - from]);
+                if (index >= 0) {
+                    removeAt(index);
+                    modified = true;
+                }
+            }
+        }
+        return modified;
+    }
+
+    private void hashBatch(Object[] keys, int from, int to, int[] batchHashes, byte[] homeStates) {
+        for (int i = from; i < to; i++) {
+            Object key = keys[i];
+            if (key == null) throw new NullPointerException("HashTable does not permit null keys");
+            int hash = spread(key);
+            batchHashes[i - from] = hash;
+            homeStates[i - from] = states[hash1(hash, capacity)];
+        }
+    }
+
+//  A snapshot is a header, the records and a CRC32C of everything before it, all little-endian. The header is
+//  magic, version, flags, entry count, capacity and load factor. A record is the key and value lengths and
+//  bytes as the codecs encode them. A raw-layout snapshot also stores the seed, the SipHash key and the slot
+//  states after the header and the cached hash in front of every record, and its records come in slot order,
+//  so the table can be restored slot for slot without calling hashCode() or probing. Version 1 snapshots
+//  predate seeds, and their hashes are those of seed 0.
+    private static final int SNAPSHOT_MAGIC = 0x4E535448;
+    private static final int SNAPSHOT_VERSION = 2;
+    private static final int SNAPSHOT_HEADER_BYTES = 24;
+    private static final int SNAPSHOT_SEED_BYTES = 24;
+    private static final int RAW_LAYOUT = 1;
+
+//  Writes every entry to the channel. The raw layout is only valid for keys whose hashCode() gives the same
+//  value in the process that reads the snapshot back, as it does for strings, boxed primitives and enums.
+    public void writeSnapshot(WritableByteChannel channel, Codec<? super K> keyCodec, Codec<? super V> valueCodec,
+                              boolean rawLayout) throws IOException {
+//      Deadlines are not part of a snapshot, so entries already expired are reclaimed instead of written
+        expireEntries();
+        if (rawLayout && oldStates != null) {
+            migrate(oldStates.length);
+        }
+
+        SnapshotChannels.Output out = new SnapshotChannels.Output(channel);
+        out.reserve(SNAPSHOT_HEADER_BYTES)
+                .putInt(SNAPSHOT_MAGIC)
+                .putInt(SNAPSHOT_VERSION)
+                .putInt(rawLayout ? RAW_LAYOUT : 0)
+                .putInt(size)
+                .putInt(capacity)
+                .putFloat(loadFactor);
+        if (rawLayout) {
+            out.reserve(SNAPSHOT_SEED_BYTES)
+                    .putInt(seed)
+                    .putInt(keyed ? 1 : 0)
+                    .putLong(sipKey0)
+                    .putLong(sipKey1);
+            out.write(states);
+        }
+
+        int recordHeader = (rawLayout ? Integer.BYTES : 0) + 2 * Integer.BYTES;
+        for (int i = 0; i < slotCount(); i++) {
+            if (stateAt(i) != FULL) {
+                continue;
+            }
+            K key = keyAt(i);
+            V value = valueAt(i);
+            int keyLength = keyCodec.fixedLength() >= 0 ? keyCodec.fixedLength() : keyCodec.length(key);
+            int valueLength = valueCodec.fixedLength() >= 0 ? valueCodec.fixedLength() : valueCodec.length(value);
+
+            ByteBuffer buffer = out.reserve(recordHeader + keyLength + valueLength);
+            if (rawLayout) {
+                buffer.putInt(hashes[i]);
+            }
+            buffer.putInt(keyLength).putInt(valueLength);
+            int start = buffer.position();
+            keyCodec.write(key, buffer);
+            valueCodec.write(value, buffer);
+            if (buffer.position() - start != keyLength + valueLength) {
+                throw new IllegalStateException(
+                        "Codecs wrote " + (buffer.position() - start) + " bytes instead of " + (keyLength + valueLength));
+            }
+        }
+        out.finish();
+    }
+
+//  Reads a table written by writeSnapshot(). The table is sized for all entries up front, and every entry goes
+//  straight into a free slot of its probe sequence, without equals() or a rehash; a raw-layout snapshot
+//  restores the slots as they were.
+    public static <K, V> HashTable<K, V> readSnapshot(ReadableByteChannel channel, Codec<K> keyCodec,
+                                                      Codec<V> valueCodec) throws IOException {
+        return readSnapshot(channel, keyCodec, valueCodec, null);
+    }
+
+//  Reads a snapshot of a table with a hashing strategy, which must be the one the table was written with
+    public static <K, V> HashTable<K, V> readSnapshot(ReadableByteChannel channel, Codec<K> keyCodec, Codec<V> valueCodec,
+                                                      HashingStrategy<? super K> strategy) throws IOException {
+        SnapshotChannels.Input in = new SnapshotChannels.Input(channel);
+        ByteBuffer header = in.require(SNAPSHOT_HEADER_BYTES);
+        if (header.getInt() != SNAPSHOT_MAGIC) {
+            throw new IOException("Not a HashTable snapshot");
+        }
+        int version = header.getInt();
+        if (version != SNAPSHOT_VERSION && version != 1) {
+            throw new IOException("Unsupported snapshot version " + version);
+        }
+        boolean rawLayout = (header.getInt() & RAW_LAYOUT) != 0;
+        int count = header.getInt();
+        int capacity = header.getInt();
+        float loadFactor = header.getFloat();
+        if (count < 0 || capacity <= 0 || Integer.bitCount(capacity) != 1 || capacity > MAXIMUM_CAPACITY
+                || !(loadFactor > 0)) {
+            throw new IOException("Corrupt snapshot header");
+        }
+
+        HashTable<K, V> table;
+        if (rawLayout) {
+            table = new HashTable<>(capacity, loadFactor, false, Long.MAX_VALUE, null, null, strategy);
+            table.seed = 0;
+            if (version != 1) {
+                ByteBuffer seeds = in.require(SNAPSHOT_SEED_BYTES);
+                table.seed = seeds.getInt();
+                table.keyed = seeds.getInt() != 0;
+                table.sipKey0 = seeds.getLong();
+                table.sipKey1 = seeds.getLong();
+            }
+            in.readFully(table.states);
+            for (int i = 0; i < capacity; i++) {
+                byte state = table.states[i];
+                if (state == FULL) {
+                    table.size++;
+                } else if (state == DELETED) {
+                    table.deletedCount++;
+                } else if (state != EMPTY) {
+                    throw new IOException("Corrupt snapshot slot states");
+                }
+            }
+            if (table.size != count) {
+                throw new IOException("Corrupt snapshot slot states");
+            }
+            for (int i = 0; i < capacity; i++) {
+                if (table.states[i] == FULL) {
+                    table.hashes[i] = in.require(Integer.BYTES).getInt();
+                    table.readRecord(in, i, keyCodec, valueCodec);
+                }
+            }
+        } else {
+            table = new HashTable<>(16, loadFactor, false, Long.MAX_VALUE, null, null, strategy);
+            table.presize(count);
+            for (int n = 0; n < count; n++) {
+                table.readRecord(in, -1, keyCodec, valueCodec);
+                table.size++;
+            }
+        }
+        in.finish();
+        return table;
+    }
+
+//  Reads one record into slot index, or into the first free slot of the key's probe sequence if index is -1
+    private void readRecord(SnapshotChannels.Input in, int index, Codec<K> keyCodec, Codec<V> valueCodec) throws IOException {
+        ByteBuffer buffer = in.require(2 * Integer.BYTES);
+        int keyLength = buffer.getInt();
+        int valueLength = buffer.getInt();
+        if (keyLength < 0 || valueLength < 0 || (long) keyLength + valueLength > Integer.MAX_VALUE) {
+            throw new IOException("Corrupt snapshot record");
+        }
+
+        buffer = in.require(keyLength + valueLength);
+        int start = buffer.position();
+        K key = keyCodec.read(buffer, keyLength);
+        V value = valueCodec.read(buffer, valueLength);
+        if (buffer.position() - start != keyLength + valueLength || key == null || value == null) {
+            throw new IOException("Corrupt snapshot record");
+        }
+
+        if (index < 0) {
+            int hash = spread(key);
+            index = findEmptyIndex(hash);
+            hashes[index] = hash;
+            states[index] = FULL;
+        }
+        keyTable[index] = key;
+        valueTable[index] = value;
     }
 
     private Set<K> keySet;
@@ -162,6 +770,10 @@ public class HashTable<K, V> implements Map<K, V> {
             return getIterator(KEYS);
         }
 
+        public Spliterator<K> spliterator() {
+            return new HashSpliterator<>(KEYS);
+        }
+
         public int size() {
             return size;
         }
@@ -174,6 +786,11 @@ public class HashTable<K, V> implements Map<K, V> {
             return HashTable.this.remove(o) != null;
         }
 
+        public boolean removeIf(Predicate<? super K> filter) {
+            Objects.requireNonNull(filter);
+            return removeSlotsIf(index -> filter.test(keyAt(index)));
+        }
+
         public void clear() {
             HashTable.this.clear();
         }
@@ -192,6 +809,10 @@ public class HashTable<K, V> implements Map<K, V> {
             return getIterator(VALUES);
         }
 
+        public Spliterator<V> spliterator() {
+            return new HashSpliterator<>(VALUES);
+        }
+
         public int size() {
             return size;
         }
@@ -200,6 +821,11 @@ public class HashTable<K, V> implements Map<K, V> {
             return containsValue(o);
         }
 
+        public boolean removeIf(Predicate<? super V> filter) {
+            Objects.requireNonNull(filter);
+            return removeSlotsIf(index -> filter.test(valueAt(index)));
+        }
+
         public void clear() {
             HashTable.this.clear();
         }
@@ -218,12 +844,16 @@ public class HashTable<K, V> implements Map<K, V> {
             return getIterator(ENTRIES);
         }
 
+        public Spliterator<Entry<K, V>> spliterator() {
+            return new HashSpliterator<>(ENTRIES);
+        }
+
         public boolean add(Map.Entry<K, V> o) {
             return super.add(o);
         }
 
         public boolean contains(Object o) {
-            if (!(o instanceof Cell)) {
+            if (!(o instanceof HashTable.Cell)) {
                 return false;
             }
             Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
@@ -240,6 +870,11 @@ public class HashTable<K, V> implements Map<K, V> {
             return HashTable.this.remove(key) != null;
         }
 
+        public boolean removeIf(Predicate<? super Entry<K, V>> filter) {
+            Objects.requireNonNull(filter);
+            return removeSlotsIf(index -> filter.test(new Cell(index)));
+        }
+
         public void clear() {
             HashTable.this.clear();
         }
@@ -250,6 +885,99 @@ public class HashTable<K, V> implements Map<K, V> {
         }
     }
 
+//  The table seen from the values: a view whose keys are the values and whose values are the keys, backed by the
+//  value index. put(value, key) refuses a key the table holds for another value and moves a value held by
+//  another key over to key. Only bidirectional tables have one.
+    public Map<V, K> inverse() {
+        if (inverseIndex == null) {
+            throw new IllegalStateException("HashTable is not bidirectional");
+        }
+        if (inverse == null) {
+            inverse = new Inverse();
+        }
+        return inverse;
+    }
+
+    private class Inverse extends AbstractMap<V, K> {
+        private Set<Map.Entry<V, K>> entries;
+
+        public int size() {
+            return size;
+        }
+
+        public boolean containsKey(Object value) {
+            return HashTable.this.containsValue(value);
+        }
+
+        public boolean containsValue(Object key) {
+            return HashTable.this.containsKey(key);
+        }
+
+        public K get(Object value) {
+            int index = slotOfValue(Objects.requireNonNull(value));
+            return index >= 0 ? keyAt(index) : null;
+        }
+
+        public K put(V value, K key) {
+            int index = slotOfValue(Objects.requireNonNull(value));
+            K previous = index >= 0 ? keyAt(index) : null;
+            if (previous != null && keyEquals(previous, key)) {
+                return previous;
+            }
+            if (HashTable.this.containsKey(key)) {
+                throw new IllegalArgumentException("Value already present: " + key);
+            }
+            if (previous != null) {
+                HashTable.this.remove(previous);
+            }
+            HashTable.this.put(key, value);
+            return previous;
+        }
+
+        public K remove(Object value) {
+            int index = slotOfValue(Objects.requireNonNull(value));
+            if (index < 0) {
+                return null;
+            }
+            K key = keyAt(index);
+            HashTable.this.remove(key);
+            return key;
+        }
+
+        public void clear() {
+            HashTable.this.clear();
+        }
+
+        public Set<Map.Entry<V, K>> entrySet() {
+            if (entries == null) {
+                entries = new AbstractSet<>() {
+                    public Iterator<Map.Entry<V, K>> iterator() {
+                        Iterator<Map.Entry<K, V>> iterator = getIterator(ENTRIES);
+                        return new Iterator<>() {
+                            public boolean hasNext() {
+                                return iterator.hasNext();
+                            }
+
+                            public Map.Entry<V, K> next() {
+                                Map.Entry<K, V> entry = iterator.next();
+                                return new AbstractMap.SimpleImmutableEntry<>(entry.getValue(), entry.getKey());
+                            }
+                        };
+                    }
+
+                    public int size() {
+                        return size;
+                    }
+
+                    public void clear() {
+                        HashTable.this.clear();
+                    }
+                };
+            }
+            return entries;
+        }
+    }
+
     @Override
     public boolean equals(Object o) {
         if (o == this) {
@@ -290,137 +1018,466 @@ public class HashTable<K, V> implements Map<K, V> {
 
     @Override
     public String toString() {
-        return Arrays.toString(table);
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < slotCount(); i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(stateAt(i) == FULL ? keyAt(i) + "=" + valueAt(i) : "null");
+        }
+        return sb.append(']').toString();
     }
 
     @Override
     public V getOrDefault(Object key, V defaultValue) {
         int index = contains(key);
+        if (weigher != null) {
+            recordRead(index);
+        }
         if (index >= 0) {
-            return table[index].getValue();
+            return valueAt(index);
         } else {
             return defaultValue;
         }
     }
 
+//  forEach(), replaceAll() and removeIf() walk the slot arrays directly, first the current table and then what is
+//  left of the old one, without iterators or entry objects; a change made by the callback fails them fast
     @Override
     public void forEach(BiConsumer<? super K, ? super V> action) {
         Objects.requireNonNull(action);
-
-        if (entrySet == null) {
-            entrySet = entrySet();
+        int expectedModCount = modCount;
+        forEachIn(keyTable, valueTable, states, 0, action, expectedModCount);
+        if (oldStates != null) {
+            forEachIn(oldKeyTable, oldValueTable, oldStates, migrateIndex, action, expectedModCount);
         }
+    }
 
-        int size = entrySet.size();
-
-        for (Entry<K, V> cell : entrySet) {
-            action.accept(cell.getKey(), cell.getValue());
-            if (entrySet.size() != size) {
-                throw new ConcurrentModificationException();
+    @SuppressWarnings("unchecked")
+    private void forEachIn(Object[] keys, Object[] values, byte[] states, int from,
+                           BiConsumer<? super K, ? super V> action, int expectedModCount) {
+        for (int i = from; i < states.length; i++) {
+            if (states[i] == FULL) {
+                action.accept((K) keys[i], (V) values[i]);
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
             }
         }
     }
 
     @Override
-    public synchronized void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
+    public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
         Objects.requireNonNull(function);
-
-        if (entrySet == null) {
-            entrySet = entrySet();
+        int expectedModCount = modCount;
+        for (int i = nextFull(0, slotCount()); i < slotCount(); i = nextFull(i + 1, slotCount())) {
+            V newValue = function.apply(keyAt(i), valueAt(i));
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            storeValueAt(i, Objects.requireNonNull(newValue));
+            expectedModCount = modCount;
         }
+        evictOverweight();
+    }
 
-        int size = entrySet.size();
+//  Removes every entry the filter accepts; returns whether any was removed. Removed slots become tombstones and
+//  are cleaned up once at the end, so no entry moves while the loop runs.
+    public boolean removeIf(BiPredicate<? super K, ? super V> filter) {
+        Objects.requireNonNull(filter);
+        return removeSlotsIf(index -> filter.test(keyAt(index), valueAt(index)));
+    }
 
-        for (Entry<K, V> cell : entrySet) {
-            Objects.requireNonNull(
-                    cell.setValue(function.apply(cell.getKey(), cell.getValue()))
-            );
-            if (entrySet.size() != size) {
+    private boolean removeSlotsIf(IntPredicate filter) {
+        int expectedModCount = modCount;
+        boolean removed = false;
+        for (int i = nextFull(0, slotCount()); i < slotCount(); i = nextFull(i + 1, slotCount())) {
+            boolean remove = filter.test(i);
+            if (modCount != expectedModCount) {
                 throw new ConcurrentModificationException();
             }
+            if (remove) {
+                removeSlot(i);
+                expectedModCount = modCount;
+                removed = true;
+            }
         }
-    }
-
-    @Override
-    public V putIfAbsent(K key, V value) {
-        int index = contains(key);
-        if (index >= 0) {
-            return table[index].getValue();
-        } else {
-            return put(key, value);
+        if (removed) {
+            cleanUpAfterRemoval();
         }
+        return removed;
     }
 
-    @Override
-    public boolean remove(Object key, Object value) {
-        V curValue = get(key);
+//  A position in the table that advance() moves from entry to entry and reset() rewinds, so a loop that runs every
+//  tick can keep one cursor and allocate nothing. remove() leaves a tombstone and the cleanup waits until the cursor
+//  reaches the end or is reset, as do the evictions a heavier value from setValue() calls for in a bounded table,
+//  so entries never move under it; any other change to the table makes the next call throw
+//  ConcurrentModificationException, until reset().
+    public interface Cursor<K, V> {
+        boolean advance();
 
-        if (!Objects.equals(curValue, value)) {
-            return false;
-        }
+        K key();
 
-        remove(key);
-        return true;
-    }
+        V value();
 
-    @Override
-    public boolean replace(K key, V oldValue, V newValue) {
-        if (oldValue == null) throw new NullPointerException();
+        V setValue(V value);
 
-        int index = contains(key);
-        if (index < 0 || !table[index].getValue().equals(oldValue)) {
-            return false;
-        }
+        void remove();
 
-        table[index].setValue(newValue);
-        return true;
+        void reset();
     }
 
-    @Override
-    public V replace(K key, V value) {
-        int index = contains(key);
-        if (index < 0) {
-            return null;
-        }
-
-        V old = table[index].getValue();
-        table[index].setValue(value);
-        return old;
+    public Cursor<K, V> cursor() {
+        return new SlotCursor();
     }
 
-    @Override
-    public synchronized V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
-        Objects.requireNonNull(mappingFunction);
-
-        int index = contains(key);
-        if (index >= 0) {
-            return table[index].getValue();
-        } else {
-            V newValue = mappingFunction.apply(key);
+//  Every rebuild of the table changes modCount, which the cursor checks on every call, so it can keep the slot
+//  arrays it walks in fields. It walks the current table and then what is left of the old one; base is the
+//  table-wide slot number of index 0 of the arrays it is on.
+    private final class SlotCursor implements Cursor<K, V> {
+        private byte[] slotStates;
+        private Object[] slotKeys;
+        private Object[] slotValues;
+        private int base;
+        private int index;
+        private boolean positioned;
+        private boolean removed;
+        private int expectedModCount;
+
+        SlotCursor() {
+            rewind();
+        }
 
-            if (newValue == null) {
-                throw new NullPointerException("Computed value is null");
+        @Override
+        public boolean advance() {
+            checkModCount();
+            while (true) {
+                byte[] states = slotStates;
+                int i = index + 1;
+                while (i < states.length && states[i] != FULL) {
+                    i++;
+                }
+                if (i < states.length) {
+                    index = i;
+                    positioned = true;
+                    return true;
+                }
+                if (base == 0 && oldStates != null) {
+                    slotStates = oldStates;
+                    slotKeys = oldKeyTable;
+                    slotValues = oldValueTable;
+                    base = capacity;
+                    index = migrateIndex - 1;
+                    continue;
+                }
+                index = states.length;
+                positioned = false;
+                finish();
+                return false;
             }
-
-            put(key, newValue);
-            return newValue;
         }
-    }
 
-    @Override
-    public synchronized V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
-        Objects.requireNonNull(remappingFunction);
+        @Override
+        @SuppressWarnings("unchecked")
+        public K key() {
+            checkPositioned();
+            return (K) slotKeys[index];
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V value() {
+            checkPositioned();
+            return (V) slotValues[index];
+        }
+
+        @Override
+        public V setValue(V value) {
+            Objects.requireNonNull(value);
+            checkPositioned();
+            V oldValue = value();
+            storeValueAt(base + index, value);
+            return oldValue;
+        }
+
+        @Override
+        public void remove() {
+            checkPositioned();
+            removeSlot(base + index);
+            positioned = false;
+            removed = true;
+            expectedModCount = modCount;
+        }
+
+        @Override
+        public void reset() {
+            finish();
+            rewind();
+        }
+
+        private void rewind() {
+            slotStates = states;
+            slotKeys = keyTable;
+            slotValues = valueTable;
+            base = 0;
+            index = -1;
+            positioned = false;
+            expectedModCount = modCount;
+        }
+
+        private void finish() {
+            if (removed) {
+                removed = false;
+                cleanUpAfterRemoval();
+            }
+            evictOverweight();
+            expectedModCount = modCount;
+        }
+
+        private void checkModCount() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+
+        private void checkPositioned() {
+            checkModCount();
+            if (!positioned) {
+                throw new IllegalStateException("Cursor is not on an entry");
+            }
+        }
+    }
+
+//  Bulk operations in the style of ConcurrentHashMap. Once the table holds at least parallelismThreshold entries,
+//  the slots are split into ranges that run on the common ForkJoinPool; Long.MAX_VALUE keeps everything on the
+//  calling thread, and 1 splits as far as the pool can use. The functions may run on several threads at once and
+//  must not change the table; a change is reported afterwards as a ConcurrentModificationException.
+    public void forEach(long parallelismThreshold, BiConsumer<? super K, ? super V> action) {
+        Objects.requireNonNull(action);
+        bulk(parallelismThreshold, (from, to) -> {
+            for (int i = nextFull(from, to); i < to; i = nextFull(i + 1, to)) {
+                action.accept(keyAt(i), valueAt(i));
+            }
+            return null;
+        }, (a, b) -> null);
+    }
+
+//  Combines all values with reducer, or returns null if the table is empty
+    public V reduceValues(long parallelismThreshold, BiFunction<? super V, ? super V, ? extends V> reducer) {
+        return reduceValues(parallelismThreshold, Function.identity(), reducer);
+    }
+
+//  Combines the non-null results of transformer for all values with reducer, or returns null if there are none
+    public <U> U reduceValues(long parallelismThreshold, Function<? super V, ? extends U> transformer,
+                              BiFunction<? super U, ? super U, ? extends U> reducer) {
+        Objects.requireNonNull(transformer);
+        Objects.requireNonNull(reducer);
+        return bulk(parallelismThreshold, (from, to) -> {
+            U result = null;
+            for (int i = nextFull(from, to); i < to; i = nextFull(i + 1, to)) {
+                U u = transformer.apply(valueAt(i));
+                if (u != null) {
+                    result = result == null ? u : reducer.apply(result, u);
+                }
+            }
+            return result;
+        }, reducer::apply);
+    }
+
+//  Same without boxing every value; basis must be the identity of reducer, as 0 is for a sum
+    public long reduceValuesToLong(long parallelismThreshold, ToLongFunction<? super V> transformer,
+                                   long basis, LongBinaryOperator reducer) {
+        Objects.requireNonNull(transformer);
+        Objects.requireNonNull(reducer);
+        Long result = bulk(parallelismThreshold, (from, to) -> {
+            long r = basis;
+            for (int i = nextFull(from, to); i < to; i = nextFull(i + 1, to)) {
+                r = reducer.applyAsLong(r, transformer.applyAsLong(valueAt(i)));
+            }
+            return r;
+        }, (a, b) -> reducer.applyAsLong(a, b));
+        return result == null ? basis : result;
+    }
+
+//  Returns a non-null result of searchFunction for some entry, or null if it returns null for all of them.
+//  Once one range has found a result the others stop early, so which entry wins is not defined.
+    public <U> U search(long parallelismThreshold, BiFunction<? super K, ? super V, ? extends U> searchFunction) {
+        Objects.requireNonNull(searchFunction);
+        AtomicReference<U> found = new AtomicReference<>();
+        bulk(parallelismThreshold, (from, to) -> {
+            for (int i = nextFull(from, to); i < to && found.get() == null; i = nextFull(i + 1, to)) {
+                U u = searchFunction.apply(keyAt(i), valueAt(i));
+                if (u != null) {
+                    found.compareAndSet(null, u);
+                }
+            }
+            return null;
+        }, (a, b) -> null);
+        return found.get();
+    }
+
+//  Runs leaf over all slots, split into ranges on the common pool if the table is large enough, and merges the
+//  results of neighbouring ranges with combine; a range that found nothing returns null and is left out
+    private <R> R bulk(long parallelismThreshold, SlotRange<R> leaf, BinaryOperator<R> combine) {
+        int expectedModCount = modCount;
+        int slots = slotCount();
+        int batches = batchesFor(parallelismThreshold);
+        R result = batches <= 1
+                ? leaf.apply(0, slots)
+                : ForkJoinPool.commonPool().invoke(new BulkTask<>(0, slots, Math.max(slots / batches, 1), leaf, combine));
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+        return result;
+    }
+
+//  As in ConcurrentHashMap: one range per parallelismThreshold entries, and at most four per pool thread
+    private int batchesFor(long parallelismThreshold) {
+        if (parallelismThreshold == Long.MAX_VALUE || size <= 1 || size < parallelismThreshold) {
+            return 1;
+        }
+        int maximum = ForkJoinPool.getCommonPoolParallelism() << 2;
+        return parallelismThreshold <= 0 || size / parallelismThreshold >= maximum
+                ? maximum : (int) (size / parallelismThreshold);
+    }
+
+    private interface SlotRange<R> {
+        R apply(int from, int to);
+    }
+
+    private static final class BulkTask<R> extends RecursiveTask<R> {
+        private final int from;
+        private final int to;
+        private final int leafSlots;
+        private final SlotRange<R> leaf;
+        private final BinaryOperator<R> combine;
+
+        BulkTask(int from, int to, int leafSlots, SlotRange<R> leaf, BinaryOperator<R> combine) {
+            this.from = from;
+            this.to = to;
+            this.leafSlots = leafSlots;
+            this.leaf = leaf;
+            this.combine = combine;
+        }
+
+        @Override
+        protected R compute() {
+            if (to - from <= leafSlots) {
+                return leaf.apply(from, to);
+            }
+            int mid = (from + to) >>> 1;
+            BulkTask<R> right = new BulkTask<>(mid, to, leafSlots, leaf, combine);
+            right.fork();
+            R left = new BulkTask<>(from, mid, leafSlots, leaf, combine).compute();
+            R rightResult = right.join();
+            if (left == null) {
+                return rightResult;
+            }
+            return rightResult == null ? left : combine.apply(left, rightResult);
+        }
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        if (value == null) {
+            throw new NullPointerException();
+        }
+
+        int index = findOrInsertSlot(key);
+        if (index >= 0) {
+            if (expiry == Expiry.AFTER_ACCESS) {
+                renewAfterAccess(index, now());
+            }
+            return valueAt(index);
+        }
+
+        insertAt(-index - 1, key, value);
+        return null;
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        int index = contains(key);
+
+        if (index < 0 || !valueAt(index).equals(value)) {
+            return false;
+        }
+
+        removeAt(index);
+        return true;
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        if (oldValue == null) throw new NullPointerException();
+
+        int index = contains(key);
+        if (index < 0 || !valueAt(index).equals(oldValue)) {
+            return false;
+        }
+
+        setValueAt(index, newValue);
+        return true;
+    }
+
+    @Override
+    public V replace(K key, V value) {
+        int index = contains(key);
+        if (index < 0) {
+            return null;
+        }
+
+        V old = valueAt(index);
+        setValueAt(index, value);
+        return old;
+    }
+
+    @Override
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        Objects.requireNonNull(mappingFunction);
+
+        int index = findOrInsertSlot(key);
+        if (weigher != null) {
+            recordRead(index);
+        }
+        if (index >= 0) {
+            if (expiry == Expiry.AFTER_ACCESS) {
+                renewAfterAccess(index, now());
+            }
+            return valueAt(index);
+        } else {
+            int expectedModCount = modCount;
+            V newValue = mappingFunction.apply(key);
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+
+            if (newValue == null) {
+                throw new NullPointerException("Computed value is null");
+            }
+
+            insertAt(-index - 1, key, newValue);
+            return newValue;
+        }
+    }
+
+    @Override
+    public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        Objects.requireNonNull(remappingFunction);
 
         int index = contains(key);
         if (index >= 0) {
-            Cell<K,V> cell = table[index];
-            V newValue = remappingFunction.apply(key, cell.getValue());
+            int expectedModCount = modCount;
+            V newValue = remappingFunction.apply(key, valueAt(index));
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
 
             if (newValue == null) {
                 throw new NullPointerException("Computed value is null");
             }
 
-            cell.setValue(newValue);
+            setValueAt(index, newValue);
             return newValue;
         }
 
@@ -428,119 +1485,600 @@ public class HashTable<K, V> implements Map<K, V> {
     }
 
     @Override
-    public synchronized V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
         Objects.requireNonNull(remappingFunction);
 
-        int index = contains(key);
+        int index = findOrInsertSlot(key);
+        V oldValue = index >= 0 ? valueAt(index) : null;
 
-        if (index >= 0) {
-            V oldValue = table[index].getValue();
-            V newValue = remappingFunction.apply(key, oldValue);
+        int expectedModCount = modCount;
+        V newValue = remappingFunction.apply(key, oldValue);
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
 
-            if (newValue != null) {
-                put(key, newValue);
-                return newValue;
-            } else {
-                remove(key);
-                return null;
+        if (newValue == null) {
+            if (index >= 0) {
+                removeAt(index);
             }
+        } else if (index >= 0) {
+            setValueAt(index, newValue);
         } else {
-            V newValue = remappingFunction.apply(key, null);
-            return put(key, newValue);
+            insertAt(-index - 1, key, newValue);
         }
+        return newValue;
     }
 
 
     @Override
-    public synchronized V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
         Objects.requireNonNull(remappingFunction);
+        Objects.requireNonNull(value);
 
-        int index = contains(key);
+        int index = findOrInsertSlot(key);
 
         if (index >= 0) {
-            Cell<K,V> cell = table[index];
-            V newValue = remappingFunction.apply(cell.getValue(), value);
+            int expectedModCount = modCount;
+            V newValue = remappingFunction.apply(valueAt(index), value);
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+
             if (newValue != null) {
-                cell.setValue(newValue);
+                setValueAt(index, newValue);
                 return newValue;
             } else {
-                remove(key);
+                removeAt(index);
                 return null;
             }
         } else {
-            put(key, value);
+            insertAt(-index - 1, key, value);
             return value;
         }
     }
 
-    private int hash1(Object key) {
-        return (key.hashCode() * HASH_CONST) % capacity;
+//  Spreads hashCode() with the MurmurHash3 finalizer so that low-entropy keys still differ in the low bits. The
+//  seed goes in first, so the same hashCode() lands somewhere else in every table. Also used by the wheel.
+    @SuppressWarnings("unchecked")
+    int spread(Object key) {
+        if (keyed) {
+            if (strategy == null && key instanceof String) {
+                return SipHash.hash(sipKey0, sipKey1, (String) key);
+            }
+            if (strategy == HashingStrategy.BYTE_ARRAYS) {
+                return SipHash.hash(sipKey0, sipKey1, (byte[]) key);
+            }
+        }
+        int h = (strategy == null ? key.hashCode() : ((HashingStrategy<Object>) strategy).hash(key)) ^ seed;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
     }
 
-    private int hash2(Object key) {
-        int hash = (key.hashCode() * HASH_CONST) % (capacity - 1);
-        if (hash % 2 == 0) {
-            hash++;
-        }
-        return hash;
+    @SuppressWarnings("unchecked")
+    private boolean keyEquals(Object stored, Object key) {
+        return strategy == null ? stored.equals(key) : ((HashingStrategy<Object>) strategy).equals(stored, key);
+    }
+
+    private static int hash1(int hash, int capacity) {
+        return hash & (capacity - 1);
+    }
+
+//  The step is odd and the capacity is a power of two, so the probe sequence visits every slot
+    private static int hash2(int hash) {
+        return Integer.reverse(hash) | 1;
+    }
+
+    private static int tableSizeFor(int capacity) {
+        int n = -1 >>> Integer.numberOfLeadingZeros(capacity - 1);
+        return n < 0 ? 1 : (n >= MAXIMUM_CAPACITY ? MAXIMUM_CAPACITY : n + 1);
+    }
+
+//  Inserting into a table filled to its load factor inspects about 1 / (1 - loadFactor) slots with random hashes,
+//  so a probe many times as long is not bad luck. Tables that may fill up completely are never checked.
+    private static int probeLimitFor(float loadFactor) {
+        return loadFactor >= 1 ? Integer.MAX_VALUE : (int) Math.max(MIN_PROBE_LIMIT, 25 / (1 - loadFactor));
+    }
+
+//  At least one slot always stays empty, which is what terminates an unsuccessful probe
+    private int thresholdFor(int capacity) {
+        return (int) Math.min((long) (capacity * loadFactor), capacity - 1);
     }
 
     private void rehash() {
+        if (oldStates != null) {
+            migrate(oldStates.length);
+        }
+//      When tombstones rather than live cells filled the table, rebuilding at the same capacity is enough.
+//      The incremental mode still goes through a second table so that the work is spread out.
+        boolean grow = size >= threshold / 2;
+        if (!grow && !incrementalRehash) {
+            purgeDeleted();
+            return;
+        }
+        if (grow) {
+            if (capacity == MAXIMUM_CAPACITY) {
+                throw new IllegalStateException("HashTable capacity exceeded");
+            }
+            resize(capacity * 2);
+        } else {
+            resize(capacity);
+        }
+    }
+
+//  Grows the table once so that it holds expected entries without another rehash
+    private void presize(int expected) {
+        if (expected <= threshold) {
+            return;
+        }
+        if (oldStates != null) {
+            migrate(oldStates.length);
+        }
+        int newCapacity = capacity;
+        while (thresholdFor(newCapacity) < expected && newCapacity < MAXIMUM_CAPACITY) {
+            newCapacity *= 2;
+        }
+        if (newCapacity > capacity) {
+            resize(newCapacity);
+        }
+    }
+
+//  Moves the entries into fresh arrays of newCapacity slots; the old table must already be drained
+    private void resize(int newCapacity) {
+        if (METRICS) {
+            metrics.beginRehash();
+        }
         int oldCapacity = capacity;
-        capacity = capacity * 2 + 1;
+        capacity = newCapacity;
+        threshold = thresholdFor(capacity);
+        modCount++;
+
+        oldKeyTable = keyTable;
+        oldValueTable = valueTable;
+        oldHashes = hashes;
+        oldStates = states;
+        migrateIndex = 0;
+        keyTable = new Object[capacity];
+        valueTable = new Object[capacity];
+        hashes = new int[capacity];
+        states = new byte[capacity];
+        deletedCount = 0;
+        if (referenced != null) {
+            oldReferenced = referenced;
+            referenced = new byte[capacity];
+        }
+        if (deadlines != null) {
+            oldDeadlines = deadlines;
+            deadlines = new long[capacity];
+        }
 
-        Cell<K, V>[] subTable = Arrays.copyOf(table, oldCapacity);
-        table = new Cell[capacity];
-        deletedCells = new boolean[capacity];
+//      In incremental mode every later update moves MIGRATION_STEP old slots; the new table is at least
+//      as large as the old one, so the old table is drained long before the new one reaches its threshold
+        if (!incrementalRehash) {
+            migrate(oldCapacity);
+        }
+        if (METRICS) {
+            metrics.endRehash(false, oldCapacity, capacity, size);
+        }
+    }
 
-        for (int i = 0; i < oldCapacity; i++) {
-            if (subTable[i] != null) {
-                int index = findEmptyIndex(subTable[i].getKey());
-                table[index] = subTable[i];
+//  Moves up to count slots of the old table into the current one and drops it once all are moved
+    private void migrate(int count) {
+        int end = Math.min(migrateIndex + count, oldStates.length);
+        for (int i = migrateIndex; i < end; i++) {
+            if (oldStates[i] == FULL) {
+                int index = findEmptyIndex(oldHashes[i]);
+                if (states[index] == DELETED) {
+                    deletedCount--;
+                }
+                keyTable[index] = oldKeyTable[i];
+                valueTable[index] = oldValueTable[i];
+                hashes[index] = oldHashes[i];
+                states[index] = FULL;
+                if (referenced != null) {
+                    referenced[index] = oldReferenced[i];
+                }
+                if (deadlines != null) {
+                    deadlines[index] = oldDeadlines[i];
+                }
+//              Left DELETED rather than EMPTY so lookups still probe past it to keys not moved yet
+                oldKeyTable[i] = null;
+                oldValueTable[i] = null;
+                oldStates[i] = DELETED;
             }
         }
+        migrateIndex = end;
+        modCount++;
+        if (end == oldStates.length) {
+            dropOldTable();
+        }
     }
 
-    private int findEmptyIndex(K key) {
-        int n = -1;
-        while (true) {
-            n++;
-            int index = (hash1(key) + n * hash2(key)) % (capacity - 3);
-            if (index < 0) {
-                index = index * -1;
+//  Hashes strings and byte arrays with a fresh SipHash key and everything else with a fresh seed, and rebuilds
+//  the table in place under the new hashes. Only the hashes are computed again, keys are never compared.
+    private void reseed() {
+        if (oldStates != null) {
+            migrate(oldStates.length);
+        }
+        seed = ThreadLocalRandom.current().nextInt();
+        keyed = true;
+        sipKey0 = SIP_KEYS.nextLong();
+        sipKey1 = SIP_KEYS.nextLong();
+        for (int i = 0; i < capacity; i++) {
+            if (states[i] == FULL) {
+                hashes[i] = spread(keyTable[i]);
             }
-            if (table[index] == null) {
+        }
+        purgeDeleted();
+        if (wheel != null) {
+            wheel.rehash();
+        }
+        reseedCount++;
+        reseedSize = size;
+    }
+
+//  Rebuilds the table in place: tombstones become EMPTY and every entry is put back at the first free slot
+//  of its probe sequence. A slot taken by an entry that is not placed yet is swapped, and that entry goes next.
+//  Placed slots never move again, so every probe path from a key's home slot to the key stays FULL.
+    private void purgeDeleted() {
+        if (METRICS) {
+            metrics.beginRehash();
+        }
+        modCount++;
+        for (int i = 0; i < capacity; i++) {
+            states[i] = states[i] == FULL ? PENDING : EMPTY;
+        }
+
+        int mask = capacity - 1;
+        for (int i = 0; i < capacity; i++) {
+            while (states[i] == PENDING) {
+                int hash = hashes[i];
+                int step = hash2(hash);
+                int index = hash1(hash, capacity);
+                while (states[index] == FULL) {
+                    index = (index + step) & mask;
+                }
+
+                if (index == i) {
+                    states[i] = FULL;
+                } else if (states[index] == EMPTY) {
+                    keyTable[index] = keyTable[i];
+                    valueTable[index] = valueTable[i];
+                    hashes[index] = hash;
+                    states[index] = FULL;
+                    keyTable[i] = null;
+                    valueTable[i] = null;
+                    states[i] = EMPTY;
+                    if (referenced != null) {
+                        referenced[index] = referenced[i];
+                        referenced[i] = 0;
+                    }
+                    if (deadlines != null) {
+                        deadlines[index] = deadlines[i];
+                    }
+                } else {
+                    Object key = keyTable[index];
+                    Object value = valueTable[index];
+                    int displacedHash = hashes[index];
+                    keyTable[index] = keyTable[i];
+                    valueTable[index] = valueTable[i];
+                    hashes[index] = hash;
+                    states[index] = FULL;
+                    keyTable[i] = key;
+                    valueTable[i] = value;
+                    hashes[i] = displacedHash;
+                    if (referenced != null) {
+                        byte bit = referenced[index];
+                        referenced[index] = referenced[i];
+                        referenced[i] = bit;
+                    }
+                    if (deadlines != null) {
+                        long deadline = deadlines[index];
+                        deadlines[index] = deadlines[i];
+                        deadlines[i] = deadline;
+                    }
+                }
+            }
+        }
+        deletedCount = 0;
+        if (METRICS) {
+            metrics.endRehash(true, capacity, capacity, size);
+        }
+    }
+
+    private void dropOldTable() {
+        oldKeyTable = null;
+        oldValueTable = null;
+        oldHashes = null;
+        oldStates = null;
+        oldReferenced = null;
+        oldDeadlines = null;
+    }
+
+//  Must only be called for a key that is not in the table; returns the first tombstone or empty slot on the probe path
+    private int findEmptyIndex(int hash) {
+        int mask = capacity - 1;
+        int step = hash2(hash);
+        int index = hash1(hash, capacity);
+        int skipped = 0;
+        while (states[index] == FULL) {
+            index = (index + step) & mask;
+            if (METRICS) {
+                skipped++;
+            }
+        }
+        if (METRICS) {
+            metrics.skipped(skipped);
+        }
+        return index;
+    }
+
+//  The single probe behind put() and the compute/merge family. Returns the key's slot, or -(slot + 1) for the slot
+//  insertAt() should fill: the first tombstone on the probe path, or else the empty slot that ended it.
+//  Growing happens here, before the caller sees the slot, so the slot stays valid until the caller inserts.
+    private int findOrInsertSlot(Object key) {
+        if (key == null) throw new NullPointerException("HashTable does not permit null keys");
+        expireEntries();
+        return findOrInsertSlot(key, spread(key));
+    }
+
+    private int findOrInsertSlot(Object key, int hash) {
+        int mask = capacity - 1;
+        int step = hash2(hash);
+        int index = hash1(hash, capacity);
+        int free = -1;
+        int n = 0;
+        for (; n < capacity; n++) {
+            byte state = states[index];
+            if (state == EMPTY) {
+                if (METRICS) {
+                    metrics.insertMiss(n + 1, capacity, size);
+                }
+                if (free < 0) {
+                    free = index;
+                }
+                break;
+            }
+            if (state == DELETED) {
+                if (free < 0) {
+                    free = index;
+                }
+            } else if (hashes[index] == hash && keyEquals(keyTable[index], key)) {
+//              An expired entry the wheel has not reclaimed yet is removed here, and its slot is reused
+                if (!isExpired(index)) {
+                    if (METRICS) {
+                        metrics.lookup(true, n + 1, capacity, size);
+                    }
+                    return index;
+                }
+                removeSlot(index);
+                if (free < 0) {
+                    free = index;
+                }
+                break;
+            }
+            index = (index + step) & mask;
+        }
+
+//      The key is not in the new table; if it was in the old one the rebuild moves it over, and the probe is redone
+        if (n >= probeLimit && size >= 2 * reseedSize) {
+            reseed();
+            return findOrInsertSlot(key, spread(key));
+        }
+
+        if (oldStates != null) {
+            int oldIndex = find(oldKeyTable, oldHashes, oldStates, key, hash);
+            if (oldIndex >= 0 && !isExpired(capacity + oldIndex)) {
+                return capacity + oldIndex;
+            } else if (oldIndex >= 0) {
+                removeSlot(capacity + oldIndex);
+            }
+//          Migrated entries may take the free slot, so it is looked up again below
+            migrate(MIGRATION_STEP);
+            free = -1;
+        }
+
+//      Tombstones lengthen probe chains just like live cells, so both count towards the load
+        if (size + deletedCount >= threshold) {
+            rehash();
+            free = -1;
+        }
+
+        if (free < 0) {
+            free = findEmptyIndex(hash);
+        }
+//      The slot is not FULL, so storing the hash now is harmless if the caller ends up not inserting
+        hashes[free] = hash;
+        return -free - 1;
+    }
+
+//  Fills a slot returned by findOrInsertSlot(); the key's hash was cached there by the probe
+    private void insertAt(int index, K key, V value) {
+        insertAt(index, key, value, expiry == null ? 0 : deadlineAfter(expiryNanos));
+    }
+
+    private void insertAt(int index, K key, V value, long deadline) {
+        if (inverseIndex != null) {
+            bindValue(key, value);
+        }
+        if (states[index] == DELETED) {
+            deletedCount--;
+        }
+        keyTable[index] = key;
+        valueTable[index] = value;
+        states[index] = FULL;
+        size++;
+        modCount++;
+
+        if (deadlines != null) {
+            deadlines[index] = deadline;
+            if (deadline != 0) {
+                wheel.schedule(key, hashes[index], deadline);
+            }
+        }
+
+        if (weigher != null) {
+//          Unreferenced until its first hit, so entries that are never read again go first
+            referenced[index] = 0;
+            if (sketch != null) {
+                sketch.increment(hashes[index]);
+            }
+            weightedSize += weigh(key, value);
+            if (weightedSize > maximumWeight) {
+                evict(index);
+            }
+        }
+    }
+
+    private void recordRead(int index) {
+        if (index < 0) {
+            missCount++;
+            return;
+        }
+        hitCount++;
+        referenced[index] = 1;
+        if (sketch != null) {
+            sketch.increment(hashes[index]);
+        }
+    }
+
+    private int weigh(K key, V value) {
+        int weight = weigher.applyAsInt(key, value);
+        if (weight < 0) {
+            throw new IllegalArgumentException("Negative weight: " + weight);
+        }
+        return weight;
+    }
+
+//  Evicts entries until the total weight is within bounds again. The entry at candidate has just been stored or
+//  changed: the hand skips it, and under TINY_LFU it goes itself unless the sketch rates it above the victim.
+//  Tombstones are purged only after the loop, so no entry moves while it runs.
+    private void evict(int candidate) {
+        while (weightedSize > maximumWeight && size > 0) {
+            int victim = nextVictim(candidate);
+            if (victim < 0 || (sketch != null && candidate >= 0
+                    && sketch.frequency(hashes[candidate]) <= sketch.frequency(hashes[victim]))) {
+                victim = candidate;
+            }
+            if (victim == candidate) {
+                candidate = -1;
+            }
+            removeSlot(victim);
+            evictionCount++;
+        }
+        cleanUpAfterRemoval();
+    }
+
+//  Advances the CLOCK hand to the next unreferenced entry other than skip, clearing reference bits on the way;
+//  -1 if there is no other entry
+    private int nextVictim(int skip) {
+        int mask = capacity - 1;
+        for (int n = 0; n <= 2 * capacity; n++) {
+            int index = clockHand;
+            clockHand = (index + 1) & mask;
+            if (states[index] != FULL || index == skip) {
+                continue;
+            }
+            if (referenced[index] != 0) {
+                referenced[index] = 0;
+            } else {
                 return index;
-            } else if (deletedCells[index]){
-                deletedCells[index] = false;
-                return  index;
             }
         }
+        return -1;
     }
 
+//  Returns the slot of the key, looking into the old table as well while a rehash is in progress
     private int contains(Object key) {
         if (key == null) throw new NullPointerException("HashTable does not permit null keys");
-        int hash1 = hash1(key);
-        int hash2 = hash2(key);
-        int n = -1;
-        while (n != capacity - 1) {
-            n++;
-            int index = (hash1 + n * hash2) % (capacity - 3);
-            if (index < 0) {
-                index = index * -1;
+        return contains(key, spread(key));
+    }
+
+//  Expired entries count as absent, and under AFTER_ACCESS a lookup that finds its entry renews the deadline
+    private int contains(Object key, int hash) {
+        int index = locate(key, hash);
+        if (index < 0 || deadlines == null) {
+            return index;
+        }
+        long deadline = deadlineAt(index);
+        if (deadline == 0) {
+            return index;
+        }
+        long now = now();
+        if (deadline <= now) {
+            return -1;
+        }
+        if (expiry == Expiry.AFTER_ACCESS) {
+            renewAfterAccess(index, now);
+        }
+        return index;
+    }
+
+    private int locate(Object key, int hash) {
+        int index = find(keyTable, hashes, states, key, hash);
+        int lookupProbes = METRICS ? probes : 0;
+        if (index < 0 && oldStates != null) {
+            index = find(oldKeyTable, oldHashes, oldStates, key, hash);
+            if (METRICS) {
+                lookupProbes += probes;
             }
-            Cell<K, V> cell = table[index];
-            if (cell != null && cell.getKey().equals(key)) {
-                if (deletedCells[index]) {
-                    return -1;
-                } else {
-                    return index;
+            if (index >= 0) {
+                index += capacity;
+            }
+        }
+        if (METRICS) {
+            metrics.lookup(index >= 0, lookupProbes, capacity, size);
+        }
+        return index;
+    }
+
+    private int find(Object[] keys, int[] hashes, byte[] states, Object key, int hash) {
+        int capacity = states.length;
+        int mask = capacity - 1;
+        int step = hash2(hash);
+        int index = hash1(hash, capacity);
+        for (int n = 0; n < capacity; n++) {
+            byte state = states[index];
+            if (state == EMPTY) {
+                if (METRICS) {
+                    probes = n + 1;
                 }
+                return -1;
             }
+            if (state == FULL && hashes[index] == hash && keyEquals(keys[index], key)) {
+                if (METRICS) {
+                    probes = n + 1;
+                }
+                return index;
+            }
+            index = (index + step) & mask;
+        }
+        if (METRICS) {
+            probes = capacity;
         }
         return -1;
     }
 
+//  Number of slots contains() inspects for the key, used by the benchmark probe-length report
+    int probeLength(Object key) {
+        if (key == null) throw new NullPointerException("HashTable does not permit null keys");
+        int hash = spread(key);
+        int mask = capacity - 1;
+        int step = hash2(hash);
+        int index = hash1(hash, capacity);
+        for (int n = 1; n <= capacity; n++) {
+            byte state = states[index];
+            if (state == EMPTY || (state == FULL && hashes[index] == hash && keyEquals(keyTable[index], key))) {
+                return n;
+            }
+            index = (index + step) & mask;
+        }
+        return capacity;
+    }
+
     private <T> Iterator<T> getIterator(int type) {
         if (size == 0) {
             return Collections.emptyIterator();
@@ -549,46 +2087,386 @@ public class HashTable<K, V> implements Map<K, V> {
         }
     }
 
+//  The first FULL slot from from up to fence, or fence if there is none; reads the state arrays directly
+    private int nextFull(int from, int fence) {
+        int end = Math.min(fence, capacity);
+        byte[] states = this.states;
+        for (int i = from; i < end; i++) {
+            if (states[i] == FULL) {
+                return i;
+            }
+        }
+//      A fence bound before the old table was drained may reach past the slots; the caller's modCount check reports it
+        byte[] oldStates = this.oldStates;
+        if (fence > capacity && oldStates != null) {
+            for (int i = Math.max(from - capacity, 0); i < Math.min(fence - capacity, oldStates.length); i++) {
+                if (oldStates[i] == FULL) {
+                    return capacity + i;
+                }
+            }
+        }
+        return fence;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T element(int type, int index) {
+        return type == KEYS ? (T) keyAt(index) : (type == VALUES ? (T) valueAt(index) : (T) new Cell(index));
+    }
+
+    private int slotCount() {
+        return oldStates == null ? capacity : capacity + oldStates.length;
+    }
+
+    private byte stateAt(int index) {
+        return index < capacity ? states[index] : oldStates[index - capacity];
+    }
+
+    @SuppressWarnings("unchecked")
+    private K keyAt(int index) {
+        return (K) (index < capacity ? keyTable[index] : oldKeyTable[index - capacity]);
+    }
+
+    @SuppressWarnings("unchecked")
+    private V valueAt(int index) {
+        return (V) (index < capacity ? valueTable[index] : oldValueTable[index - capacity]);
+    }
+
+//  Records the value as held by key before it is stored. Only an expired entry that has not been reclaimed yet
+//  may already hold it, and is removed.
+    private void bindValue(K key, V value) {
+        Object holder = inverseIndex.putIfAbsent(value, key);
+        if (holder == null) {
+            return;
+        }
+        int index = locate(holder, spread(holder));
+        if (index < 0 || !isExpired(index)) {
+            throw new IllegalArgumentException("Value already present: " + value);
+        }
+        removeSlot(index);
+        inverseIndex.putIfAbsent(value, key);
+    }
+
+//  The slot of the live entry holding the value, or -1; only for bidirectional tables
+    private int slotOfValue(Object value) {
+        Object key = inverseIndex.keyOf(value);
+        if (key == null) {
+            return -1;
+        }
+        int index = locate(key, spread(key));
+        return index >= 0 && !isExpired(index) ? index : -1;
+    }
+
+    private void setValueAt(int index, V value) {
+        storeValueAt(index, value);
+        if (weigher != null && weightedSize > maximumWeight) {
+            evict(index);
+        }
+    }
+
+//  setValueAt() without the eviction a heavier value may call for, for the loops over the slots: an eviction would
+//  remove entries under them and possibly rebuild the table, so they evict once when they are done
+    private void storeValueAt(int index, V value) {
+        if (inverseIndex != null) {
+            V oldValue = valueAt(index);
+            if (!oldValue.equals(value)) {
+                bindValue(keyAt(index), value);
+                inverseIndex.remove(oldValue);
+            }
+        }
+        if (expiry != null) {
+            expireAt(index, deadlineAfter(expiryNanos));
+        }
+        if (weigher != null) {
+            replaceBounded(index, value);
+        } else if (index < capacity) {
+            valueTable[index] = value;
+        } else {
+            oldValueTable[index - capacity] = value;
+        }
+    }
+
+//  Bounded tables are never rehashed incrementally, so index is a slot of the current table
+    private void replaceBounded(int index, V value) {
+        K key = keyAt(index);
+        weightedSize += weigh(key, value) - weigh(key, valueAt(index));
+        valueTable[index] = value;
+        referenced[index] = 1;
+        if (sketch != null) {
+            sketch.increment(hashes[index]);
+        }
+    }
+
+    private void evictOverweight() {
+        if (weigher != null && weightedSize > maximumWeight) {
+            evict(-1);
+        }
+    }
+
+//  Lookups through get(), getOrDefault(), computeIfAbsent() and getAll() that found their key; only counted in
+//  bounded mode
+    public long hitCount() {
+        return hitCount;
+    }
+
+    public long missCount() {
+        return missCount;
+    }
+
+    public long evictionCount() {
+        return evictionCount;
+    }
+
+//  Total weight of the entries in bounded mode, which is their number unless a weigher was given
+    public long weightedSize() {
+        return weightedSize;
+    }
+
+//  Hashes string keys, and byte array keys under HashingStrategy.BYTE_ARRAYS, with SipHash under a random key
+//  from now on, at some cost per lookup, so that no set of them can be made to collide. Tables switch on their
+//  own once an insert probes suspiciously long; this is for tables that take keys from untrusted input and
+//  should not wait for that.
+    public void useKeyedHashing() {
+        if (!keyed) {
+            reseed();
+        }
+    }
+
+//  The current shape of the table, with probe and rehash metrics if the JVM runs with -Dhashtable.metrics=true
+    public HashTableStats stats() {
+        return new HashTableStats(size, capacity, deletedCount, reseedCount, keyed, metrics);
+    }
+
+//  Reclaims the entries that have expired by now. Updates do this as they go, so it is only needed before
+//  size() or the views, which still see an expired entry until it has been reclaimed.
+    public void cleanUp() {
+        expireEntries();
+    }
+
+    private void expireEntries() {
+        if (wheel == null) {
+            return;
+        }
+        int before = size;
+        wheel.advance(now());
+        if (size < before) {
+            cleanUpAfterRemoval();
+        }
+    }
+
+//  Called by the wheel for a key whose bucket came due: removes the entry if it has expired by now and returns 0,
+//  or returns the entry's deadline to file the key under, or 0 if the entry is gone or no longer expires
+    long expireEntry(Object key, int hash, long now) {
+        int index = locate(key, hash);
+        if (index < 0) {
+            return 0;
+        }
+        long deadline = deadlineAt(index);
+        if (deadline == 0 || deadline > now) {
+            return deadline;
+        }
+        removeSlot(index);
+        return 0;
+    }
+
+    private void enableExpiry() {
+        if (deadlines != null) {
+            return;
+        }
+        epoch = ticker.getAsLong();
+        deadlines = new long[capacity];
+        if (oldStates != null) {
+            oldDeadlines = new long[oldStates.length];
+        }
+        wheel = new TimerWheel(this, 0);
+    }
+
+//  Nanoseconds since the first deadline was set, so that 0 is free to mean no deadline
+    private long now() {
+        return ticker.getAsLong() - epoch;
+    }
+
+    private long deadlineAfter(long nanos) {
+        long now = now();
+        return nanos >= Long.MAX_VALUE - now ? Long.MAX_VALUE : now + nanos;
+    }
+
+    private static long toNanos(Duration duration) {
+        if (duration.isNegative() || duration.isZero()) {
+            throw new IllegalArgumentException("Illegal Duration: " + duration);
+        }
+//      Durations beyond about 292 years do not fit, and are as good as forever
+        return duration.compareTo(Duration.ofNanos(Long.MAX_VALUE)) >= 0 ? Long.MAX_VALUE : duration.toNanos();
+    }
+
+//  Sets the deadline of a slot; the wheel only needs to hear about it when it comes earlier than the one filed
+    private void expireAt(int index, long deadline) {
+        long current = deadlineAt(index);
+        setDeadlineAt(index, deadline);
+        if (deadline != 0 && (current == 0 || deadline < current)) {
+            wheel.schedule(keyAt(index), index < capacity ? hashes[index] : oldHashes[index - capacity], deadline);
+        }
+    }
+
+//  Moves a deadline ahead to expiryNanos from now; the wheel files the key again once the old deadline comes
+    private void renewAfterAccess(int index, long now) {
+        long deadline = deadlineAt(index);
+        long renewed = expiryNanos >= Long.MAX_VALUE - now ? Long.MAX_VALUE : now + expiryNanos;
+        if (deadline != 0 && renewed > deadline) {
+            setDeadlineAt(index, renewed);
+        }
+    }
+
+    private boolean isExpired(int index) {
+        if (deadlines == null) {
+            return false;
+        }
+        long deadline = deadlineAt(index);
+        return deadline != 0 && deadline <= now();
+    }
+
+    private long deadlineAt(int index) {
+        return index < capacity ? deadlines[index] : oldDeadlines[index - capacity];
+    }
+
+    private void setDeadlineAt(int index, long deadline) {
+        if (index < capacity) {
+            deadlines[index] = deadline;
+        } else {
+            oldDeadlines[index - capacity] = deadline;
+        }
+    }
+
+//  Walks the slots of the current table and then those of the old one. Like the iterators of java.util it fails
+//  fast: any change to the table after the iterator was created ends it with a ConcurrentModificationException.
     class HashIterator<T> implements Iterator<T> {
-        boolean[] iterDeletedCells = deletedCells;
-        int index = -1;
-        int count = 0;
-        int iterSize = size;
-        int type;
+        private final int type;
+        private final int expectedModCount = modCount;
+        private int next;
 
         HashIterator(int type) {
             this.type = type;
+            next = nextFull(0, slotCount());
         }
 
         @Override
         public boolean hasNext() {
-            return count < iterSize;
+            return next < slotCount();
         }
 
         @Override
         public T next() {
-            index++;
-            while (index < capacity) {
-                Cell<K,V> cell = table[index];
-                if (!iterDeletedCells[index] && cell != null) {
-                    count++;
-                    return type == KEYS ? (T) cell.getKey() : (type == VALUES ? (T) cell.getValue() : (T) cell);
-                } else {
-                    index++;
-                }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            int index = next;
+            if (index >= slotCount()) {
+                throw new NoSuchElementException();
+            }
+            next = nextFull(index + 1, slotCount());
+            return element(type, index);
+        }
+    }
+
+//  Covers the slots from index up to fence and splits by halving that range, so splits are cheap and balanced as
+//  long as the entries are spread evenly, which hashing sees to. The range, the size estimate and the expected
+//  modCount are bound on first use. Only a spliterator over all slots knows its size exactly; after a split each
+//  half estimates half of its parent.
+    final class HashSpliterator<T> implements Spliterator<T> {
+        private final int type;
+        private int index;
+        private int fence;
+        private int est;
+        private int expectedModCount;
+
+        HashSpliterator(int type) {
+            this(type, 0, -1, 0, 0);
+        }
+
+        private HashSpliterator(int type, int origin, int fence, int est, int expectedModCount) {
+            this.type = type;
+            this.index = origin;
+            this.fence = fence;
+            this.est = est;
+            this.expectedModCount = expectedModCount;
+        }
+
+        private int getFence() {
+            if (fence < 0) {
+                fence = slotCount();
+                est = size;
+                expectedModCount = modCount;
+            }
+            return fence;
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            int hi = getFence();
+            int lo = index;
+            int mid = (lo + hi) >>> 1;
+            if (lo >= mid) {
+                return null;
+            }
+            index = mid;
+            est >>>= 1;
+            return new HashSpliterator<>(type, lo, mid, est, expectedModCount);
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            Objects.requireNonNull(action);
+            int hi = getFence();
+            int i = nextFull(index, hi);
+            if (i >= hi) {
+                index = hi;
+                return false;
+            }
+            index = i + 1;
+            action.accept(element(type, i));
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            Objects.requireNonNull(action);
+            int hi = getFence();
+            for (int i = nextFull(index, hi); i < hi; i = nextFull(i + 1, hi)) {
+                action.accept(element(type, i));
+            }
+            index = hi;
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
             }
-            return null;
+        }
+
+        @Override
+        public long estimateSize() {
+            getFence();
+            return est;
+        }
+
+        @Override
+        public int characteristics() {
+            return (fence < 0 || est == size ? Spliterator.SIZED : 0)
+                    | (type == VALUES ? 0 : Spliterator.DISTINCT) | Spliterator.NONNULL;
         }
     }
 
-    private static class Cell<K, V> implements Map.Entry<K, V> {
+//  A view of one slot, created only when entries are asked for. Writes go straight to the slot
+//  while it still holds the key, and through put() if the table was rebuilt in the meantime.
+    private class Cell implements Map.Entry<K, V> {
 
-        private K key;
+        private final K key;
         private V value;
+        private final int index;
 
-        public Cell(K key, V value) {
-            this.key = key;
-            this.value = value;
+        Cell(int index) {
+            this.key = keyAt(index);
+            this.value = valueAt(index);
+            this.index = index;
         }
 
         @Override
@@ -603,22 +2481,33 @@ public class HashTable<K, V> implements Map<K, V> {
 
         @Override
         public V setValue(V value) {
+            Objects.requireNonNull(value);
+            V oldValue = this.value;
+            if (index < slotCount() && stateAt(index) == FULL && keyAt(index) == key) {
+                setValueAt(index, value);
+            } else {
+//              The entry has moved, or is gone; a removed key is not put back
+                int current = contains(key);
+                if (current >= 0) {
+                    setValueAt(current, value);
+                }
+            }
             this.value = value;
-            return value;
+            return oldValue;
         }
 
         @Override
         public boolean equals(Object o) {
             if (this == o) return true;
-            if (o == null || getClass() != o.getClass()) return false;
-            Cell<?, ?> cell = (Cell<?, ?>) o;
-            return Objects.equals(key, cell.key) &&
-                    Objects.equals(value, cell.value);
+            if (!(o instanceof Map.Entry)) return false;
+            Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+            return Objects.equals(key, entry.getKey()) &&
+                    Objects.equals(value, entry.getValue());
         }
 
         @Override
         public int hashCode() {
-            return Objects.hash(key, value);
+            return Objects.hashCode(key) ^ Objects.hashCode(value);
         }
 
         @Override
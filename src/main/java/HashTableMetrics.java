@@ -0,0 +1,122 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// Counters behind HashTable.stats(), kept only when the JVM starts with -Dhashtable.metrics=true.
+//
+// ENABLED is a static final, so with metrics off the JIT folds every hook in HashTable away and the tables
+// carry no metrics object at all. With metrics on, every lookup adds its probe count to a histogram of
+// power-of-two buckets, and rehashes are timed. Lookups of at least LONG_PROBE probes and all rehashes are
+// also emitted as JFR events, which cost nothing more unless a recording enables them.
+final class HashTableMetrics {
+
+    static final boolean ENABLED = Boolean.getBoolean("hashtable.metrics");
+    static final int LONG_PROBE = Integer.getInteger("hashtable.metrics.longProbe", 32);
+    static final int BUCKETS = 16;
+
+    final long[] hitProbes = new long[BUCKETS];
+    final long[] missProbes = new long[BUCKETS];
+    long failedProbes;
+    long rehashCount;
+    long rehashNanos;
+    long purgeCount;
+    long purgeNanos;
+
+    private long rehashStart;
+    private RehashEvent rehashEvent;
+
+//  Bucket b counts lookups of 2^b to 2^(b+1) - 1 probes, and the last bucket everything longer
+    static int bucketOf(int probes) {
+        return Math.min(31 - Integer.numberOfLeadingZeros(probes), BUCKETS - 1);
+    }
+
+//  A lookup that inspected probes slots, the last one holding the key on a hit or ending the sequence on a miss
+    void lookup(boolean hit, int probes, int capacity, int size) {
+        record(hit, probes, hit ? probes - 1 : probes, capacity, size);
+    }
+
+//  A miss of the insert path, which found the free slot it was looking for among its probes
+    void insertMiss(int probes, int capacity, int size) {
+        record(false, probes, probes - 1, capacity, size);
+    }
+
+    private void record(boolean hit, int probes, int failed, int capacity, int size) {
+        (hit ? hitProbes : missProbes)[bucketOf(probes)]++;
+        failedProbes += failed;
+        if (probes >= LONG_PROBE) {
+            LongProbeEvent event = new LongProbeEvent();
+            if (event.shouldCommit()) {
+                event.hit = hit;
+                event.probes = probes;
+                event.capacity = capacity;
+                event.size = size;
+                event.commit();
+            }
+        }
+    }
+
+//  Slots a search for a free slot skipped because they were taken
+    void skipped(int probes) {
+        failedProbes += probes;
+    }
+
+//  Rehashes do not nest, so one pending start is enough
+    void beginRehash() {
+        rehashStart = System.nanoTime();
+        rehashEvent = new RehashEvent();
+        rehashEvent.begin();
+    }
+
+    void endRehash(boolean inPlace, int oldCapacity, int newCapacity, int size) {
+        long nanos = System.nanoTime() - rehashStart;
+        if (inPlace) {
+            purgeCount++;
+            purgeNanos += nanos;
+        } else {
+            rehashCount++;
+            rehashNanos += nanos;
+        }
+        RehashEvent event = rehashEvent;
+        rehashEvent = null;
+        event.end();
+        if (event.shouldCommit()) {
+            event.inPlace = inPlace;
+            event.oldCapacity = oldCapacity;
+            event.newCapacity = newCapacity;
+            event.size = size;
+            event.commit();
+        }
+    }
+
+    @Name("HashTable.Rehash")
+    @Label("HashTable Rehash")
+    @Category("HashTable")
+    @Description("A HashTable moved its entries into a larger table, or rebuilt its table in place to drop tombstones")
+    static final class RehashEvent extends Event {
+        @Label("In Place")
+        boolean inPlace;
+        @Label("Old Capacity")
+        int oldCapacity;
+        @Label("New Capacity")
+        int newCapacity;
+        @Label("Size")
+        int size;
+    }
+
+    @Name("HashTable.LongProbe")
+    @Label("HashTable Long Probe")
+    @Category("HashTable")
+    @Description("A HashTable lookup inspected at least hashtable.metrics.longProbe slots")
+    static final class LongProbeEvent extends Event {
+        @Label("Hit")
+        boolean hit;
+        @Label("Probes")
+        int probes;
+        @Label("Capacity")
+        int capacity;
+        @Label("Size")
+        int size;
+    }
+}
@@ -0,0 +1,127 @@
+import java.util.Arrays;
+
+// A point-in-time copy of the shape and the metrics of a HashTable, returned by HashTable.stats().
+//
+// The shape (size, capacity, tombstones) and the reseeds are always filled in. The probe histograms and the
+// rehash counters are only kept when the JVM runs with -Dhashtable.metrics=true, and are zero otherwise.
+// Histogram bucket b counts lookups that inspected 2^b to 2^(b+1) - 1 slots; the last bucket also holds all
+// longer ones.
+public final class HashTableStats {
+
+    private final int size;
+    private final int capacity;
+    private final int deletedCount;
+    private final int reseedCount;
+    private final boolean keyedHashing;
+    private final boolean metricsEnabled;
+    private final long[] hitProbes;
+    private final long[] missProbes;
+    private final long failedProbes;
+    private final long rehashCount;
+    private final long rehashNanos;
+    private final long purgeCount;
+    private final long purgeNanos;
+
+    HashTableStats(int size, int capacity, int deletedCount, int reseedCount, boolean keyedHashing,
+                   HashTableMetrics metrics) {
+        this.size = size;
+        this.capacity = capacity;
+        this.deletedCount = deletedCount;
+        this.reseedCount = reseedCount;
+        this.keyedHashing = keyedHashing;
+        this.metricsEnabled = metrics != null;
+        if (metrics != null) {
+            hitProbes = metrics.hitProbes.clone();
+            missProbes = metrics.missProbes.clone();
+            failedProbes = metrics.failedProbes;
+            rehashCount = metrics.rehashCount;
+            rehashNanos = metrics.rehashNanos;
+            purgeCount = metrics.purgeCount;
+            purgeNanos = metrics.purgeNanos;
+        } else {
+            hitProbes = new long[HashTableMetrics.BUCKETS];
+            missProbes = new long[HashTableMetrics.BUCKETS];
+            failedProbes = 0;
+            rehashCount = 0;
+            rehashNanos = 0;
+            purgeCount = 0;
+            purgeNanos = 0;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public int deletedCount() {
+        return deletedCount;
+    }
+
+//  Share of the slots holding entries
+    public double load() {
+        return (double) size / capacity;
+    }
+
+//  Share of the slots holding tombstones, which lengthen probes just like entries
+    public double tombstoneRatio() {
+        return (double) deletedCount / capacity;
+    }
+
+//  Rebuilds under a new seed, after an insert probed far longer than the load explains
+    public int reseedCount() {
+        return reseedCount;
+    }
+
+//  Whether string keys are hashed with SipHash rather than hashCode()
+    public boolean keyedHashing() {
+        return keyedHashing;
+    }
+
+    public boolean metricsEnabled() {
+        return metricsEnabled;
+    }
+
+    public long[] hitProbes() {
+        return hitProbes.clone();
+    }
+
+    public long[] missProbes() {
+        return missProbes.clone();
+    }
+
+//  Slots inspected without finding the key or the free slot that was searched for
+    public long failedProbes() {
+        return failedProbes;
+    }
+
+//  Moves into a larger table, and their total time; an incremental rehash is only timed while it starts
+    public long rehashCount() {
+        return rehashCount;
+    }
+
+    public long rehashNanos() {
+        return rehashNanos;
+    }
+
+//  Rebuilds in place that dropped tombstones, and their total time
+    public long purgeCount() {
+        return purgeCount;
+    }
+
+    public long purgeNanos() {
+        return purgeNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "HashTableStats[size=" + size + ", capacity=" + capacity + ", deleted=" + deletedCount
+                + ", reseeds=" + reseedCount + (keyedHashing ? " (keyed)" : "")
+                + ", hitProbes=" + Arrays.toString(hitProbes) + ", missProbes=" + Arrays.toString(missProbes)
+                + ", failedProbes=" + failedProbes + ", rehashes=" + rehashCount + " (" + rehashNanos + " ns)"
+                + ", purges=" + purgeCount + " (" + purgeNanos + " ns)]";
+    }
+}
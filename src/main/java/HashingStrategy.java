@@ -0,0 +1,122 @@
+import java.util.Arrays;
+
+// Decides which keys a HashTable treats as the same, in place of the keys' own equals() and hashCode().
+// With a strategy a table can be keyed by arrays, by identity or by strings regardless of case, and looked
+// up with the raw array or buffer, without wrapping every key in an object that supplies the equality.
+// Keys that are equal must hash alike, and neither method may change its answer for a key in a table.
+public interface HashingStrategy<K> {
+
+    int hash(K key);
+
+    boolean equals(K stored, K key);
+
+//  The same object only, like IdentityHashMap
+    HashingStrategy<Object> IDENTITY = new HashingStrategy<>() {
+        @Override
+        public int hash(Object key) {
+            return System.identityHashCode(key);
+        }
+
+        @Override
+        public boolean equals(Object stored, Object key) {
+            return stored == key;
+        }
+    };
+
+//  Same as equalsIgnoreCase(); a character is hashed in the form in which both of its case variants compare
+    HashingStrategy<String> CASE_INSENSITIVE = new HashingStrategy<>() {
+        @Override
+        public int hash(String key) {
+            int h = 0;
+            for (int i = 0; i < key.length(); i++) {
+                h = 31 * h + Character.toLowerCase(Character.toUpperCase(key.charAt(i)));
+            }
+            return h;
+        }
+
+        @Override
+        public boolean equals(String stored, String key) {
+            return stored.equalsIgnoreCase(key);
+        }
+    };
+
+//  Equal characters, whatever the CharSequence; a CharBuffer over a slice of a char[] finds a String key.
+//  The hash is the one String.hashCode() computes.
+    HashingStrategy<CharSequence> CHAR_SEQUENCES = new HashingStrategy<>() {
+        @Override
+        public int hash(CharSequence key) {
+            int h = 0;
+            for (int i = 0; i < key.length(); i++) {
+                h = 31 * h + key.charAt(i);
+            }
+            return h;
+        }
+
+        @Override
+        public boolean equals(CharSequence stored, CharSequence key) {
+            return CharSequence.compare(stored, key) == 0;
+        }
+    };
+
+//  Equal contents; tables that switch to keyed hashing hash these with SipHash, like strings
+    HashingStrategy<byte[]> BYTE_ARRAYS = new HashingStrategy<>() {
+        @Override
+        public int hash(byte[] key) {
+            return Arrays.hashCode(key);
+        }
+
+        @Override
+        public boolean equals(byte[] stored, byte[] key) {
+            return Arrays.equals(stored, key);
+        }
+    };
+
+    HashingStrategy<char[]> CHAR_ARRAYS = new HashingStrategy<>() {
+        @Override
+        public int hash(char[] key) {
+            return Arrays.hashCode(key);
+        }
+
+        @Override
+        public boolean equals(char[] stored, char[] key) {
+            return Arrays.equals(stored, key);
+        }
+    };
+
+    HashingStrategy<int[]> INT_ARRAYS = new HashingStrategy<>() {
+        @Override
+        public int hash(int[] key) {
+            return Arrays.hashCode(key);
+        }
+
+        @Override
+        public boolean equals(int[] stored, int[] key) {
+            return Arrays.equals(stored, key);
+        }
+    };
+
+    HashingStrategy<long[]> LONG_ARRAYS = new HashingStrategy<>() {
+        @Override
+        public int hash(long[] key) {
+            return Arrays.hashCode(key);
+        }
+
+        @Override
+        public boolean equals(long[] stored, long[] key) {
+            return Arrays.equals(stored, key);
+        }
+    };
+
+//  Equal contents, comparing nested arrays by their contents as well
+    HashingStrategy<Object[]> OBJECT_ARRAYS = new HashingStrategy<>() {
+        @Override
+        public int hash(Object[] key) {
+            return Arrays.deepHashCode(key);
+        }
+
+        @Override
+        public boolean equals(Object[] stored, Object[] key) {
+            return Arrays.deepEquals(stored, key);
+        }
+    };
+}
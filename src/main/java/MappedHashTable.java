@@ -0,0 +1,929 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32C;
+
+// A persistent Map whose open-addressing layout lives in a memory-mapped file, so reopening it costs the same
+// for any number of entries: the header is checked, the index is mapped, and pages fault in as they are used.
+//
+// The file is a 4 KiB header followed by chunks of equal, power-of-two size. The index is the same double
+// hashing as OffHeapHashTable, 16-byte slots of state, hash and entry offset, mapped as one buffer over whole
+// chunks. Entries are appended to the other chunks as [key length][value length][checksum][key][value] and
+// never span two chunks. The hash is taken over the encoded key rather than hashCode(), so it means the same
+// in every process, and the checksum (CRC32C over the lengths, key and value) is checked on every read.
+//
+// Growing maps a fresh index past the end of the data and only then points the header at it, so an index is
+// never rewritten in place. Space of replaced or removed entries and of old indexes is not reused.
+//
+// force() is the durability point. The first change after it marks the header dirty; force() writes the data,
+// then the clean header. A dirty file opened for writing is recovered by a scan of the index that drops
+// every slot whose entry does not check out, so changes made after the last force() may be lost. A read-only
+// table refuses a dirty file. Any number of processes may open a clean file read-only while none writes it:
+// readers hold a shared lock on the file and a writer an exclusive one, so neither opens while the other has
+// the file.
+//
+// Keys and values are serialized with the given codecs, which must be the same ones every time the file is
+// opened. Like HashTable it permits neither null keys nor null values and is not thread safe.
+public class MappedHashTable<K, V> extends AbstractMap<K, V> implements AutoCloseable {
+
+    private static final int MAGIC = 0x464D5448;
+    private static final int VERSION = 1;
+
+    private static final int HEADER_BYTES = 4096;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 4;
+    private static final int FLAGS_OFFSET = 8;
+    private static final int CAPACITY_OFFSET = 12;
+    private static final int SIZE_OFFSET = 16;
+    private static final int DELETED_OFFSET = 20;
+    private static final int LOAD_FACTOR_OFFSET = 24;
+    private static final int CHUNK_SHIFT_OFFSET = 28;
+    private static final int INDEX_OFFSET = 32;
+    private static final int DATA_END_OFFSET = 40;
+    private static final int GARBAGE_OFFSET = 48;
+    private static final int HEADER_CHECKSUM_OFFSET = 56;
+    private static final int DIRTY = 1;
+
+    private static final int MAXIMUM_CAPACITY = 1 << 26;
+    private static final int DEFAULT_CHUNK_SIZE = 1 << 24;
+
+    private static final int SLOT_BYTES = 16;
+    private static final int STATE_OFFSET = 0;
+    private static final int HASH_OFFSET = 4;
+    private static final int LOCATION_OFFSET = 8;
+    private static final int ENTRY_HEADER_BYTES = 12;
+    private static final int CHECKSUM_OFFSET = 8;
+
+    private static final int EMPTY = 0;
+    private static final int FULL = 1;
+    private static final int DELETED = 2;
+
+//  The JVM holds the file locks of all its channels and refuses a second lock on a file it has locked, so the
+//  read-only tables of one file in this JVM share one shared lock, taken on a channel of its own and released
+//  when the last of them closes. A writer's exclusive lock stays on its own channel.
+    private static final Map<Path, SharedLock> SHARED_LOCKS = new HashMap<>();
+
+    private final Path path;
+    private final FileChannel channel;
+    private final FileLock lock;
+    private final Path sharedLockKey;
+    private final boolean readOnly;
+    private final Codec<K> keyCodec;
+    private final Codec<V> valueCodec;
+
+    private float loadFactor;
+    private int chunkShift;
+    private int size;
+    private int capacity;
+    private int deletedCount;
+    private int threshold;
+    private long indexOffset;
+    private long dataEnd;
+//  The data end at the last force(); entries before it are durable and never written again
+    private long forcedEnd;
+    private long garbageBytes;
+    private boolean dirty = false;
+    private boolean closed = false;
+
+    private MappedByteBuffer header;
+    private MappedByteBuffer index;
+//  Data chunk n starts at HEADER_BYTES + (n << chunkShift) and is mapped the first time it is used
+    private MappedByteBuffer[] chunks = new MappedByteBuffer[16];
+
+//  The key of the current lookup, serialized once and compared byte by byte against stored keys
+    private ByteBuffer scratch = ByteBuffer.allocate(64).order(ByteOrder.LITTLE_ENDIAN);
+    private int scratchLength;
+    private int scratchHash;
+    private final CRC32C checksum = new CRC32C();
+
+    private Set<Map.Entry<K, V>> entrySet;
+
+    private MappedHashTable(Path path, FileChannel channel, boolean readOnly,
+                            Codec<K> keyCodec, Codec<V> valueCodec) throws IOException {
+        this.path = path;
+        this.channel = channel;
+        this.readOnly = readOnly;
+        this.keyCodec = Objects.requireNonNull(keyCodec);
+        this.valueCodec = Objects.requireNonNull(valueCodec);
+        if (readOnly) {
+            lock = null;
+            sharedLockKey = acquireSharedLock(path);
+        } else {
+            FileLock acquired;
+            try {
+                acquired = channel.tryLock();
+            } catch (OverlappingFileLockException e) {
+                acquired = null;
+            }
+            if (acquired == null) {
+                throw new IOException(path + " is already open");
+            }
+            lock = acquired;
+            sharedLockKey = null;
+        }
+    }
+
+//  Closing the channel releases the lock taken on it
+    private static final class SharedLock {
+        final FileChannel channel;
+        int holders;
+
+        SharedLock(FileChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    private static Path acquireSharedLock(Path path) throws IOException {
+        Path key = path.toRealPath();
+        synchronized (SHARED_LOCKS) {
+            SharedLock shared = SHARED_LOCKS.get(key);
+            if (shared == null) {
+                FileChannel channel = FileChannel.open(key, StandardOpenOption.READ);
+                FileLock acquired;
+                try {
+                    acquired = channel.tryLock(0, Long.MAX_VALUE, true);
+                } catch (OverlappingFileLockException e) {
+                    acquired = null;
+                } catch (IOException | RuntimeException e) {
+                    channel.close();
+                    throw e;
+                }
+                if (acquired == null) {
+                    channel.close();
+                    throw new IOException(path + " is open for writing");
+                }
+                shared = new SharedLock(channel);
+                SHARED_LOCKS.put(key, shared);
+            }
+            shared.holders++;
+            return key;
+        }
+    }
+
+//  Gives up the lock of this table; the shared lock goes once no read-only table of the file is left
+    private void unlock() throws IOException {
+        if (lock != null) {
+            lock.release();
+        }
+        if (sharedLockKey != null) {
+            synchronized (SHARED_LOCKS) {
+                SharedLock shared = SHARED_LOCKS.get(sharedLockKey);
+                if (--shared.holders == 0) {
+                    SHARED_LOCKS.remove(sharedLockKey);
+                    shared.channel.close();
+                }
+            }
+        }
+    }
+
+//  Creates an empty table in a new file, replacing whatever the file held before
+    public static <K, V> MappedHashTable<K, V> create(Path path, Codec<K> keyCodec, Codec<V> valueCodec,
+                                                      int capacity, float loadFactor, int chunkSize) throws IOException {
+        if (capacity < 0) {
+            throw new IllegalArgumentException(
+                    "Illegal Capacity: " + capacity
+            );
+        }
+
+        if (loadFactor <= 0 || Float.isNaN(loadFactor)) {
+            throw new IllegalArgumentException("Illegal Load: " + loadFactor);
+        }
+
+        if (chunkSize < HEADER_BYTES || Integer.bitCount(chunkSize) != 1) {
+            throw new IllegalArgumentException("Illegal Chunk Size: " + chunkSize);
+        }
+
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            MappedHashTable<K, V> table = new MappedHashTable<>(path, channel, false, keyCodec, valueCodec);
+            channel.truncate(0);
+            table.initialize(tableSizeFor(Math.max(capacity, 1)), loadFactor, Integer.numberOfTrailingZeros(chunkSize));
+            return table;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public static <K, V> MappedHashTable<K, V> create(Path path, Codec<K> keyCodec, Codec<V> valueCodec,
+                                                      int capacity, float loadFactor) throws IOException {
+        return create(path, keyCodec, valueCodec, capacity, loadFactor, DEFAULT_CHUNK_SIZE);
+    }
+
+    public static <K, V> MappedHashTable<K, V> create(Path path, Codec<K> keyCodec, Codec<V> valueCodec) throws IOException {
+        return create(path, keyCodec, valueCodec, 16, 0.75f, DEFAULT_CHUNK_SIZE);
+    }
+
+//  Opens an existing file. Nothing is read beyond the header; a dirty file opened for writing is recovered first.
+    public static <K, V> MappedHashTable<K, V> open(Path path, Codec<K> keyCodec, Codec<V> valueCodec,
+                                                    boolean readOnly) throws IOException {
+        FileChannel channel = readOnly
+                ? FileChannel.open(path, StandardOpenOption.READ)
+                : FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedHashTable<K, V> table = null;
+        try {
+            table = new MappedHashTable<>(path, channel, readOnly, keyCodec, valueCodec);
+            table.load();
+            return table;
+        } catch (IOException | RuntimeException e) {
+            if (table != null) {
+                table.unlock();
+            }
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return find(key) >= 0;
+    }
+
+    @Override
+    public V get(Object key) {
+        int slot = find(key);
+        if (slot < 0) {
+            return null;
+        }
+        return readValue(location(slot));
+    }
+
+    @Override
+    public V put(K key, V value) {
+        if (value == null || key == null) {
+            throw new NullPointerException();
+        }
+        ensureWritable();
+
+        int slot = find(key);
+        int hash = scratchHash;
+        int valueLength = valueLength(value);
+
+        if (slot >= 0) {
+            long location = location(slot);
+            ByteBuffer chunk = chunk(location);
+            int offset = offsetOf(location);
+            V oldValue = readValue(location);
+
+//          Only an entry written since the last force() is overwritten in place. A durable one stays as it is until
+//          the slot points elsewhere, so a crash midway leaves the key with its old value rather than a bad checksum.
+            if (location >= forcedEnd && chunk.getInt(offset + 4) == valueLength) {
+                chunk.position(offset + ENTRY_HEADER_BYTES + scratchLength);
+                writeValue(value, valueLength, chunk);
+                chunk.putInt(offset + CHECKSUM_OFFSET, checksum(chunk, offset));
+            } else {
+                discard(location);
+                index.putLong(slot * SLOT_BYTES + LOCATION_OFFSET, append(value, valueLength));
+            }
+            return oldValue;
+        }
+
+        if (size + deletedCount >= threshold) {
+            rehash();
+        }
+
+//      The entry goes in before the slot points at it, so a slot never refers to unwritten bytes
+        long location = append(value, valueLength);
+        slot = findEmptySlot(hash);
+        if (state(slot) == DELETED) {
+            deletedCount--;
+        }
+        index.putInt(slot * SLOT_BYTES + HASH_OFFSET, hash);
+        index.putLong(slot * SLOT_BYTES + LOCATION_OFFSET, location);
+        index.putInt(slot * SLOT_BYTES + STATE_OFFSET, FULL);
+        size++;
+
+//      Returns null if there was no mapping for key before
+        return null;
+    }
+
+    @Override
+    public V remove(Object key) {
+        ensureWritable();
+        int slot = find(key);
+        if (slot < 0) {
+            return null;
+        }
+
+        V deletedValue = readValue(location(slot));
+        removeSlot(slot);
+        return deletedValue;
+    }
+
+    @Override
+    public void clear() {
+        ensureWritable();
+        size = 0;
+        switchIndex(capacity, false);
+        garbageBytes = indexOffset - HEADER_BYTES;
+    }
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+//  Bytes of the file taken by replaced or removed entries and by old indexes
+    public long garbageBytes() {
+        return garbageBytes;
+    }
+
+//  Writes every change to the file and marks it clean; the file survives a crash in this state
+    public void force() {
+        ensureOpen();
+        if (readOnly || !dirty) {
+            return;
+        }
+        index.force();
+        for (MappedByteBuffer chunk : chunks) {
+            if (chunk != null) {
+                chunk.force();
+            }
+        }
+        writeHeader(false);
+        header.force();
+        dirty = false;
+        forcedEnd = dataEnd;
+    }
+
+//  Checks the checksum of every entry, for readers that want more than the check on each read
+    public void verify() throws IOException {
+        ensureOpen();
+        long fileSize = channel.size();
+        for (int slot = 0; slot < capacity; slot++) {
+            if (state(slot) == FULL && !entryIntact(slot, fileSize)) {
+                throw new IOException("Corrupt entry at offset " + location(slot) + " in " + path);
+            }
+        }
+    }
+
+//  Forces a writable table and releases the file; the mappings go away once the buffers are collected
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            force();
+        } finally {
+            closed = true;
+            header = null;
+            index = null;
+            chunks = null;
+            size = 0;
+            try {
+                unlock();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new EntrySet();
+        }
+        return entrySet;
+    }
+
+    private class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+        @Override
+        public Iterator<Map.Entry<K, V>> iterator() {
+            return new EntryIterator();
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public void clear() {
+            MappedHashTable.this.clear();
+        }
+    }
+
+    private class EntryIterator implements Iterator<Map.Entry<K, V>> {
+        int slot = -1;
+        int next = advance(0);
+
+        private int advance(int from) {
+            ensureOpen();
+            for (int i = from; i < capacity; i++) {
+                if (state(i) == FULL) {
+                    return i;
+                }
+            }
+            return capacity;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < capacity;
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+            if (next >= capacity) {
+                throw new NoSuchElementException();
+            }
+            slot = next;
+            next = advance(slot + 1);
+
+            long location = location(slot);
+            return new MappedEntry(readKey(location), readValue(location));
+        }
+
+        @Override
+        public void remove() {
+            if (slot < 0 || state(slot) != FULL) {
+                throw new IllegalStateException();
+            }
+            ensureWritable();
+            removeSlot(slot);
+        }
+    }
+
+    private class MappedEntry extends AbstractMap.SimpleEntry<K, V> {
+        MappedEntry(K key, V value) {
+            super(key, value);
+        }
+
+        @Override
+        public V setValue(V value) {
+//          Writes through only while the key is present, so a removed key stays removed
+            if (containsKey(getKey())) {
+                put(getKey(), value);
+            }
+            return super.setValue(value);
+        }
+    }
+
+    private void initialize(int capacity, float loadFactor, int chunkShift) throws IOException {
+        this.loadFactor = loadFactor;
+        this.chunkShift = chunkShift;
+        this.header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+        header.order(ByteOrder.LITTLE_ENDIAN);
+        dataEnd = HEADER_BYTES;
+        dirty = true;
+        switchIndex(capacity, false);
+        force();
+    }
+
+    private void load() throws IOException {
+        if (channel.size() < HEADER_BYTES) {
+            throw new IOException("Not a MappedHashTable file: " + path);
+        }
+        header = channel.map(readOnly ? FileChannel.MapMode.READ_ONLY : FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+        header.order(ByteOrder.LITTLE_ENDIAN);
+
+        if (header.getInt(MAGIC_OFFSET) != MAGIC) {
+            throw new IOException("Not a MappedHashTable file: " + path);
+        }
+        if (header.getInt(VERSION_OFFSET) != VERSION) {
+            throw new IOException("Unsupported MappedHashTable version " + header.getInt(VERSION_OFFSET) + " in " + path);
+        }
+        if (header.getInt(HEADER_CHECKSUM_OFFSET) != headerChecksum()) {
+            throw new IOException("Corrupt MappedHashTable header in " + path);
+        }
+
+        capacity = header.getInt(CAPACITY_OFFSET);
+        size = header.getInt(SIZE_OFFSET);
+        deletedCount = header.getInt(DELETED_OFFSET);
+        loadFactor = header.getFloat(LOAD_FACTOR_OFFSET);
+        chunkShift = header.getInt(CHUNK_SHIFT_OFFSET);
+        indexOffset = header.getLong(INDEX_OFFSET);
+        dataEnd = header.getLong(DATA_END_OFFSET);
+        forcedEnd = dataEnd;
+        garbageBytes = header.getLong(GARBAGE_OFFSET);
+        threshold = thresholdFor(capacity);
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1 || capacity > MAXIMUM_CAPACITY
+                || indexOffset + (long) capacity * SLOT_BYTES > channel.size()) {
+            throw new IOException("Corrupt MappedHashTable header in " + path);
+        }
+        index = map(indexOffset, (long) capacity * SLOT_BYTES);
+
+        if ((header.getInt(FLAGS_OFFSET) & DIRTY) != 0) {
+            if (readOnly) {
+                throw new IOException(path + " was not closed cleanly; open it for writing once to recover it");
+            }
+            recover();
+        }
+    }
+
+//  Rebuilds the counters from the index and drops every slot whose entry was not completely written
+    private void recover() throws IOException {
+        long fileSize = channel.size();
+        dirty = true;
+        size = 0;
+        deletedCount = 0;
+        long end = Math.max(dataEnd, indexOffset + indexBytes(capacity));
+        for (int slot = 0; slot < capacity; slot++) {
+            int state = state(slot);
+            if (state == FULL) {
+                if (entryIntact(slot, fileSize)) {
+                    size++;
+                    end = Math.max(end, location(slot) + entryBytes(location(slot)));
+                } else {
+                    index.putInt(slot * SLOT_BYTES + STATE_OFFSET, DELETED);
+                    deletedCount++;
+                }
+            } else if (state == DELETED) {
+                deletedCount++;
+            } else if (state != EMPTY) {
+                index.putInt(slot * SLOT_BYTES + STATE_OFFSET, DELETED);
+                deletedCount++;
+            }
+        }
+        dataEnd = end;
+        force();
+    }
+
+//  Whether the slot's entry lies within the file, passes its checksum and hashes to the slot's hash
+    private boolean entryIntact(int slot, long fileSize) {
+        long location = location(slot);
+        if (location < HEADER_BYTES || location + ENTRY_HEADER_BYTES > fileSize
+                || offsetOf(location) + ENTRY_HEADER_BYTES > chunkSize()) {
+            return false;
+        }
+
+        ByteBuffer chunk = chunk(location);
+        int offset = offsetOf(location);
+        long keyLength = chunk.getInt(offset);
+        long valueLength = chunk.getInt(offset + 4);
+        if (keyLength < 0 || valueLength < 0
+                || offset + ENTRY_HEADER_BYTES + keyLength + valueLength > chunkSize()
+                || chunk.getInt(offset + CHECKSUM_OFFSET) != checksum(chunk, offset)) {
+            return false;
+        }
+
+        loadScratch(chunk, offset + ENTRY_HEADER_BYTES, (int) keyLength);
+        return hashKey() == index.getInt(slot * SLOT_BYTES + HASH_OFFSET);
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("MappedHashTable is closed");
+        }
+    }
+
+//  Marks the file dirty on disk before the first change after force() can reach it
+    private void ensureWritable() {
+        ensureOpen();
+        if (readOnly) {
+            throw new UnsupportedOperationException("MappedHashTable is read-only");
+        }
+        if (!dirty) {
+            dirty = true;
+            writeHeader(true);
+            header.force();
+        }
+    }
+
+    private void writeHeader(boolean dirty) {
+        header.putInt(MAGIC_OFFSET, MAGIC);
+        header.putInt(VERSION_OFFSET, VERSION);
+        header.putInt(FLAGS_OFFSET, dirty ? DIRTY : 0);
+        header.putInt(CAPACITY_OFFSET, capacity);
+        header.putInt(SIZE_OFFSET, size);
+        header.putInt(DELETED_OFFSET, deletedCount);
+        header.putFloat(LOAD_FACTOR_OFFSET, loadFactor);
+        header.putInt(CHUNK_SHIFT_OFFSET, chunkShift);
+        header.putLong(INDEX_OFFSET, indexOffset);
+        header.putLong(DATA_END_OFFSET, dataEnd);
+        header.putLong(GARBAGE_OFFSET, garbageBytes);
+        header.putInt(HEADER_CHECKSUM_OFFSET, headerChecksum());
+    }
+
+    private int headerChecksum() {
+        ByteBuffer fields = header.duplicate();
+        fields.limit(HEADER_CHECKSUM_OFFSET).position(0);
+        checksum.reset();
+        checksum.update(fields);
+        return (int) checksum.getValue();
+    }
+
+//  CRC32C of the entry at offset, over the lengths, the key and the value
+    private int checksum(ByteBuffer chunk, int offset) {
+        int end = offset + ENTRY_HEADER_BYTES + chunk.getInt(offset) + chunk.getInt(offset + 4);
+        checksum.reset();
+        chunk.limit(offset + CHECKSUM_OFFSET).position(offset);
+        checksum.update(chunk);
+        chunk.limit(end).position(offset + ENTRY_HEADER_BYTES);
+        checksum.update(chunk);
+        chunk.clear();
+        return (int) checksum.getValue();
+    }
+
+    private static int tableSizeFor(int capacity) {
+        int n = -1 >>> Integer.numberOfLeadingZeros(capacity - 1);
+        return n < 0 ? 1 : (n >= MAXIMUM_CAPACITY ? MAXIMUM_CAPACITY : n + 1);
+    }
+
+    private int thresholdFor(int capacity) {
+        return (int) Math.min((long) (capacity * loadFactor), capacity - 1);
+    }
+
+    private int chunkSize() {
+        return 1 << chunkShift;
+    }
+
+//  The index takes whole chunks, so data appended after it starts on a chunk boundary
+    private long indexBytes(int capacity) {
+        long mask = chunkSize() - 1;
+        return ((long) capacity * SLOT_BYTES + mask) & ~mask;
+    }
+
+    private long alignToChunk(long location) {
+        long mask = chunkSize() - 1;
+        return HEADER_BYTES + ((location - HEADER_BYTES + mask) & ~mask);
+    }
+
+    private MappedByteBuffer map(long position, long bytes) {
+        try {
+            MappedByteBuffer buffer = channel.map(
+                    readOnly ? FileChannel.MapMode.READ_ONLY : FileChannel.MapMode.READ_WRITE, position, bytes);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            return buffer;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private ByteBuffer chunk(long location) {
+        int n = (int) ((location - HEADER_BYTES) >>> chunkShift);
+        if (n >= chunks.length) {
+            chunks = Arrays.copyOf(chunks, Math.max(n + 1, chunks.length * 2));
+        }
+        MappedByteBuffer chunk = chunks[n];
+        if (chunk == null) {
+            chunk = map(HEADER_BYTES + ((long) n << chunkShift), chunkSize());
+            chunks[n] = chunk;
+        }
+        return chunk;
+    }
+
+    private int offsetOf(long location) {
+        return (int) ((location - HEADER_BYTES) & (chunkSize() - 1));
+    }
+
+    private int state(int slot) {
+        return index.getInt(slot * SLOT_BYTES + STATE_OFFSET);
+    }
+
+    private long location(int slot) {
+        return index.getLong(slot * SLOT_BYTES + LOCATION_OFFSET);
+    }
+
+    private static int hash1(int hash, int capacity) {
+        return hash & (capacity - 1);
+    }
+
+    private static int hash2(int hash) {
+        return Integer.reverse(hash) | 1;
+    }
+
+//  Hash of the encoded key in the scratch buffer. It depends only on the bytes, never on hashCode(), so the
+//  hashes stored in the index stay valid in every process; changing it changes the file format.
+    private int hashKey() {
+        long h = 0x9E3779B97F4A7C15L ^ scratchLength;
+        int i = 0;
+        for (; i + Long.BYTES <= scratchLength; i += Long.BYTES) {
+            h = (h ^ scratch.getLong(i)) * 0xFF51AFD7ED558CCDL;
+            h ^= h >>> 32;
+        }
+        for (; i < scratchLength; i++) {
+            h = (h ^ scratch.get(i)) * 0xC4CEB9FE1A85EC53L;
+        }
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+//  Serializes key into the scratch buffer and returns its slot, or -1 if it is absent
+    @SuppressWarnings("unchecked")
+    private int find(Object key) {
+        if (key == null) throw new NullPointerException("MappedHashTable does not permit null keys");
+        ensureOpen();
+        encodeKey((K) key);
+        int hash = hashKey();
+        scratchHash = hash;
+
+        int mask = capacity - 1;
+        int step = hash2(hash);
+        int slot = hash1(hash, capacity);
+        for (int n = 0; n < capacity; n++) {
+            int state = state(slot);
+            if (state == EMPTY) {
+                return -1;
+            }
+            if (state == FULL && index.getInt(slot * SLOT_BYTES + HASH_OFFSET) == hash
+                    && keyMatches(location(slot))) {
+                return slot;
+            }
+            slot = (slot + step) & mask;
+        }
+        return -1;
+    }
+
+    private int findEmptySlot(int hash) {
+        int mask = capacity - 1;
+        int step = hash2(hash);
+        int slot = hash1(hash, capacity);
+        while (state(slot) == FULL) {
+            slot = (slot + step) & mask;
+        }
+        return slot;
+    }
+
+    private void ensureScratch(int length) {
+        if (scratch.capacity() < length) {
+            scratch = ByteBuffer.allocate(Math.max(length, scratch.capacity() * 2)).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        scratch.clear();
+        scratchLength = length;
+    }
+
+    private void encodeKey(K key) {
+        int length = keyCodec.fixedLength() >= 0 ? keyCodec.fixedLength() : keyCodec.length(key);
+        ensureScratch(length);
+        keyCodec.write(key, scratch);
+        if (scratch.position() != length) {
+            throw new IllegalStateException(
+                    "Key codec wrote " + scratch.position() + " bytes instead of " + length);
+        }
+    }
+
+    private void loadScratch(ByteBuffer chunk, int offset, int length) {
+        ensureScratch(length);
+        chunk.limit(offset + length).position(offset);
+        scratch.put(chunk);
+        chunk.clear();
+    }
+
+    private int valueLength(V value) {
+        return valueCodec.fixedLength() >= 0 ? valueCodec.fixedLength() : valueCodec.length(value);
+    }
+
+    private void writeValue(V value, int length, ByteBuffer chunk) {
+        int start = chunk.position();
+        valueCodec.write(value, chunk);
+        if (chunk.position() - start != length) {
+            throw new IllegalStateException(
+                    "Value codec wrote " + (chunk.position() - start) + " bytes instead of " + length);
+        }
+    }
+
+    private boolean keyMatches(long location) {
+        ByteBuffer chunk = chunk(location);
+        int offset = offsetOf(location);
+        if (chunk.getInt(offset) != scratchLength) {
+            return false;
+        }
+
+        int keyOffset = offset + ENTRY_HEADER_BYTES;
+        int i = 0;
+        for (; i + Long.BYTES <= scratchLength; i += Long.BYTES) {
+            if (chunk.getLong(keyOffset + i) != scratch.getLong(i)) {
+                return false;
+            }
+        }
+        for (; i < scratchLength; i++) {
+            if (chunk.get(keyOffset + i) != scratch.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long entryBytes(long location) {
+        ByteBuffer chunk = chunk(location);
+        int offset = offsetOf(location);
+        return ENTRY_HEADER_BYTES + chunk.getInt(offset) + chunk.getInt(offset + 4);
+    }
+
+    private void checkEntry(ByteBuffer chunk, int offset, long location) {
+        if (chunk.getInt(offset + CHECKSUM_OFFSET) != checksum(chunk, offset)) {
+            throw new UncheckedIOException(new IOException("Corrupt entry at offset " + location + " in " + path));
+        }
+    }
+
+    private K readKey(long location) {
+        ByteBuffer chunk = chunk(location);
+        int offset = offsetOf(location);
+        checkEntry(chunk, offset, location);
+        chunk.position(offset + ENTRY_HEADER_BYTES);
+        return keyCodec.read(chunk, chunk.getInt(offset));
+    }
+
+    private V readValue(long location) {
+        ByteBuffer chunk = chunk(location);
+        int offset = offsetOf(location);
+        checkEntry(chunk, offset, location);
+        chunk.position(offset + ENTRY_HEADER_BYTES + chunk.getInt(offset));
+        return valueCodec.read(chunk, chunk.getInt(offset + 4));
+    }
+
+//  Appends the key in the scratch buffer together with value and returns the entry's file offset
+    private long append(V value, int valueLength) {
+        int entryBytes = ENTRY_HEADER_BYTES + scratchLength + valueLength;
+        if (entryBytes > chunkSize()) {
+            throw new IllegalArgumentException("Entry of " + entryBytes + " bytes exceeds the chunk size " + chunkSize());
+        }
+        int room = chunkSize() - offsetOf(dataEnd);
+        if (room < entryBytes) {
+            garbageBytes += room;
+            dataEnd += room;
+        }
+
+        long location = dataEnd;
+        ByteBuffer chunk = chunk(location);
+        int offset = offsetOf(location);
+        chunk.putInt(offset, scratchLength);
+        chunk.putInt(offset + 4, valueLength);
+        chunk.position(offset + ENTRY_HEADER_BYTES);
+        scratch.limit(scratchLength).position(0);
+        chunk.put(scratch);
+        scratch.clear();
+        writeValue(value, valueLength, chunk);
+        chunk.putInt(offset + CHECKSUM_OFFSET, checksum(chunk, offset));
+
+        dataEnd += entryBytes;
+        return location;
+    }
+
+    private void discard(long location) {
+        garbageBytes += entryBytes(location);
+    }
+
+    private void removeSlot(int slot) {
+        discard(location(slot));
+        index.putInt(slot * SLOT_BYTES + STATE_OFFSET, DELETED);
+        size--;
+        deletedCount++;
+    }
+
+    private void rehash() {
+        int newCapacity = capacity;
+        if (size >= threshold / 2) {
+            if (capacity == MAXIMUM_CAPACITY) {
+                throw new IllegalStateException("MappedHashTable capacity exceeded");
+            }
+            newCapacity = capacity * 2;
+        }
+        garbageBytes += indexBytes(capacity);
+        switchIndex(newCapacity, true);
+    }
+
+//  Maps a new index of newCapacity slots past the end of the data, optionally fills it from the current
+//  one, forces it and only then points the header at it
+    private void switchIndex(int newCapacity, boolean copy) {
+        ByteBuffer oldIndex = index;
+        int oldCapacity = capacity;
+        long newIndexOffset = alignToChunk(dataEnd);
+        garbageBytes += newIndexOffset - dataEnd;
+
+        capacity = newCapacity;
+        threshold = thresholdFor(capacity);
+        index = map(newIndexOffset, (long) capacity * SLOT_BYTES);
+//      The file may extend past the data after a recovery, so the region is not necessarily zero
+        for (int i = 0; i < capacity * SLOT_BYTES; i += Long.BYTES) {
+            index.putLong(i, 0L);
+        }
+
+        deletedCount = 0;
+        if (copy) {
+            for (int i = 0; i < oldCapacity; i++) {
+                int base = i * SLOT_BYTES;
+                if (oldIndex.getInt(base + STATE_OFFSET) == FULL) {
+                    int hash = oldIndex.getInt(base + HASH_OFFSET);
+                    int slot = findEmptySlot(hash);
+                    index.putInt(slot * SLOT_BYTES + STATE_OFFSET, FULL);
+                    index.putInt(slot * SLOT_BYTES + HASH_OFFSET, hash);
+                    index.putLong(slot * SLOT_BYTES + LOCATION_OFFSET, oldIndex.getLong(base + LOCATION_OFFSET));
+                }
+            }
+        }
+
+        indexOffset = newIndexOffset;
+        dataEnd = newIndexOffset + indexBytes(capacity);
+        index.force();
+        writeHeader(true);
+        header.force();
+    }
+}
@@ -0,0 +1,610 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.*;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+// A lock-free HashTable in the style of Cliff Click's NonBlockingHashMap, using the same double-hashing
+// probe sequence as HashTable.
+//
+// A key slot goes from null to a key with a single CAS and never changes after that, so no thread ever
+// waits for another. Values are replaced by CAS; a removed key keeps its slot with a TOMBSTONE value.
+// When a table gets too full a larger one is CAS'd into its next field, and every thread that touches
+// the old table helps to migrate it: a slot's value is first boxed into a Prime, which forwards all
+// readers and writers of that slot to the new table, then copied over, and finally the old slot is
+// sealed as TOMBPRIME. Once every slot is sealed the new table is promoted to the top.
+//
+// The compute and merge family retry with CAS instead of locking, so their functions may run more than
+// once under contention. Null keys and values are not permitted, and iterators are weakly consistent.
+public class NonBlockingHashTable<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V> {
+
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+    private static final int MINIMUM_CAPACITY = 8;
+    private static final int REPROBE_LIMIT = 10;
+    private static final int COPY_CHUNK = 1024;
+
+//  Value of a removed key, and the key of a slot that was sealed empty during a copy
+    private static final Object TOMBSTONE = new Object();
+//  Value of a slot whose contents now live in the next table
+    private static final Prime TOMBPRIME = new Prime(TOMBSTONE);
+//  Expected values for putIfMatch: put unconditionally, or only over a live value
+    private static final Object NO_MATCH_OLD = new Object();
+    private static final Object MATCH_ANY = new Object();
+
+    private static final VarHandle SLOTS = MethodHandles.arrayElementVarHandle(Object[].class);
+    private static final VarHandle TABLE;
+    private static final VarHandle NEXT;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            TABLE = lookup.findVarHandle(NonBlockingHashTable.class, "table", Table.class);
+            NEXT = lookup.findVarHandle(Table.class, "next", Table.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final float loadFactor;
+    private volatile Table table;
+
+    private Set<Map.Entry<K, V>> entrySet;
+
+    public NonBlockingHashTable(int capacity, float loadFactor) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException(
+                    "Illegal Capacity: " + capacity
+            );
+        }
+
+        if (loadFactor <= 0 || Float.isNaN(loadFactor)) {
+            throw new IllegalArgumentException("Illegal Load: " + loadFactor);
+        }
+
+        this.loadFactor = loadFactor;
+        this.table = new Table(tableSizeFor(Math.max(capacity, MINIMUM_CAPACITY)), new LongAdder());
+    }
+
+    public NonBlockingHashTable(int capacity) {
+        this(capacity, 0.75f);
+    }
+
+    public NonBlockingHashTable() {
+        this(16, 0.75f);
+    }
+
+    @Override
+    public int size() {
+        long size = table.size.sum();
+        return (int) Math.max(0, Math.min(size, Integer.MAX_VALUE));
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        if (key == null) throw new NullPointerException("NonBlockingHashTable does not permit null keys");
+        return (V) get(table, key, spread(key.hashCode()));
+    }
+
+    @Override
+    public V getOrDefault(Object key, V defaultValue) {
+        V value = get(key);
+        return value == null ? defaultValue : value;
+    }
+
+    @Override
+    public V put(K key, V value) {
+        return putIfMatch(key, value, NO_MATCH_OLD);
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        return putIfMatch(key, value, TOMBSTONE);
+    }
+
+    @Override
+    public V remove(Object key) {
+        return putIfMatch(key, TOMBSTONE, NO_MATCH_OLD);
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        if (value == null) {
+            return false;
+        }
+        return value.equals(putIfMatch(key, TOMBSTONE, value));
+    }
+
+    @Override
+    public V replace(K key, V value) {
+        return putIfMatch(key, value, MATCH_ANY);
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        if (oldValue == null) throw new NullPointerException();
+        return oldValue.equals(putIfMatch(key, newValue, oldValue));
+    }
+
+    @Override
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        Objects.requireNonNull(mappingFunction);
+        V value = get(key);
+        if (value != null) {
+            return value;
+        }
+        V newValue = mappingFunction.apply(key);
+        if (newValue == null) {
+            return null;
+        }
+        V raced = putIfAbsent(key, newValue);
+        return raced == null ? newValue : raced;
+    }
+
+    @Override
+    public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        Objects.requireNonNull(remappingFunction);
+        V oldValue;
+        while ((oldValue = get(key)) != null) {
+            V newValue = remappingFunction.apply(key, oldValue);
+            if (newValue == null ? remove(key, oldValue) : replace(key, oldValue, newValue)) {
+                return newValue;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        Objects.requireNonNull(remappingFunction);
+        while (true) {
+            V oldValue = get(key);
+            V newValue = remappingFunction.apply(key, oldValue);
+            if (oldValue == null) {
+                if (newValue == null || putIfAbsent(key, newValue) == null) {
+                    return newValue;
+                }
+            } else if (newValue == null ? remove(key, oldValue) : replace(key, oldValue, newValue)) {
+                return newValue;
+            }
+        }
+    }
+
+    @Override
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        Objects.requireNonNull(remappingFunction);
+        if (value == null) throw new NullPointerException();
+        while (true) {
+            V oldValue = get(key);
+            if (oldValue == null) {
+                if (putIfAbsent(key, value) == null) {
+                    return value;
+                }
+                continue;
+            }
+            V newValue = remappingFunction.apply(oldValue, value);
+            if (newValue == null ? remove(key, oldValue) : replace(key, oldValue, newValue)) {
+                return newValue;
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        Table empty = new Table(MINIMUM_CAPACITY, new LongAdder());
+        table = empty;
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new EntrySet();
+        }
+        return entrySet;
+    }
+
+    private class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+        @Override
+        public Iterator<Map.Entry<K, V>> iterator() {
+            return new EntryIterator();
+        }
+
+        @Override
+        public int size() {
+            return NonBlockingHashTable.this.size();
+        }
+
+        @Override
+        public void clear() {
+            NonBlockingHashTable.this.clear();
+        }
+    }
+
+//  Walks the keys of the top table as of creation and looks each value up, following any copy in progress
+    private class EntryIterator implements Iterator<Map.Entry<K, V>> {
+        final Object[] keys = table.keys;
+        int index = -1;
+        K nextKey;
+        V nextValue;
+        K lastKey;
+
+        EntryIterator() {
+            advance();
+        }
+
+        @SuppressWarnings("unchecked")
+        private void advance() {
+            nextKey = null;
+            while (++index < keys.length) {
+                Object k = SLOTS.getVolatile(keys, index);
+                if (k != null && k != TOMBSTONE) {
+                    V v = get(k);
+                    if (v != null) {
+                        nextKey = (K) k;
+                        nextValue = v;
+                        return;
+                    }
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextKey != null;
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+            if (nextKey == null) {
+                throw new NoSuchElementException();
+            }
+            Map.Entry<K, V> entry = new WriteThroughEntry(nextKey, nextValue);
+            lastKey = nextKey;
+            advance();
+            return entry;
+        }
+
+        @Override
+        public void remove() {
+            if (lastKey == null) {
+                throw new IllegalStateException();
+            }
+            NonBlockingHashTable.this.remove(lastKey);
+            lastKey = null;
+        }
+    }
+
+    private class WriteThroughEntry extends AbstractMap.SimpleEntry<K, V> {
+        WriteThroughEntry(K key, V value) {
+            super(key, value);
+        }
+
+        @Override
+        public V setValue(V value) {
+//          replace() writes only while the key is present, so a removed key stays removed
+            replace(getKey(), value);
+            return super.setValue(value);
+        }
+    }
+
+    private static int spread(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    private static int hash2(int hash) {
+        return Integer.reverse(hash) | 1;
+    }
+
+    private static int tableSizeFor(int capacity) {
+        int n = -1 >>> Integer.numberOfLeadingZeros(capacity - 1);
+        return n < 0 ? 1 : (n >= MAXIMUM_CAPACITY ? MAXIMUM_CAPACITY : n + 1);
+    }
+
+    private static int reprobeLimit(int length) {
+        return REPROBE_LIMIT + (length >> 2);
+    }
+
+    private static boolean keyEquals(Object k, Object key) {
+        return k == key || (k != TOMBSTONE && k.equals(key));
+    }
+
+//  Returns the live value of key, or null
+    private Object get(Table t, Object key, int hash) {
+        outer:
+        while (true) {
+            Object[] keys = t.keys;
+            int mask = keys.length - 1;
+            int step = hash2(hash);
+            int index = hash & mask;
+            int reprobes = 0;
+            while (true) {
+                Object k = SLOTS.getVolatile(keys, index);
+                Object v = SLOTS.getVolatile(t.vals, index);
+                if (k == null) {
+                    return null;
+                }
+//              Read after the key, so a key that went missing here is guaranteed to be in the next table
+                Table next = t.next;
+                if (keyEquals(k, key)) {
+                    if (!(v instanceof Prime)) {
+                        return v == TOMBSTONE ? null : v;
+                    }
+                    t = copySlotAndCheck(t, index, key);
+                    continue outer;
+                }
+                if (++reprobes >= reprobeLimit(keys.length) || k == TOMBSTONE) {
+                    if (next == null) {
+                        return null;
+                    }
+                    t = helpCopy(next);
+                    continue outer;
+                }
+                index = (index + step) & mask;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private V putIfMatch(Object key, Object putValue, Object expectedValue) {
+        if (key == null || putValue == null) {
+            throw new NullPointerException();
+        }
+        Object oldValue = putIfMatch(table, key, spread(key.hashCode()), putValue, expectedValue);
+        return oldValue == null || oldValue == TOMBSTONE ? null : (V) oldValue;
+    }
+
+//  Stores putValue for key if the current value matches expectedValue and returns the value it saw.
+//  A null expectedValue is used by the copy and only fills a slot that never had a value in this table.
+    private Object putIfMatch(Table t, Object key, int hash, Object putValue, Object expectedValue) {
+        outer:
+        while (true) {
+            Object[] keys = t.keys;
+            Object[] vals = t.vals;
+            int mask = keys.length - 1;
+            int step = hash2(hash);
+            int index = hash & mask;
+            int reprobes = 0;
+            Object v;
+            Table next;
+
+            while (true) {
+                v = SLOTS.getVolatile(vals, index);
+                Object k = SLOTS.getVolatile(keys, index);
+                if (k == null) {
+                    if (putValue == TOMBSTONE) {
+                        return null;
+                    }
+                    if (SLOTS.compareAndSet(keys, index, null, key)) {
+                        t.slots.incrementAndGet();
+                        next = t.next;
+                        break;
+                    }
+                    k = SLOTS.getVolatile(keys, index);
+                }
+                next = t.next;
+                if (keyEquals(k, key)) {
+                    break;
+                }
+                if (++reprobes >= reprobeLimit(keys.length) || k == TOMBSTONE) {
+                    next = resize(t);
+                    if (expectedValue != null) {
+                        helpCopy(next);
+                    }
+                    t = next;
+                    continue outer;
+                }
+                index = (index + step) & mask;
+            }
+
+            if (putValue == v) {
+                return v;
+            }
+            if (next == null && ((v == null && tableFull(t)) || v instanceof Prime)) {
+                next = resize(t);
+            }
+            if (next != null) {
+                t = copySlotAndCheck(t, index, expectedValue);
+                continue;
+            }
+
+            while (true) {
+                if (expectedValue != NO_MATCH_OLD && v != expectedValue
+                        && (expectedValue != MATCH_ANY || v == TOMBSTONE || v == null)
+                        && !(v == null && expectedValue == TOMBSTONE)
+                        && (expectedValue == null || !expectedValue.equals(v))) {
+                    return v;
+                }
+                if (SLOTS.compareAndSet(vals, index, v, putValue)) {
+//                  A copy moves a live pair instead of adding one, so only real updates change the size
+                    if (expectedValue != null) {
+                        boolean wasLive = v != null && v != TOMBSTONE;
+                        if (!wasLive && putValue != TOMBSTONE) {
+                            t.size.increment();
+                        } else if (wasLive && putValue == TOMBSTONE) {
+                            t.size.decrement();
+                        }
+                    }
+                    return v;
+                }
+                v = SLOTS.getVolatile(vals, index);
+                if (v instanceof Prime) {
+                    t = copySlotAndCheck(t, index, expectedValue);
+                    continue outer;
+                }
+            }
+        }
+    }
+
+    private boolean tableFull(Table t) {
+        int length = t.keys.length;
+        return t.slots.get() >= Math.min((long) (length * loadFactor), length - 1);
+    }
+
+//  Returns the table t is being copied into, creating it if this thread wins the race
+    private Table resize(Table t) {
+        Table next = t.next;
+        if (next != null) {
+            return next;
+        }
+
+        int oldLength = t.keys.length;
+        long size = t.size.sum();
+        int newLength = oldLength;
+        if (size >= oldLength >> 2) {
+            newLength = oldLength << 1;
+            if (size >= oldLength >> 1) {
+                newLength = oldLength << 2;
+            }
+        }
+        if (newLength > MAXIMUM_CAPACITY || newLength <= 0) {
+            if (oldLength == MAXIMUM_CAPACITY) {
+                throw new IllegalStateException("NonBlockingHashTable capacity exceeded");
+            }
+            newLength = MAXIMUM_CAPACITY;
+        }
+
+        next = t.next;
+        if (next != null) {
+            return next;
+        }
+        Table created = new Table(newLength, t.size);
+        return NEXT.compareAndSet(t, null, created) ? created : t.next;
+    }
+
+//  Copies a chunk of the top table into next, so that every thread that sees a resize pays a share of it
+    private Table helpCopy(Table next) {
+        Table top = table;
+        if (top.next != null) {
+            copyChunks(top, top.next, false);
+        }
+        return next;
+    }
+
+    private void copyChunks(Table old, Table next, boolean copyAll) {
+        int oldLength = old.keys.length;
+        int chunk = Math.min(oldLength, COPY_CHUNK);
+        boolean panic = false;
+        int copyIndex = -1;
+
+        while (old.copyDone.get() < oldLength) {
+            if (!panic) {
+                copyIndex = old.copyIndex.get();
+                while (copyIndex < oldLength * 2
+                        && !old.copyIndex.compareAndSet(copyIndex, copyIndex + chunk)) {
+                    copyIndex = old.copyIndex.get();
+                }
+//              Every chunk has been handed out twice over; finish whatever is left alone
+                if (copyIndex >= oldLength * 2) {
+                    panic = true;
+                    copyIndex = 0;
+                }
+            }
+
+            int work = 0;
+            for (int i = 0; i < chunk; i++) {
+                if (copySlot(old, (copyIndex + i) & (oldLength - 1), next)) {
+                    work++;
+                }
+            }
+            if (work > 0) {
+                copyCheckAndPromote(old, work);
+            }
+            copyIndex += chunk;
+            if (!copyAll && !panic) {
+                return;
+            }
+        }
+        copyCheckAndPromote(old, 0);
+    }
+
+    private Table copySlotAndCheck(Table old, int index, Object shouldHelp) {
+        Table next = old.next;
+        if (copySlot(old, index, next)) {
+            copyCheckAndPromote(old, 1);
+        }
+        return shouldHelp == null ? next : helpCopy(next);
+    }
+
+    private void copyCheckAndPromote(Table old, int work) {
+        int done = work == 0 ? old.copyDone.get() : old.copyDone.addAndGet(work);
+        if (done == old.keys.length) {
+            TABLE.compareAndSet(this, old, old.next);
+        }
+    }
+
+//  Moves one slot into next; returns true only for the one thread whose call completed the slot
+    private boolean copySlot(Table old, int index, Table next) {
+        Object key;
+        while ((key = SLOTS.getVolatile(old.keys, index)) == null) {
+            SLOTS.compareAndSet(old.keys, index, null, TOMBSTONE);
+        }
+
+        Object oldValue = SLOTS.getVolatile(old.vals, index);
+        while (!(oldValue instanceof Prime)) {
+            Prime box = oldValue == null || oldValue == TOMBSTONE ? TOMBPRIME : new Prime(oldValue);
+            if (SLOTS.compareAndSet(old.vals, index, oldValue, box)) {
+                if (box == TOMBPRIME) {
+                    return true;
+                }
+                oldValue = box;
+                break;
+            }
+            oldValue = SLOTS.getVolatile(old.vals, index);
+        }
+        if (oldValue == TOMBPRIME) {
+            return false;
+        }
+
+        Object unboxed = ((Prime) oldValue).value;
+        boolean copied = putIfMatch(next, key, spread(key.hashCode()), unboxed, null) == null;
+
+        while (oldValue != TOMBPRIME && !SLOTS.compareAndSet(old.vals, index, oldValue, TOMBPRIME)) {
+            oldValue = SLOTS.getVolatile(old.vals, index);
+        }
+        return copied;
+    }
+
+    private static final class Prime {
+        final Object value;
+
+        Prime(Object value) {
+            this.value = value;
+        }
+    }
+
+    private static final class Table {
+        final Object[] keys;
+        final Object[] vals;
+//      Shared by a table and everything it is copied into
+        final LongAdder size;
+//      Key slots claimed in this table, live or not
+        final AtomicInteger slots = new AtomicInteger();
+        final AtomicInteger copyIndex = new AtomicInteger();
+        final AtomicInteger copyDone = new AtomicInteger();
+        volatile Table next;
+
+        Table(int capacity, LongAdder size) {
+            this.keys = new Object[capacity];
+            this.vals = new Object[capacity];
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,582 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.*;
+
+// A Map whose entries live outside of the Java heap, so the garbage collector never has to trace them.
+//
+// The open-addressing index uses the same power-of-two double hashing as HashTable, but sits in a direct
+// buffer of 16-byte slots: state, cached hash and the location of the entry. Entries are serialized with
+// the given codecs into an arena of direct chunks as [key length][value length][key bytes][value bytes].
+// Keys are hashed and compared by their encoded bytes, not by hashCode() and equals(), so two keys are the
+// same key exactly when the key codec writes the same bytes for them (e.g. equal copies of a byte[]).
+// Growing the index only moves slots between direct buffers; entries themselves are neither deserialized
+// nor copied, and the arena is compacted off-heap once removed or replaced entries outweigh live ones.
+//
+// Like HashTable it permits neither null keys nor null values and is not thread safe.
+public class OffHeapHashTable<K, V> extends AbstractMap<K, V> implements AutoCloseable {
+
+    private static final int MAXIMUM_CAPACITY = 1 << 26;
+    private static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+    private static final int SLOT_BYTES = 16;
+    private static final int STATE_OFFSET = 0;
+    private static final int HASH_OFFSET = 4;
+    private static final int LOCATION_OFFSET = 8;
+    private static final int ENTRY_HEADER_BYTES = 8;
+
+    private static final int EMPTY = 0;
+    private static final int FULL = 1;
+    private static final int DELETED = 2;
+
+    private final Codec<K> keyCodec;
+    private final Codec<V> valueCodec;
+    private final float loadFactor;
+    private final int chunkSize;
+
+    private int size = 0;
+    private int capacity;
+    private int deletedCount = 0;
+    private int threshold;
+    private ByteBuffer index;
+
+//  Entry locations are (chunk number << 32 | offset in chunk)
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+    private ByteBuffer current;
+    private int currentOffset;
+    private long liveBytes = 0;
+    private long garbageBytes = 0;
+    private boolean closed = false;
+
+//  The key of the current lookup, serialized once and compared byte by byte against stored keys
+    private ByteBuffer scratch = ByteBuffer.allocate(64).order(ByteOrder.nativeOrder());
+    private int scratchLength;
+    private int scratchHash;
+
+    private Set<Map.Entry<K, V>> entrySet;
+
+    public OffHeapHashTable(Codec<K> keyCodec, Codec<V> valueCodec, int capacity, float loadFactor, int chunkSize) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException(
+                    "Illegal Capacity: " + capacity
+            );
+        }
+
+        if (loadFactor <= 0 || Float.isNaN(loadFactor)) {
+            throw new IllegalArgumentException("Illegal Load: " + loadFactor);
+        }
+
+        if (chunkSize < ENTRY_HEADER_BYTES) {
+            throw new IllegalArgumentException("Illegal Chunk Size: " + chunkSize);
+        }
+
+        if (capacity==0) {
+            capacity = 1;
+        }
+
+        this.keyCodec = Objects.requireNonNull(keyCodec);
+        this.valueCodec = Objects.requireNonNull(valueCodec);
+        this.loadFactor = loadFactor;
+        this.chunkSize = chunkSize;
+        this.capacity = tableSizeFor(capacity);
+        this.threshold = thresholdFor(this.capacity);
+        this.index = allocate((long) this.capacity * SLOT_BYTES);
+    }
+
+    public OffHeapHashTable(Codec<K> keyCodec, Codec<V> valueCodec, int capacity, float loadFactor) {
+        this(keyCodec, valueCodec, capacity, loadFactor, DEFAULT_CHUNK_SIZE);
+    }
+
+    public OffHeapHashTable(Codec<K> keyCodec, Codec<V> valueCodec) {
+        this(keyCodec, valueCodec, 16, 0.75f, DEFAULT_CHUNK_SIZE);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return find(key) >= 0;
+    }
+
+    @Override
+    public V get(Object key) {
+        int slot = find(key);
+        if (slot < 0) {
+            return null;
+        }
+        return readValue(location(slot));
+    }
+
+//  A read-only view of the serialized value of key, or null if it is absent. The bytes are not copied;
+//  the view is only valid until the table is modified or closed.
+    public ByteBuffer getValueBuffer(K key) {
+        int slot = find(key);
+        if (slot < 0) {
+            return null;
+        }
+
+        long location = location(slot);
+        ByteBuffer chunk = chunks.get(chunkOf(location));
+        int offset = offsetOf(location);
+        int keyLength = chunk.getInt(offset);
+        int valueLength = chunk.getInt(offset + 4);
+        int valueOffset = offset + ENTRY_HEADER_BYTES + keyLength;
+
+        ByteBuffer view = chunk.asReadOnlyBuffer();
+        view.limit(valueOffset + valueLength).position(valueOffset);
+        return view.slice().order(chunk.order());
+    }
+
+    @Override
+    public V put(K key, V value) {
+        if (value == null || key == null) {
+            throw new NullPointerException();
+        }
+
+        int slot = find(key);
+        int hash = scratchHash;
+        int valueLength = valueLength(value);
+
+        if (slot >= 0) {
+            long location = location(slot);
+            ByteBuffer chunk = chunks.get(chunkOf(location));
+            int offset = offsetOf(location);
+            V oldValue = readValue(location);
+
+            if (chunk.getInt(offset + 4) == valueLength) {
+                chunk.position(offset + ENTRY_HEADER_BYTES + scratchLength);
+                writeValue(value, valueLength, chunk);
+            } else {
+                discard(location);
+                index.putLong(slot * SLOT_BYTES + LOCATION_OFFSET, append(value, valueLength));
+                compactIfWasteful();
+            }
+            return oldValue;
+        }
+
+        if (size + deletedCount >= threshold) {
+            rehash();
+        }
+
+        slot = findEmptySlot(hash);
+        if (index.getInt(slot * SLOT_BYTES + STATE_OFFSET) == DELETED) {
+            deletedCount--;
+        }
+        long location = append(value, valueLength);
+        index.putInt(slot * SLOT_BYTES + STATE_OFFSET, FULL);
+        index.putInt(slot * SLOT_BYTES + HASH_OFFSET, hash);
+        index.putLong(slot * SLOT_BYTES + LOCATION_OFFSET, location);
+        size++;
+
+//      Returns null if there was no mapping for key before
+        return null;
+    }
+
+    @Override
+    public V remove(Object key) {
+        int slot = find(key);
+        if (slot < 0) {
+            return null;
+        }
+
+        long location = location(slot);
+        V deletedValue = readValue(location);
+        removeSlot(slot);
+        compactIfWasteful();
+        return deletedValue;
+    }
+
+    @Override
+    public void clear() {
+        ensureOpen();
+        index = allocate((long) capacity * SLOT_BYTES);
+        chunks.clear();
+        current = null;
+        size = 0;
+        deletedCount = 0;
+        liveBytes = 0;
+        garbageBytes = 0;
+    }
+
+//  Off-heap bytes held by the index and the entry arena
+    public long offHeapBytes() {
+        long bytes = index == null ? 0 : index.capacity();
+        for (ByteBuffer chunk : chunks) {
+            bytes += chunk.capacity();
+        }
+        return bytes;
+    }
+
+//  Drops every off-heap buffer; the memory is returned once the buffers are collected
+    @Override
+    public void close() {
+        closed = true;
+        index = null;
+        chunks.clear();
+        current = null;
+        size = 0;
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new EntrySet();
+        }
+        return entrySet;
+    }
+
+    private class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+        @Override
+        public Iterator<Map.Entry<K, V>> iterator() {
+            return new EntryIterator();
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public void clear() {
+            OffHeapHashTable.this.clear();
+        }
+    }
+
+    private class EntryIterator implements Iterator<Map.Entry<K, V>> {
+        int slot = -1;
+        int next = advance(0);
+
+        private int advance(int from) {
+            ensureOpen();
+            for (int i = from; i < capacity; i++) {
+                if (state(i) == FULL) {
+                    return i;
+                }
+            }
+            return capacity;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < capacity;
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+            if (next >= capacity) {
+                throw new NoSuchElementException();
+            }
+            slot = next;
+            next = advance(slot + 1);
+
+            long location = location(slot);
+            return new OffHeapEntry(readKey(location), readValue(location));
+        }
+
+        @Override
+        public void remove() {
+            if (slot < 0 || state(slot) != FULL) {
+                throw new IllegalStateException();
+            }
+            removeSlot(slot);
+        }
+    }
+
+    private class OffHeapEntry extends AbstractMap.SimpleEntry<K, V> {
+        OffHeapEntry(K key, V value) {
+            super(key, value);
+        }
+
+        @Override
+        public V setValue(V value) {
+//          Writes through only while the key is present, so a removed key stays removed
+            if (containsKey(getKey())) {
+                put(getKey(), value);
+            }
+            return super.setValue(value);
+        }
+    }
+
+//  Hash of the encoded key in the scratch buffer, the same function as MappedHashTable's
+    private int hashKey() {
+        long h = 0x9E3779B97F4A7C15L ^ scratchLength;
+        int i = 0;
+        for (; i + Long.BYTES <= scratchLength; i += Long.BYTES) {
+            h = (h ^ scratch.getLong(i)) * 0xFF51AFD7ED558CCDL;
+            h ^= h >>> 32;
+        }
+        for (; i < scratchLength; i++) {
+            h = (h ^ scratch.get(i)) * 0xC4CEB9FE1A85EC53L;
+        }
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    private int hash1(int hash) {
+        return hash & (capacity - 1);
+    }
+
+    private int hash2(int hash) {
+        return Integer.reverse(hash) | 1;
+    }
+
+    private static int tableSizeFor(int capacity) {
+        int n = -1 >>> Integer.numberOfLeadingZeros(capacity - 1);
+        return n < 0 ? 1 : (n >= MAXIMUM_CAPACITY ? MAXIMUM_CAPACITY : n + 1);
+    }
+
+    private int thresholdFor(int capacity) {
+        return (int) Math.min((long) (capacity * loadFactor), capacity - 1);
+    }
+
+    private static ByteBuffer allocate(long bytes) {
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IllegalStateException("OffHeapHashTable buffer too large: " + bytes);
+        }
+        return ByteBuffer.allocateDirect((int) bytes).order(ByteOrder.nativeOrder());
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("OffHeapHashTable is closed");
+        }
+    }
+
+    private int state(int slot) {
+        return index.getInt(slot * SLOT_BYTES + STATE_OFFSET);
+    }
+
+    private long location(int slot) {
+        return index.getLong(slot * SLOT_BYTES + LOCATION_OFFSET);
+    }
+
+    private static int chunkOf(long location) {
+        return (int) (location >>> 32);
+    }
+
+    private static int offsetOf(long location) {
+        return (int) location;
+    }
+
+//  Serializes and hashes key into the scratch fields and returns its slot, or -1 if it is absent
+    @SuppressWarnings("unchecked")
+    private int find(Object key) {
+        if (key == null) throw new NullPointerException("OffHeapHashTable does not permit null keys");
+        ensureOpen();
+        encodeKey((K) key);
+        int hash = hashKey();
+        scratchHash = hash;
+
+        int mask = capacity - 1;
+        int step = hash2(hash);
+        int slot = hash1(hash);
+        for (int n = 0; n < capacity; n++) {
+            int state = state(slot);
+            if (state == EMPTY) {
+                return -1;
+            }
+            if (state == FULL && index.getInt(slot * SLOT_BYTES + HASH_OFFSET) == hash
+                    && keyMatches(location(slot))) {
+                return slot;
+            }
+            slot = (slot + step) & mask;
+        }
+        return -1;
+    }
+
+    private int findEmptySlot(int hash) {
+        int mask = capacity - 1;
+        int step = hash2(hash);
+        int slot = hash1(hash);
+        while (state(slot) == FULL) {
+            slot = (slot + step) & mask;
+        }
+        return slot;
+    }
+
+    private void encodeKey(K key) {
+        int length = keyCodec.fixedLength() >= 0 ? keyCodec.fixedLength() : keyCodec.length(key);
+        if (scratch.capacity() < length) {
+            scratch = ByteBuffer.allocate(Math.max(length, scratch.capacity() * 2)).order(ByteOrder.nativeOrder());
+        }
+        scratch.clear();
+        keyCodec.write(key, scratch);
+        if (scratch.position() != length) {
+            throw new IllegalStateException(
+                    "Key codec wrote " + scratch.position() + " bytes instead of " + length);
+        }
+        scratchLength = length;
+    }
+
+    private int valueLength(V value) {
+        return valueCodec.fixedLength() >= 0 ? valueCodec.fixedLength() : valueCodec.length(value);
+    }
+
+    private void writeValue(V value, int length, ByteBuffer chunk) {
+        int start = chunk.position();
+        valueCodec.write(value, chunk);
+        if (chunk.position() - start != length) {
+            throw new IllegalStateException(
+                    "Value codec wrote " + (chunk.position() - start) + " bytes instead of " + length);
+        }
+    }
+
+    private boolean keyMatches(long location) {
+        ByteBuffer chunk = chunks.get(chunkOf(location));
+        int offset = offsetOf(location);
+        if (chunk.getInt(offset) != scratchLength) {
+            return false;
+        }
+
+        int keyOffset = offset + ENTRY_HEADER_BYTES;
+        int i = 0;
+        for (; i + Long.BYTES <= scratchLength; i += Long.BYTES) {
+            if (chunk.getLong(keyOffset + i) != scratch.getLong(i)) {
+                return false;
+            }
+        }
+        for (; i < scratchLength; i++) {
+            if (chunk.get(keyOffset + i) != scratch.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private K readKey(long location) {
+        ByteBuffer chunk = chunks.get(chunkOf(location));
+        int offset = offsetOf(location);
+        chunk.position(offset + ENTRY_HEADER_BYTES);
+        return keyCodec.read(chunk, chunk.getInt(offset));
+    }
+
+    private V readValue(long location) {
+        ByteBuffer chunk = chunks.get(chunkOf(location));
+        int offset = offsetOf(location);
+        chunk.position(offset + ENTRY_HEADER_BYTES + chunk.getInt(offset));
+        return valueCodec.read(chunk, chunk.getInt(offset + 4));
+    }
+
+//  Appends the key in the scratch buffer together with value to the arena and returns its location
+    private long append(V value, int valueLength) {
+        int entryBytes = ENTRY_HEADER_BYTES + scratchLength + valueLength;
+        ByteBuffer chunk = reserve(entryBytes);
+        int offset = chunk.position();
+
+        chunk.putInt(scratchLength);
+        chunk.putInt(valueLength);
+        scratch.limit(scratchLength).position(0);
+        chunk.put(scratch);
+        scratch.clear();
+        writeValue(value, valueLength, chunk);
+
+        liveBytes += entryBytes;
+        return ((long) (chunks.size() - 1) << 32) | offset;
+    }
+
+//  Returns a chunk positioned at bytes of free space; it is always the last one in the list
+    private ByteBuffer reserve(int bytes) {
+        if (bytes > chunkSize) {
+            ByteBuffer dedicated = allocate(bytes);
+            chunks.add(dedicated);
+            current = null;
+            dedicated.position(0);
+            return dedicated;
+        }
+        if (current == null || chunkSize - currentOffset < bytes) {
+            current = allocate(chunkSize);
+            currentOffset = 0;
+            chunks.add(current);
+        }
+        current.position(currentOffset);
+        currentOffset += bytes;
+        return current;
+    }
+
+    private void discard(long location) {
+        ByteBuffer chunk = chunks.get(chunkOf(location));
+        int offset = offsetOf(location);
+        int entryBytes = ENTRY_HEADER_BYTES + chunk.getInt(offset) + chunk.getInt(offset + 4);
+        liveBytes -= entryBytes;
+        garbageBytes += entryBytes;
+    }
+
+    private void removeSlot(int slot) {
+        discard(location(slot));
+        index.putInt(slot * SLOT_BYTES + STATE_OFFSET, DELETED);
+        size--;
+        deletedCount++;
+    }
+
+    private void rehash() {
+        int oldCapacity = capacity;
+        if (size >= threshold / 2) {
+            if (capacity == MAXIMUM_CAPACITY) {
+                throw new IllegalStateException("OffHeapHashTable capacity exceeded");
+            }
+            capacity = capacity * 2;
+        }
+        threshold = thresholdFor(capacity);
+
+        ByteBuffer oldIndex = index;
+        index = allocate((long) capacity * SLOT_BYTES);
+        deletedCount = 0;
+
+        for (int i = 0; i < oldCapacity; i++) {
+            int base = i * SLOT_BYTES;
+            if (oldIndex.getInt(base + STATE_OFFSET) == FULL) {
+                int hash = oldIndex.getInt(base + HASH_OFFSET);
+                int slot = findEmptySlot(hash);
+                index.putInt(slot * SLOT_BYTES + STATE_OFFSET, FULL);
+                index.putInt(slot * SLOT_BYTES + HASH_OFFSET, hash);
+                index.putLong(slot * SLOT_BYTES + LOCATION_OFFSET, oldIndex.getLong(base + LOCATION_OFFSET));
+            }
+        }
+
+        compactIfWasteful();
+    }
+
+//  Compacts once dead entries outweigh live ones, and at least a chunk of them has piled up, so that updates and
+//  removals that never make the index grow keep the arena bounded too
+    private void compactIfWasteful() {
+        if (garbageBytes > liveBytes && garbageBytes >= chunkSize) {
+            compactArena();
+        }
+    }
+
+//  Copies live entries into fresh chunks, buffer to buffer, and drops the old ones
+    private void compactArena() {
+        List<ByteBuffer> oldChunks = new ArrayList<>(chunks);
+        ByteBuffer[] sources = new ByteBuffer[oldChunks.size()];
+        chunks.clear();
+        current = null;
+
+        for (int slot = 0; slot < capacity; slot++) {
+            if (state(slot) != FULL) {
+                continue;
+            }
+            long location = location(slot);
+            int chunkNumber = chunkOf(location);
+            if (sources[chunkNumber] == null) {
+//              duplicate() resets the byte order, and the entry lengths are native order
+                sources[chunkNumber] = oldChunks.get(chunkNumber).duplicate().order(ByteOrder.nativeOrder());
+            }
+            ByteBuffer source = sources[chunkNumber];
+            int offset = offsetOf(location);
+            int entryBytes = ENTRY_HEADER_BYTES + source.getInt(offset) + source.getInt(offset + 4);
+
+            ByteBuffer target = reserve(entryBytes);
+            int newOffset = target.position();
+            source.limit(offset + entryBytes).position(offset);
+            target.put(source);
+            source.clear();
+
+            index.putLong(slot * SLOT_BYTES + LOCATION_OFFSET, ((long) (chunks.size() - 1) << 32) | newOffset);
+        }
+        garbageBytes = 0;
+    }
+}
@@ -0,0 +1,329 @@
+import java.util.*;
+
+// A HashTable built on Robin Hood linear probing.
+//
+// Entries are probed linearly from their home slot, and an insert takes the slot of any resident that is
+// closer to its own home than the new entry is to its home, carrying the displaced resident further. Probe
+// distances therefore stay short and even, which is what makes load factors of 0.9 and above usable, and a
+// lookup can stop as soon as it passes a resident closer to home than the key would be. Removal shifts the
+// rest of the cluster one slot back instead of leaving a tombstone, so the table never needs cleaning up.
+//
+// The spread hash of every entry is kept next to it: it gives the resident's probe distance without calling
+// hashCode() again, lets most mismatches be rejected before equals(), and 0 marks an empty slot.
+public class RobinHoodHashTable<K, V> extends SlotTable<K, V> {
+
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    private int size = 0;
+    private int capacity;
+    private final float loadFactor;
+    private int threshold;
+
+    private int[] hashes;
+    private Object[] keyTable;
+    private Object[] valueTable;
+
+    public RobinHoodHashTable(int capacity, float loadFactor) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException(
+                    "Illegal Capacity: " + capacity
+            );
+        }
+
+        if (loadFactor <= 0 || Float.isNaN(loadFactor)) {
+            throw new IllegalArgumentException("Illegal Load: " + loadFactor);
+        }
+
+        this.loadFactor = loadFactor;
+        allocate(tableSizeFor(Math.max(capacity, 2)));
+    }
+
+    public RobinHoodHashTable(int capacity) {
+        this(capacity, 0.9f);
+    }
+
+    public RobinHoodHashTable() {
+        this(16, 0.9f);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return find(key) >= 0;
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        if (value == null) {
+            throw new NullPointerException("HashTable does not permit null values");
+        }
+
+        for (int i = 0; i < capacity; i++) {
+            if (hashes[i] != 0 && value.equals(valueTable[i])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public V get(Object key) {
+        int index = find(key);
+        return index < 0 ? null : valueAt(index);
+    }
+
+    @Override
+    public V put(K key, V value) {
+        if (value == null || key == null) {
+            throw new NullPointerException();
+        }
+
+        int hash = hashOf(key);
+        int mask = capacity - 1;
+        int index = hash & mask;
+        for (int distance = 0; ; distance++, index = (index + 1) & mask) {
+            int resident = hashes[index];
+            if (resident == 0 || distanceOf(resident, index, mask) < distance) {
+                break;
+            }
+            if (resident == hash && keyTable[index].equals(key)) {
+                V oldValue = valueAt(index);
+                valueTable[index] = value;
+                return oldValue;
+            }
+        }
+
+        if (size >= threshold) {
+            rehash();
+            insert(hash, key, value);
+        } else {
+//          The probe above stopped where the key belongs, so the insert can start right there
+            insertAt(index, hash, key, value);
+        }
+        size++;
+        return null;
+    }
+
+    @Override
+    public V remove(Object key) {
+        int index = find(key);
+        if (index < 0) {
+            return null;
+        }
+
+        V oldValue = valueAt(index);
+        removeAt(index);
+        return oldValue;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(hashes, 0);
+        Arrays.fill(keyTable, null);
+        Arrays.fill(valueTable, null);
+        size = 0;
+    }
+
+    @Override
+    Iterator<Map.Entry<K, V>> entryIterator() {
+        return new EntryIterator();
+    }
+
+//  Walks the slots downwards, starting just below an empty slot and wrapping around to it. A backward shift
+//  after remove() only moves entries from slots above the removed one, and never across the empty slot,
+//  so everything it moves has been returned already and nothing is skipped or returned twice.
+    private class EntryIterator implements Iterator<Map.Entry<K, V>> {
+        int remaining = size;
+        int index;
+        int last = -1;
+
+        EntryIterator() {
+            int empty = 0;
+            while (hashes[empty] != 0) {
+                empty++;
+            }
+            index = empty;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return remaining > 0;
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+            if (remaining == 0) {
+                throw new NoSuchElementException();
+            }
+            int mask = capacity - 1;
+            do {
+                index = (index - 1) & mask;
+            } while (hashes[index] == 0);
+            remaining--;
+            last = index;
+            return new Cell(index);
+        }
+
+        @Override
+        public void remove() {
+            if (last < 0) {
+                throw new IllegalStateException();
+            }
+            removeAt(last);
+            last = -1;
+        }
+    }
+
+    private static int distanceOf(int hash, int index, int mask) {
+        return (index - hash) & mask;
+    }
+
+    private static int tableSizeFor(int capacity) {
+        int n = -1 >>> Integer.numberOfLeadingZeros(capacity - 1);
+        return n < 0 ? 1 : (n >= MAXIMUM_CAPACITY ? MAXIMUM_CAPACITY : n + 1);
+    }
+
+    private void allocate(int capacity) {
+        this.capacity = capacity;
+//      At least one slot always stays empty, which ends the iterator's search for a starting point
+        threshold = (int) Math.min((long) (capacity * loadFactor), capacity - 1);
+        hashes = new int[capacity];
+        keyTable = new Object[capacity];
+        valueTable = new Object[capacity];
+    }
+
+    @Override
+    int find(Object key) {
+        if (key == null) throw new NullPointerException("HashTable does not permit null keys");
+        int hash = hashOf(key);
+        int mask = capacity - 1;
+        int index = hash & mask;
+        for (int distance = 0; ; distance++, index = (index + 1) & mask) {
+            int resident = hashes[index];
+            if (resident == 0 || distanceOf(resident, index, mask) < distance) {
+                return -1;
+            }
+            if (resident == hash && keyTable[index].equals(key)) {
+                return index;
+            }
+        }
+    }
+
+    private void insert(int hash, Object key, Object value) {
+        int mask = capacity - 1;
+        int index = hash & mask;
+        int distance = 0;
+        while (hashes[index] != 0 && distanceOf(hashes[index], index, mask) >= distance) {
+            index = (index + 1) & mask;
+            distance++;
+        }
+        insertAt(index, hash, key, value);
+    }
+
+//  Places the entry at index and carries every resident it displaces further along, swapping whenever
+//  the carried entry is further from home than the resident of the slot
+    private void insertAt(int index, int hash, Object key, Object value) {
+        int mask = capacity - 1;
+        int distance = distanceOf(hash, index, mask);
+        while (hashes[index] != 0) {
+            int residentDistance = distanceOf(hashes[index], index, mask);
+            if (residentDistance < distance) {
+                int h = hashes[index];
+                Object k = keyTable[index];
+                Object v = valueTable[index];
+                hashes[index] = hash;
+                keyTable[index] = key;
+                valueTable[index] = value;
+                hash = h;
+                key = k;
+                value = v;
+                distance = residentDistance;
+            }
+            index = (index + 1) & mask;
+            distance++;
+        }
+        hashes[index] = hash;
+        keyTable[index] = key;
+        valueTable[index] = value;
+    }
+
+//  Backward-shift deletion: pulls the following entries of the cluster one slot closer to home
+//  until an empty slot or an entry already at home
+    private void removeAt(int index) {
+        int mask = capacity - 1;
+        int next = (index + 1) & mask;
+        while (hashes[next] != 0 && distanceOf(hashes[next], next, mask) > 0) {
+            hashes[index] = hashes[next];
+            keyTable[index] = keyTable[next];
+            valueTable[index] = valueTable[next];
+            index = next;
+            next = (next + 1) & mask;
+        }
+        hashes[index] = 0;
+        keyTable[index] = null;
+        valueTable[index] = null;
+        size--;
+    }
+
+    private void rehash() {
+        if (capacity == MAXIMUM_CAPACITY) {
+            throw new IllegalStateException("HashTable capacity exceeded");
+        }
+        int oldCapacity = capacity;
+        int[] oldHashes = hashes;
+        Object[] oldKeys = keyTable;
+        Object[] oldValues = valueTable;
+        allocate(capacity * 2);
+
+        for (int i = 0; i < oldCapacity; i++) {
+            if (oldHashes[i] != 0) {
+                insert(oldHashes[i], oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+//  Number of slots find() inspects for the key, used by the benchmark probe-length report
+    int probeLength(Object key) {
+        int hash = hashOf(key);
+        int mask = capacity - 1;
+        int index = hash & mask;
+        for (int distance = 0; ; distance++, index = (index + 1) & mask) {
+            int resident = hashes[index];
+            if (resident == 0 || distanceOf(resident, index, mask) < distance
+                    || (resident == hash && keyTable[index].equals(key))) {
+                return distance + 1;
+            }
+        }
+    }
+
+    @Override
+    int slotLimit() {
+        return capacity;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    K keyAt(int index) {
+        return (K) keyTable[index];
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    V valueAt(int index) {
+        return (V) valueTable[index];
+    }
+
+    @Override
+    void setValueAt(int index, V value) {
+        valueTable[index] = value;
+    }
+}
@@ -0,0 +1,80 @@
+// Keyed hashing of strings and byte arrays, for a HashTable that is being fed keys chosen to collide.
+//
+// SipHash-1-3: one round per 8-byte word and three to finish, under a 128-bit key. Without the key nobody can
+// tell which inputs will collide, so no amount of crafted keys does better than random ones. A string is
+// hashed as its UTF-16 code units, four to a word, so strings that differ anywhere hash differently even where
+// their hashCode() values are equal. The 64-bit result is folded to the int the table caches.
+final class SipHash {
+
+    private SipHash() {
+    }
+
+    static int hash(long k0, long k1, String s) {
+        long v0 = k0 ^ 0x736f6d6570736575L;
+        long v1 = k1 ^ 0x646f72616e646f6dL;
+        long v2 = k0 ^ 0x6c7967656e657261L;
+        long v3 = k1 ^ 0x7465646279746573L;
+        int length = s.length();
+        int i = 0;
+        for (; i + 4 <= length; i += 4) {
+            long m = s.charAt(i) | (long) s.charAt(i + 1) << 16
+                    | (long) s.charAt(i + 2) << 32 | (long) s.charAt(i + 3) << 48;
+            v3 ^= m;
+            v0 += v1; v1 = Long.rotateLeft(v1, 13); v1 ^= v0; v0 = Long.rotateLeft(v0, 32);
+            v2 += v3; v3 = Long.rotateLeft(v3, 16); v3 ^= v2;
+            v0 += v3; v3 = Long.rotateLeft(v3, 21); v3 ^= v0;
+            v2 += v1; v1 = Long.rotateLeft(v1, 17); v1 ^= v2; v2 = Long.rotateLeft(v2, 32);
+            v0 ^= m;
+        }
+        long last = (long) (2 * length) << 56;
+        for (int shift = 0; i < length; i++, shift += 16) {
+            last |= (long) s.charAt(i) << shift;
+        }
+        return finish(v0, v1, v2, v3, last);
+    }
+
+    static int hash(long k0, long k1, byte[] bytes) {
+        long v0 = k0 ^ 0x736f6d6570736575L;
+        long v1 = k1 ^ 0x646f72616e646f6dL;
+        long v2 = k0 ^ 0x6c7967656e657261L;
+        long v3 = k1 ^ 0x7465646279746573L;
+        int length = bytes.length;
+        int i = 0;
+        for (; i + 8 <= length; i += 8) {
+            long m = 0;
+            for (int b = 7; b >= 0; b--) {
+                m = m << 8 | (bytes[i + b] & 0xFF);
+            }
+            v3 ^= m;
+            v0 += v1; v1 = Long.rotateLeft(v1, 13); v1 ^= v0; v0 = Long.rotateLeft(v0, 32);
+            v2 += v3; v3 = Long.rotateLeft(v3, 16); v3 ^= v2;
+            v0 += v3; v3 = Long.rotateLeft(v3, 21); v3 ^= v0;
+            v2 += v1; v1 = Long.rotateLeft(v1, 17); v1 ^= v2; v2 = Long.rotateLeft(v2, 32);
+            v0 ^= m;
+        }
+        long last = (long) length << 56;
+        for (int shift = 0; i < length; i++, shift += 8) {
+            last |= (long) (bytes[i] & 0xFF) << shift;
+        }
+        return finish(v0, v1, v2, v3, last);
+    }
+
+//  Compresses the last word, which carries the input length in its top byte, and runs the finishing rounds
+    private static int finish(long v0, long v1, long v2, long v3, long last) {
+        v3 ^= last;
+        v0 += v1; v1 = Long.rotateLeft(v1, 13); v1 ^= v0; v0 = Long.rotateLeft(v0, 32);
+        v2 += v3; v3 = Long.rotateLeft(v3, 16); v3 ^= v2;
+        v0 += v3; v3 = Long.rotateLeft(v3, 21); v3 ^= v0;
+        v2 += v1; v1 = Long.rotateLeft(v1, 17); v1 ^= v2; v2 = Long.rotateLeft(v2, 32);
+        v0 ^= last;
+        v2 ^= 0xff;
+        for (int round = 0; round < 3; round++) {
+            v0 += v1; v1 = Long.rotateLeft(v1, 13); v1 ^= v0; v0 = Long.rotateLeft(v0, 32);
+            v2 += v3; v3 = Long.rotateLeft(v3, 16); v3 ^= v2;
+            v0 += v3; v3 = Long.rotateLeft(v3, 21); v3 ^= v0;
+            v2 += v1; v1 = Long.rotateLeft(v1, 17); v1 ^= v2; v2 = Long.rotateLeft(v2, 32);
+        }
+        long h = v0 ^ v1 ^ v2 ^ v3;
+        return (int) (h ^ h >>> 32);
+    }
+}
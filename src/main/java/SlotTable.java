@@ -0,0 +1,142 @@
+import java.util.*;
+
+// What the single-threaded open-addressing engines share: the entry-set view, the entries it hands out and the
+// hash finalizer. An engine numbers its slots from 0 to slotLimit(), finds keys and reads and writes slots;
+// the order in which its iterator walks them, and what removal does to the others, is its own business.
+abstract class SlotTable<K, V> extends AbstractMap<K, V> {
+
+    private Set<Map.Entry<K, V>> entrySet;
+
+//  Slot of the key, or -1 when it is absent
+    abstract int find(Object key);
+
+//  Slots numbered from here upwards hold nothing
+    abstract int slotLimit();
+
+    abstract K keyAt(int index);
+
+    abstract V valueAt(int index);
+
+    abstract void setValueAt(int index, V value);
+
+    abstract Iterator<Map.Entry<K, V>> entryIterator();
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new EntrySet();
+        }
+        return entrySet;
+    }
+
+//  Same finalizer as HashTable
+    static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+//  The finalized hash with 0 reserved for empty slots
+    static int hashOf(Object key) {
+        int h = mix(key.hashCode());
+        return h == 0 ? 1 : h;
+    }
+
+    private class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+        @Override
+        public Iterator<Map.Entry<K, V>> iterator() {
+            return entryIterator();
+        }
+
+        @Override
+        public int size() {
+            return SlotTable.this.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+            Object value = entry.getKey() == null ? null : get(entry.getKey());
+            return value != null && value.equals(entry.getValue());
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            if (!contains(o)) {
+                return false;
+            }
+            SlotTable.this.remove(((Map.Entry<?, ?>) o).getKey());
+            return true;
+        }
+
+        @Override
+        public void clear() {
+            SlotTable.this.clear();
+        }
+    }
+
+//  Writes go straight to the slot while it still holds the key. Otherwise find() looks up where the entry is
+//  now and the write goes there, without put(), so a key removed since the entry was returned is not put back.
+    final class Cell implements Map.Entry<K, V> {
+        private final K key;
+        private V value;
+        private final int index;
+
+        Cell(int index) {
+            this.key = keyAt(index);
+            this.value = valueAt(index);
+            this.index = index;
+        }
+
+        @Override
+        public K getKey() {
+            return key;
+        }
+
+        @Override
+        public V getValue() {
+            return value;
+        }
+
+        @Override
+        public V setValue(V value) {
+            Objects.requireNonNull(value);
+            V oldValue = this.value;
+            if (index < slotLimit() && keyAt(index) == key) {
+                setValueAt(index, value);
+            } else {
+                int current = find(key);
+                if (current >= 0) {
+                    setValueAt(current, value);
+                }
+            }
+            this.value = value;
+            return oldValue;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Map.Entry)) return false;
+            Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+            return Objects.equals(key, entry.getKey()) &&
+                    Objects.equals(value, entry.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode() ^ value.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + value;
+        }
+    }
+}
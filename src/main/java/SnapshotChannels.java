@@ -0,0 +1,125 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.zip.CRC32C;
+
+// Buffered little-endian access to the channel of a snapshot, with a CRC32C over every byte that passes.
+// The writer ends the stream with the checksum, and the reader compares against it.
+final class SnapshotChannels {
+
+    private static final int BUFFER_BYTES = 1 << 16;
+
+    private SnapshotChannels() {
+    }
+
+    static final class Output {
+        private final WritableByteChannel channel;
+        private final CRC32C checksum = new CRC32C();
+        private ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+        Output(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+//      The buffer, with room for at least bytes more at its position
+        ByteBuffer reserve(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+                if (buffer.capacity() < bytes) {
+                    buffer = ByteBuffer.allocateDirect(bytes).order(ByteOrder.LITTLE_ENDIAN);
+                }
+            }
+            return buffer;
+        }
+
+        void write(byte[] bytes) throws IOException {
+            for (int offset = 0; offset < bytes.length; ) {
+                int length = Math.min(bytes.length - offset, BUFFER_BYTES);
+                reserve(length).put(bytes, offset, length);
+                offset += length;
+            }
+        }
+
+//      Writes out the rest of the buffer followed by the checksum
+        void finish() throws IOException {
+            flush();
+            buffer.putInt((int) checksum.getValue());
+            buffer.flip();
+            drain();
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            checksum.update(buffer.duplicate());
+            drain();
+        }
+
+        private void drain() throws IOException {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    static final class Input {
+        private final ReadableByteChannel channel;
+        private final CRC32C checksum = new CRC32C();
+        private ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+//      Bytes of the buffer before this position have been added to the checksum
+        private int checked = 0;
+
+        Input(ReadableByteChannel channel) {
+            this.channel = channel;
+            buffer.limit(0);
+        }
+
+//      The buffer, with at least bytes more readable at its position
+        ByteBuffer require(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) {
+                return buffer;
+            }
+            consume();
+            buffer.compact();
+            if (buffer.capacity() < bytes) {
+                buffer.flip();
+                buffer = ByteBuffer.allocateDirect(bytes).order(ByteOrder.LITTLE_ENDIAN).put(buffer);
+            }
+            while (buffer.position() < bytes) {
+                if (channel.read(buffer) < 0) {
+                    throw new EOFException("Truncated snapshot");
+                }
+            }
+            buffer.flip();
+            checked = 0;
+            return buffer;
+        }
+
+        void readFully(byte[] bytes) throws IOException {
+            for (int offset = 0; offset < bytes.length; ) {
+                int length = Math.min(bytes.length - offset, BUFFER_BYTES);
+                require(length).get(bytes, offset, length);
+                offset += length;
+            }
+        }
+
+//      Reads the trailing checksum and compares it with the bytes read so far
+        void finish() throws IOException {
+            consume();
+            int expected = (int) checksum.getValue();
+            if (require(Integer.BYTES).getInt() != expected) {
+                throw new IOException("Snapshot checksum mismatch");
+            }
+        }
+
+        private void consume() {
+            ByteBuffer read = buffer.duplicate();
+            read.limit(buffer.position()).position(checked);
+            checksum.update(read);
+            checked = buffer.position();
+        }
+    }
+}
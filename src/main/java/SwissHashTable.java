@@ -0,0 +1,352 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.*;
+
+// A HashTable in the style of SwissTable.
+//
+// Every slot has a control byte: EMPTY, DELETED, or the low 7 bits of the key's spread hash with the top bit
+// clear. Slots form aligned groups of eight, and a probe reads a whole group of control bytes as one long,
+// finds the bytes equal to the key's 7 hash bits with a few arithmetic operations (SWAR), and calls equals()
+// only for those, which rejects almost all other keys without touching the key array at all. A group with an
+// EMPTY byte ends the probe. Groups are visited in triangular order, which covers every group of a
+// power-of-two table.
+//
+// A removed slot becomes EMPTY again when its group still has an EMPTY byte, because no probe goes past
+// such a group; only otherwise is a DELETED tombstone needed.
+public class SwissHashTable<K, V> extends SlotTable<K, V> {
+
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+    private static final int GROUP_WIDTH = 8;
+
+    private static final byte EMPTY = (byte) 0x80;
+    private static final byte DELETED = (byte) 0xFE;
+
+    private static final long LSB = 0x0101010101010101L;
+    private static final long MSB = 0x8080808080808080L;
+
+    private static final VarHandle GROUP = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private int size = 0;
+    private int deletedCount = 0;
+    private int capacity;
+    private final float loadFactor;
+    private int threshold;
+
+    private byte[] control;
+    private Object[] keyTable;
+    private Object[] valueTable;
+
+    public SwissHashTable(int capacity, float loadFactor) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException(
+                    "Illegal Capacity: " + capacity
+            );
+        }
+
+        if (loadFactor <= 0 || Float.isNaN(loadFactor)) {
+            throw new IllegalArgumentException("Illegal Load: " + loadFactor);
+        }
+
+        this.loadFactor = loadFactor;
+        allocate(tableSizeFor(Math.max(capacity, GROUP_WIDTH)));
+    }
+
+    public SwissHashTable(int capacity) {
+        this(capacity, 0.875f);
+    }
+
+    public SwissHashTable() {
+        this(16, 0.875f);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return find(key) >= 0;
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        if (value == null) {
+            throw new NullPointerException("HashTable does not permit null values");
+        }
+
+        for (int i = 0; i < capacity; i++) {
+            if (control[i] >= 0 && value.equals(valueTable[i])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public V get(Object key) {
+        int index = find(key);
+        return index < 0 ? null : valueAt(index);
+    }
+
+    @Override
+    public V put(K key, V value) {
+        if (value == null) {
+            throw new NullPointerException();
+        }
+
+        int index = find(key);
+        if (index >= 0) {
+            V oldValue = valueAt(index);
+            valueTable[index] = value;
+            return oldValue;
+        }
+
+//      Tombstones lengthen probe chains just like live cells, so both count towards the load
+        if (size + deletedCount >= threshold) {
+            rehash();
+        }
+
+        int hash = spread(key);
+        index = findFreeIndex(hash);
+        if (control[index] == DELETED) {
+            deletedCount--;
+        }
+        control[index] = h2(hash);
+        keyTable[index] = key;
+        valueTable[index] = value;
+        size++;
+        return null;
+    }
+
+    @Override
+    public V remove(Object key) {
+        int index = find(key);
+        if (index < 0) {
+            return null;
+        }
+
+        V oldValue = valueAt(index);
+        removeAt(index);
+        return oldValue;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(control, EMPTY);
+        Arrays.fill(keyTable, null);
+        Arrays.fill(valueTable, null);
+        size = 0;
+        deletedCount = 0;
+    }
+
+    @Override
+    Iterator<Map.Entry<K, V>> entryIterator() {
+        return new EntryIterator();
+    }
+
+//  Removal never moves other entries, so the iterator can simply walk the slots in order
+    private class EntryIterator implements Iterator<Map.Entry<K, V>> {
+        int remaining = size;
+        int index = -1;
+        int last = -1;
+
+        @Override
+        public boolean hasNext() {
+            return remaining > 0;
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+            if (remaining == 0) {
+                throw new NoSuchElementException();
+            }
+            do {
+                index++;
+            } while (control[index] < 0);
+            remaining--;
+            last = index;
+            return new Cell(index);
+        }
+
+        @Override
+        public void remove() {
+            if (last < 0) {
+                throw new IllegalStateException();
+            }
+            removeAt(last);
+            last = -1;
+        }
+    }
+
+//  Same finalizer as HashTable: the low 7 bits go into the control byte, the rest pick the first group
+    private static int spread(Object key) {
+        return mix(key.hashCode());
+    }
+
+    private static byte h2(int hash) {
+        return (byte) (hash & 0x7F);
+    }
+
+//  High bit set in every byte of the group that may equal h2. A borrow can flag a byte next to a real
+//  match as well; such false positives are filtered out by equals() like any other hash collision.
+    private static long match(long group, byte h2) {
+        long x = group ^ (LSB * h2);
+        return (x - LSB) & ~x & MSB;
+    }
+
+//  EMPTY is the only control byte with the high bit set and bit 1 clear
+    private static long matchEmpty(long group) {
+        return group & ~(group << 6) & MSB;
+    }
+
+    private static long matchFree(long group) {
+        return group & MSB;
+    }
+
+    private long groupAt(int group) {
+        return (long) GROUP.get(control, group * GROUP_WIDTH);
+    }
+
+    private static int firstSlot(long matches) {
+        return Long.numberOfTrailingZeros(matches) >>> 3;
+    }
+
+    private static int tableSizeFor(int capacity) {
+        int n = -1 >>> Integer.numberOfLeadingZeros(capacity - 1);
+        return n < 0 ? 1 : (n >= MAXIMUM_CAPACITY ? MAXIMUM_CAPACITY : n + 1);
+    }
+
+    private void allocate(int capacity) {
+        this.capacity = capacity;
+//      At least one slot always stays empty, which is what terminates an unsuccessful probe
+        threshold = (int) Math.min((long) (capacity * loadFactor), capacity - 1);
+        control = new byte[capacity];
+        Arrays.fill(control, EMPTY);
+        keyTable = new Object[capacity];
+        valueTable = new Object[capacity];
+        deletedCount = 0;
+    }
+
+    @Override
+    int find(Object key) {
+        if (key == null) throw new NullPointerException("HashTable does not permit null keys");
+        int hash = spread(key);
+        byte h2 = h2(hash);
+        int groupMask = capacity / GROUP_WIDTH - 1;
+        int group = (hash >>> 7) & groupMask;
+        for (int step = 1; ; step++) {
+            long controls = groupAt(group);
+            for (long matches = match(controls, h2); matches != 0; matches &= matches - 1) {
+                int index = group * GROUP_WIDTH + firstSlot(matches);
+                if (keyTable[index].equals(key)) {
+                    return index;
+                }
+            }
+            if (matchEmpty(controls) != 0) {
+                return -1;
+            }
+            group = (group + step) & groupMask;
+        }
+    }
+
+//  First EMPTY or DELETED slot on the key's probe sequence; the key must not be in the table
+    private int findFreeIndex(int hash) {
+        int groupMask = capacity / GROUP_WIDTH - 1;
+        int group = (hash >>> 7) & groupMask;
+        for (int step = 1; ; step++) {
+            long free = matchFree(groupAt(group));
+            if (free != 0) {
+                return group * GROUP_WIDTH + firstSlot(free);
+            }
+            group = (group + step) & groupMask;
+        }
+    }
+
+    private void removeAt(int index) {
+        int group = index / GROUP_WIDTH;
+        if (matchEmpty(groupAt(group)) != 0) {
+            control[index] = EMPTY;
+        } else {
+            control[index] = DELETED;
+            deletedCount++;
+        }
+        keyTable[index] = null;
+        valueTable[index] = null;
+        size--;
+    }
+
+    private void rehash() {
+        int newCapacity = capacity;
+//      When tombstones rather than live cells filled the table, rebuilding at the same capacity is enough
+        if (size >= threshold / 2) {
+            if (capacity == MAXIMUM_CAPACITY) {
+                throw new IllegalStateException("HashTable capacity exceeded");
+            }
+            newCapacity = capacity * 2;
+        }
+
+        int oldCapacity = capacity;
+        byte[] oldControl = control;
+        Object[] oldKeys = keyTable;
+        Object[] oldValues = valueTable;
+        allocate(newCapacity);
+
+        for (int i = 0; i < oldCapacity; i++) {
+            if (oldControl[i] >= 0) {
+                int index = findFreeIndex(spread(oldKeys[i]));
+                control[index] = oldControl[i];
+                keyTable[index] = oldKeys[i];
+                valueTable[index] = oldValues[i];
+            }
+        }
+    }
+
+//  Number of groups find() inspects for the key, for tests of how colliding keys spill over
+    int probeGroups(Object key) {
+        int hash = spread(key);
+        byte h2 = h2(hash);
+        int groupMask = capacity / GROUP_WIDTH - 1;
+        int group = (hash >>> 7) & groupMask;
+        for (int step = 1; ; step++) {
+            long controls = groupAt(group);
+            for (long matches = match(controls, h2); matches != 0; matches &= matches - 1) {
+                if (keyTable[group * GROUP_WIDTH + firstSlot(matches)].equals(key)) {
+                    return step;
+                }
+            }
+            if (matchEmpty(controls) != 0) {
+                return step;
+            }
+            group = (group + step) & groupMask;
+        }
+    }
+
+    @Override
+    int slotLimit() {
+        return capacity;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    K keyAt(int index) {
+        return (K) keyTable[index];
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    V valueAt(int index) {
+        return (V) valueTable[index];
+    }
+
+    @Override
+    void setValueAt(int index, V value) {
+        valueTable[index] = value;
+    }
+}
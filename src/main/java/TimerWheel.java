@@ -0,0 +1,123 @@
+import java.util.Arrays;
+
+// Schedules the expiry of HashTable entries, so that expired entries are reclaimed without scanning the table.
+//
+// A hierarchical timing wheel: LEVELS wheels of 64 buckets each, where a bucket of level 0 spans one tick of
+// 2^20 ns (about a millisecond) and a bucket of every further level spans all 64 buckets of the level below.
+// A key is filed under the lowest level whose wheel reaches its deadline. Level 0 buckets are expired once
+// their tick has passed; a bucket of a higher level is taken apart when the wheel enters it, and its keys are
+// filed again closer to the bottom. A key is therefore handled at most once per level, whatever its deadline.
+//
+// Buckets hold keys and their hashes, not slots, because slots move whenever the table is rebuilt. Nothing is
+// taken out of a bucket when an entry is removed or gets a later deadline: when the bucket comes due, the table
+// looks the key up and either expires the entry, files the key again for the entry's current deadline, or
+// drops it. The table only files a key again itself when it moves a deadline forward.
+final class TimerWheel {
+
+    static final int TICK_SHIFT = 20;
+    private static final int BUCKET_BITS = 6;
+    private static final int BUCKETS = 1 << BUCKET_BITS;
+    private static final int LEVELS = 5;
+
+    private final HashTable<?, ?> table;
+    private final Object[][] keys = new Object[LEVELS * BUCKETS][];
+    private final int[][] hashes = new int[LEVELS * BUCKETS][];
+    private final int[] counts = new int[LEVELS * BUCKETS];
+//  Every level 0 bucket before this tick has been expired
+    private long ticks;
+
+    TimerWheel(HashTable<?, ?> table, long now) {
+        this.table = table;
+        this.ticks = now >>> TICK_SHIFT;
+    }
+
+    void schedule(Object key, int hash, long deadline) {
+        long tick = Math.max(deadline >>> TICK_SHIFT, ticks);
+        long delta = tick - ticks;
+        int level = delta < BUCKETS ? 0
+                : Math.min((63 - Long.numberOfLeadingZeros(delta)) / BUCKET_BITS, LEVELS - 1);
+        int shift = level * BUCKET_BITS;
+//      Deadlines beyond the top level wait in the bucket the top wheel reaches last and are filed again from there
+        long slot = Math.min(tick >>> shift, (ticks >>> shift) + BUCKETS);
+        add(level * BUCKETS + (int) (slot & (BUCKETS - 1)), key, hash);
+    }
+
+//  Hands every key whose bucket came due up to now back to the table
+    void advance(long now) {
+        long target = now >>> TICK_SHIFT;
+        if (target <= ticks) {
+            return;
+        }
+        long previous = ticks;
+        ticks = target;
+
+        expire(0, previous, target - 1, now);
+        for (int level = 1; level < LEVELS; level++) {
+            int shift = level * BUCKET_BITS;
+            long from = (previous >>> shift) + 1;
+            long to = target >>> shift;
+            if (from > to) {
+                break;
+            }
+            expire(level, from, to, now);
+        }
+    }
+
+//  Hashes every filed key again, after the table has changed how it hashes keys
+    void rehash() {
+        for (int bucket = 0; bucket < counts.length; bucket++) {
+            for (int i = 0; i < counts[bucket]; i++) {
+                hashes[bucket][i] = table.spread(keys[bucket][i]);
+            }
+        }
+    }
+
+    void clear() {
+        Arrays.fill(keys, null);
+        Arrays.fill(hashes, null);
+        Arrays.fill(counts, 0);
+    }
+
+//  Processes the buckets of slots from..to of a level, every bucket at most once
+    private void expire(int level, long from, long to, long now) {
+        long last = Math.min(to, from + BUCKETS - 1);
+        for (long slot = from; slot <= last; slot++) {
+            int bucket = level * BUCKETS + (int) (slot & (BUCKETS - 1));
+            int count = counts[bucket];
+            if (count == 0) {
+                continue;
+            }
+//          The bucket is detached first, so keys filed again for a deadline in the same bucket wait for its next turn
+            Object[] bucketKeys = keys[bucket];
+            int[] bucketHashes = hashes[bucket];
+            keys[bucket] = null;
+            hashes[bucket] = null;
+            counts[bucket] = 0;
+            for (int i = 0; i < count; i++) {
+                long deadline = table.expireEntry(bucketKeys[i], bucketHashes[i], now);
+                if (deadline != 0) {
+                    schedule(bucketKeys[i], bucketHashes[i], deadline);
+                }
+            }
+            if (keys[bucket] == null) {
+                Arrays.fill(bucketKeys, 0, count, null);
+                keys[bucket] = bucketKeys;
+                hashes[bucket] = bucketHashes;
+            }
+        }
+    }
+
+    private void add(int bucket, Object key, int hash) {
+        int count = counts[bucket];
+        if (keys[bucket] == null) {
+            keys[bucket] = new Object[4];
+            hashes[bucket] = new int[4];
+        } else if (count == keys[bucket].length) {
+            keys[bucket] = Arrays.copyOf(keys[bucket], count * 2);
+            hashes[bucket] = Arrays.copyOf(hashes[bucket], count * 2);
+        }
+        keys[bucket][count] = key;
+        hashes[bucket][count] = hash;
+        counts[bucket] = count + 1;
+    }
+}
@@ -0,0 +1,145 @@
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+// The inverse of a bidirectional HashTable: finds the key that holds a value without scanning the table.
+//
+// An open-addressing table of its own, with double hashing, tombstones and cached hashes like HashTable, keyed
+// by the values' equals() and hashCode(). Slots hold a value and its key rather than the entry's slot in the
+// table, so rehashes and migrations of the table, which move entries around, leave the index alone; only
+// storing, replacing and removing values reach it. Every value appears at most once, which the table enforces.
+final class ValueIndex {
+
+    private static final byte EMPTY = 0;
+    private static final byte FULL = 1;
+    private static final byte DELETED = 2;
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private final int seed = ThreadLocalRandom.current().nextInt();
+    private Object[] values;
+    private Object[] keys;
+    private int[] hashes;
+    private byte[] states;
+    private int size;
+    private int deletedCount;
+    private int threshold;
+
+    ValueIndex() {
+        allocate(16);
+    }
+
+//  The key holding the value, or null
+    Object keyOf(Object value) {
+        int index = find(value, hash(value));
+        return index < 0 ? null : keys[index];
+    }
+
+//  Records that key holds value, unless some key already does; returns that key, or null if the value was added
+    Object putIfAbsent(Object value, Object key) {
+        int hash = hash(value);
+        int index = find(value, hash);
+        if (index >= 0) {
+            return keys[index];
+        }
+        if (size + deletedCount >= threshold) {
+            int capacity = states.length;
+            while (size >= (int) (capacity * LOAD_FACTOR) / 2) {
+                capacity *= 2;
+            }
+            rebuild(capacity);
+        }
+        index = findEmptyIndex(hash);
+        if (states[index] == DELETED) {
+            deletedCount--;
+        }
+        values[index] = value;
+        keys[index] = key;
+        hashes[index] = hash;
+        states[index] = FULL;
+        size++;
+        return null;
+    }
+
+    void remove(Object value) {
+        int index = find(value, hash(value));
+        if (index >= 0) {
+            values[index] = null;
+            keys[index] = null;
+            states[index] = DELETED;
+            size--;
+            deletedCount++;
+        }
+    }
+
+    void clear() {
+        Arrays.fill(values, null);
+        Arrays.fill(keys, null);
+        Arrays.fill(states, EMPTY);
+        size = 0;
+        deletedCount = 0;
+    }
+
+//  The MurmurHash3 finalizer over the seeded hashCode(), as HashTable spreads its keys
+    private int hash(Object value) {
+        int h = value.hashCode() ^ seed;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    private int find(Object value, int hash) {
+        int mask = states.length - 1;
+        int step = Integer.reverse(hash) | 1;
+        int index = hash & mask;
+        for (int n = 0; n < states.length; n++) {
+            byte state = states[index];
+            if (state == EMPTY) {
+                return -1;
+            }
+            if (state == FULL && hashes[index] == hash && values[index].equals(value)) {
+                return index;
+            }
+            index = (index + step) & mask;
+        }
+        return -1;
+    }
+
+    private int findEmptyIndex(int hash) {
+        int mask = states.length - 1;
+        int step = Integer.reverse(hash) | 1;
+        int index = hash & mask;
+        while (states[index] == FULL) {
+            index = (index + step) & mask;
+        }
+        return index;
+    }
+
+//  Moves the values into fresh arrays, which also drops the tombstones
+    private void rebuild(int capacity) {
+        Object[] oldValues = values;
+        Object[] oldKeys = keys;
+        int[] oldHashes = hashes;
+        byte[] oldStates = states;
+        allocate(capacity);
+        for (int i = 0; i < oldStates.length; i++) {
+            if (oldStates[i] == FULL) {
+                int index = findEmptyIndex(oldHashes[i]);
+                values[index] = oldValues[i];
+                keys[index] = oldKeys[i];
+                hashes[index] = oldHashes[i];
+                states[index] = FULL;
+            }
+        }
+        deletedCount = 0;
+    }
+
+    private void allocate(int capacity) {
+        values = new Object[capacity];
+        keys = new Object[capacity];
+        hashes = new int[capacity];
+        states = new byte[capacity];
+        threshold = Math.min((int) (capacity * LOAD_FACTOR), capacity - 1);
+    }
+}
@@ -0,0 +1,85 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrentHashTableTest extends MapContractTest {
+
+    @Override
+    <K, V> Map<K, V> create(int capacity, float loadFactor) {
+        return new ConcurrentHashTable<>(capacity, loadFactor);
+    }
+
+    @Test
+    void reinsertAfterRemoveAndGrowth() {
+        ConcurrentHashTable<Integer, Integer> table = new ConcurrentHashTable<>(2, 0.75f, 4);
+
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 10_000; i++) {
+                table.put(i, i + round);
+            }
+            for (int i = 0; i < 10_000; i += 2) {
+                table.remove(i);
+            }
+        }
+
+        assertEquals(5000, table.size());
+        assertEquals(9999 + 2, table.get(9999));
+        assertNull(table.get(9998));
+
+        Map<Integer, Integer> copy = new HashMap<>(table);
+        assertEquals(copy, table);
+    }
+
+    @Test
+    void removedKeysStayAbsent() {
+        ConcurrentHashTable<String, Integer> table = new ConcurrentHashTable<>();
+        HashTableTest.setTable(table);
+        table.remove("A");
+
+//      The slot keeps the key with a null value until the segment is rebuilt
+        assertNull(table.replace("A", 1));
+        assertNull(table.computeIfPresent("A", (key, value) -> fail("called for a removed key")));
+        assertFalse(table.containsKey("A"));
+        assertEquals(2, table.computeIfAbsent("A", key -> 2));
+        assertEquals(2, table.get("A"));
+        assertEquals(5, table.size());
+    }
+
+    @Test
+    void concurrentMergeCountsEveryUpdate() throws Exception {
+        ConcurrentHashTable<Integer, Integer> counts = new ConcurrentHashTable<>(16, 0.75f, 8);
+        int threads = 8;
+        int perThread = 20_000;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        counts.merge(i % 1000, 1, Integer::sum);
+                        assertNotNull(counts.get(i % 1000));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1000, counts.size());
+        int total = 0;
+        for (int value : counts.values()) {
+            total += value;
+        }
+        assertEquals(threads * perThread, total);
+    }
+}
@@ -0,0 +1,30 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CuckooHashTableTest extends MapContractTest {
+
+    @Override
+    <K, V> Map<K, V> create(int capacity, float loadFactor) {
+        return new CuckooHashTable<>(capacity, loadFactor);
+    }
+
+    @Test
+    void equalHashesGoToTheStash() {
+        CuckooHashTable<List<Integer>, Integer> table = new CuckooHashTable<>(16, 0.9f);
+        List<List<Integer>> keys = collidingKeys(100);
+        for (int i = 0; i < 100; i++) {
+            table.put(keys.get(i), i);
+        }
+
+//      Every key maps to the same two buckets of four slots, so all but eight of them end up stashed
+        assertEquals(92, table.stashSize());
+        for (int i = 0; i < 100; i += 3) {
+            table.remove(keys.get(i));
+        }
+//      Removing a key never pulls a stashed one back into the buckets, so at most eight entries are outside it
+        assertTrue(table.stashSize() >= 66 - 8, String.valueOf(table.stashSize()));
+    }
+}
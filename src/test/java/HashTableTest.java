@@ -1,7 +1,15 @@
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -376,4 +384,1212 @@ class HashTableTest {
         assertThrows(NullPointerException.class, () ->
                 table.computeIfAbsent("Maxim", null));
     }
-}
\ No newline at end of file
+
+    @Test
+    void negativeAndClusteredKeys() {
+        HashTable<Integer, Integer> table = new HashTable<>(4);
+
+        for (int i = -5000; i < 5000; i++) {
+            table.put(i * 1024, i);
+        }
+
+        assertEquals(10000, table.size());
+        for (int i = -5000; i < 5000; i++) {
+            assertEquals(i, table.get(i * 1024));
+        }
+        assertNull(table.get(1));
+    }
+
+    @Test
+    void removedKeysStayRemovedAfterRehash() {
+        HashTable<Integer, Integer> table = new HashTable<>(2);
+
+        for (int i = 0; i < 100; i++) {
+            table.put(i, i);
+        }
+        for (int i = 0; i < 100; i += 2) {
+            table.remove(i);
+        }
+        for (int i = 100; i < 1000; i++) {
+            table.put(i, i);
+        }
+
+        assertEquals(950, table.size());
+        for (int i = 0; i < 100; i += 2) {
+            assertFalse(table.containsKey(i));
+        }
+        assertEquals(99, table.get(99));
+    }
+
+    @Test
+    void churnKeepsMissesTerminating() {
+        HashTable<Integer, Integer> table = new HashTable<>(16, 0.9f);
+
+        for (int i = 0; i < 100_000; i++) {
+            table.put(i, i);
+            if (i >= 10) {
+                assertEquals(i - 10, table.remove(i - 10));
+            }
+        }
+
+        assertEquals(10, table.size());
+        assertNull(table.get(-1));
+        assertEquals(99_999, table.get(99_999));
+    }
+
+    @Test
+    void entrySetValueWritesThrough() {
+        setTable(table);
+
+        for (Map.Entry<String, Integer> entry : table.entrySet()) {
+            assertEquals(entry.getValue(), entry.setValue(entry.getValue() + 1));
+        }
+
+        assertEquals(11, table.get("A"));
+        assertEquals(51, table.get("E"));
+
+        Map<String, Integer> table2 = new HashMap<>();
+        setTable(table2);
+        table2.replaceAll((key, value) -> value + 1);
+        assertEquals(table2.entrySet(), table.entrySet());
+        assertEquals(table2.hashCode(), table.hashCode());
+    }
+
+    @Test
+    void entrySetValueAfterRemoveDoesNotReAddTheKey() {
+        table.put("A", 1);
+        table.put("B", 2);
+        Map.Entry<String, Integer> entry = table.entrySet().iterator().next();
+        String key = entry.getKey();
+        table.remove(key);
+
+        assertEquals(entry.getValue(), entry.setValue(5));
+        assertEquals(5, entry.getValue());
+        assertFalse(table.containsKey(key));
+        assertEquals(1, table.size());
+    }
+
+    @Test
+    void entrySetValueFollowsAMovedEntry() {
+        HashTable<Integer, Integer> table = new HashTable<>();
+        table.put(0, 0);
+        Map.Entry<Integer, Integer> entry = table.entrySet().iterator().next();
+        for (int i = 1; i < 1000; i++) {
+            table.put(i, i);
+        }
+
+        entry.setValue(-1);
+        assertEquals(-1, table.get(0));
+        assertEquals(1000, table.size());
+    }
+
+    @Test
+    void incrementalRehashKeepsEntriesVisible() {
+        HashTable<Integer, Integer> table = new HashTable<>(16, 0.75f, true);
+        Map<Integer, Integer> expected = new HashMap<>();
+
+        for (int i = 0; i < 10_000; i++) {
+            table.put(i, i);
+            expected.put(i, i);
+            if (i % 3 == 1) {
+                assertEquals(i / 2, table.remove(i / 2));
+                expected.remove(i / 2);
+            }
+            assertEquals(i, table.get(i));
+            assertNull(table.get(-i - 1));
+        }
+
+        assertEquals(expected.size(), table.size());
+        assertEquals(expected, table);
+        assertEquals(expected.keySet(), table.keySet());
+        assertTrue(table.containsValue(1));
+        assertFalse(table.containsValue(0));
+    }
+
+    @Test
+    void incrementalRehashWritesReachOldTable() {
+        HashTable<Integer, Integer> table = new HashTable<>(64, 0.75f, true);
+
+        for (int i = 0; i <= 48; i++) {
+            table.put(i, i);
+        }
+//      The 49th insert started a rehash and moved only the first few old slots
+        for (int i = 0; i <= 48; i++) {
+            assertEquals(i, table.replace(i, i + 1));
+        }
+        for (Map.Entry<Integer, Integer> entry : table.entrySet()) {
+            entry.setValue(entry.getValue() * 2);
+        }
+        for (int i = 0; i <= 48; i++) {
+            assertEquals(2 * (i + 1), table.get(i));
+        }
+
+        table.clear();
+        assertTrue(table.isEmpty());
+        assertNull(table.get(1));
+    }
+
+    @Test
+    void incrementalRemovalsNeverPurge() {
+        HashTable<Integer, Integer> table = new HashTable<>(16, 0.75f, true);
+        for (int i = 0; i < 10_000; i++) {
+            table.put(i, i);
+        }
+        HashTableStats before = table.stats();
+//      More than a quarter of the 16384 slots become tombstones, which starts a cleanup
+        for (int i = 0; i < 5_000; i++) {
+            assertEquals(i, table.remove(i));
+        }
+
+        HashTableStats after = table.stats();
+        assertEquals(16384, after.capacity());
+        assertTrue(after.deletedCount() < 4096, String.valueOf(after.deletedCount()));
+        if (after.metricsEnabled()) {
+            assertEquals(before.purgeCount(), after.purgeCount());
+            assertEquals(before.rehashCount() + 1, after.rehashCount());
+        }
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(i < 5_000 ? null : Integer.valueOf(i), table.get(i));
+        }
+        assertEquals(5_000, table.size());
+    }
+
+    @Test
+    void compactShortensMissesAndKeepsEntries() {
+        HashTable<Integer, Integer> table = new HashTable<>(2048, 0.75f);
+        for (int i = 0; i < 1000; i++) {
+            table.put(i, i);
+        }
+//      400 tombstones stay below the automatic cleanup, which starts at a quarter of the slots
+        for (int i = 0; i < 400; i++) {
+            table.remove(i);
+        }
+
+        long before = 0;
+        for (int i = 0; i < 10_000; i++) {
+            before += table.probeLength(-i - 1);
+        }
+        table.compact();
+        long after = 0;
+        for (int i = 0; i < 10_000; i++) {
+            after += table.probeLength(-i - 1);
+        }
+
+        assertTrue(after < before, after + " >= " + before);
+        assertEquals(600, table.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i < 400 ? null : Integer.valueOf(i), table.get(i));
+        }
+    }
+
+    @Test
+    void removalsTriggerCleanup() {
+        HashTable<Integer, Integer> table = new HashTable<>(16, 0.9f);
+        for (int i = 0; i < 100_000; i++) {
+            table.put(i, i);
+        }
+        for (int i = 0; i < 99_990; i++) {
+            assertEquals(i, table.remove(i));
+        }
+
+        assertTrue(table.probeLength(-1) < 16);
+        for (int i = 99_990; i < 100_000; i++) {
+            assertEquals(i, table.get(i));
+        }
+        table.put(-1, -1);
+        assertEquals(11, table.size());
+    }
+
+    @Test
+    void upsertCreatesOnceAndUpdatesInPlace() {
+        HashTable<String, int[]> counts = new HashTable<>();
+        for (String word : "a b a c a b".split(" ")) {
+            counts.upsert(word, () -> new int[1], count -> count[0]++);
+        }
+
+        assertEquals(3, counts.size());
+        assertEquals(3, counts.get("a")[0]);
+        assertEquals(2, counts.get("b")[0]);
+        assertEquals(1, counts.get("c")[0]);
+
+        assertThrows(NullPointerException.class, () ->
+                counts.upsert("d", () -> null, count -> count[0]++));
+        assertFalse(counts.containsKey("d"));
+    }
+
+    @Test
+    void computeFamilyOnAbsentKeys() {
+        HashTable<String, Integer> table = new HashTable<>();
+
+        assertEquals(1, table.compute("A", (key, value) -> value == null ? 1 : value + 1));
+        assertEquals(2, table.compute("A", (key, value) -> value == null ? 1 : value + 1));
+        assertNull(table.compute("B", (key, value) -> null));
+        assertFalse(table.containsKey("B"));
+        assertFalse(table.remove("B", null));
+        assertNull(table.putIfAbsent("B", 5));
+        assertEquals(5, table.putIfAbsent("B", 6));
+
+        assertThrows(ConcurrentModificationException.class, () ->
+                table.computeIfAbsent("C", key -> table.put("D", 1)));
+        assertFalse(table.containsKey("C"));
+    }
+
+    @Test
+    void mergeCountsAcrossGrowthAndRemovals() {
+        HashTable<Integer, Integer> table = new HashTable<>(2, 0.75f);
+        Map<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random(3);
+
+        for (int i = 0; i < 100_000; i++) {
+            int key = random.nextInt(2_000);
+            if (random.nextInt(10) == 0) {
+                assertEquals(expected.remove(key), table.remove(key));
+            } else {
+                assertEquals(expected.merge(key, 1, Integer::sum), table.merge(key, 1, Integer::sum));
+            }
+        }
+        assertEquals(expected, table);
+    }
+
+    @Test
+    void cachedHashesSpareHashCodeAndEquals() {
+        int[] hashCodeCalls = {0};
+        int[] equalsCalls = {0};
+        class Key {
+            final int id;
+
+            Key(int id) {
+                this.id = id;
+            }
+
+            @Override
+            public int hashCode() {
+                hashCodeCalls[0]++;
+                return id;
+            }
+
+            @Override
+            public boolean equals(Object o) {
+                equalsCalls[0]++;
+                return o instanceof Key && ((Key) o).id == id;
+            }
+        }
+
+        HashTable<Key, Integer> table = new HashTable<>(2, 0.9f);
+        for (int i = 0; i < 10_000; i++) {
+            table.put(new Key(i), i);
+        }
+        for (int i = 0; i < 5_000; i++) {
+            table.remove(new Key(i));
+        }
+        table.compact();
+//      One hashCode() per put and remove, none for the rehashes and the cleanup in between
+        assertEquals(15_000, hashCodeCalls[0]);
+
+//      Distinct hash codes stay distinct after spreading, so only the matching key is ever compared
+        equalsCalls[0] = 0;
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(i < 5_000 ? null : Integer.valueOf(i), table.get(new Key(i)));
+        }
+        assertEquals(5_000, equalsCalls[0]);
+    }
+
+    @Test
+    void batchOperationsMatchSingleKeyOperations() {
+        for (boolean incremental : new boolean[]{false, true}) {
+            HashTable<Integer, Integer> table = new HashTable<>(2, 0.75f, incremental);
+            Map<Integer, Integer> expected = new HashMap<>();
+            Random random = new Random(11);
+
+            for (int round = 0; round < 200; round++) {
+                int n = random.nextInt(40);
+                Integer[] keys = new Integer[n];
+                Integer[] values = new Integer[n];
+                for (int i = 0; i < n; i++) {
+                    keys[i] = random.nextInt(3_000);
+                    values[i] = round * 100 + i;
+                    expected.put(keys[i], values[i]);
+                }
+                table.putAll(keys, values);
+
+                List<Integer> removed = new ArrayList<>();
+                for (int i = 0; i < 10; i++) {
+                    removed.add(random.nextInt(3_000));
+                }
+                assertEquals(expected.keySet().removeAll(removed), table.removeAll(removed));
+
+                Integer[] probes = new Integer[25];
+                for (int i = 0; i < probes.length; i++) {
+                    probes[i] = random.nextInt(3_000);
+                }
+                Integer[] out = new Integer[probes.length];
+                int found = table.getAll(probes, out);
+                int expectedFound = 0;
+                for (int i = 0; i < probes.length; i++) {
+                    assertEquals(expected.get(probes[i]), out[i]);
+                    expectedFound += expected.containsKey(probes[i]) ? 1 : 0;
+                }
+                assertEquals(expectedFound, found);
+            }
+            assertEquals(expected, table);
+        }
+    }
+
+    @Test
+    void batchPutPresizesAndChecksArguments() {
+        HashTable<Integer, Integer> table = new HashTable<>(2, 0.75f);
+        Integer[] keys = new Integer[1_000];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = i;
+        }
+        table.putAll(keys, keys);
+        assertEquals(1_000, table.size());
+        assertEquals(42, table.get(42));
+
+        assertThrows(IllegalArgumentException.class, () ->
+                table.putAll(new Integer[]{1, 2}, new Integer[]{1}));
+        assertThrows(NullPointerException.class, () ->
+                table.putAll(new Integer[]{1}, new Integer[]{null}));
+        Integer[] withNullKey = new Integer[1_000];
+        for (int i = 0; i < withNullKey.length - 1; i++) {
+            withNullKey[i] = -i - 1;
+        }
+        int capacity = table.stats().capacity();
+        assertThrows(NullPointerException.class, () ->
+                table.putAll(withNullKey, keys));
+        assertNull(table.get(-1));
+        assertEquals(1_000, table.size());
+        assertEquals(capacity, table.stats().capacity());
+        assertThrows(NullPointerException.class, () ->
+                table.getAll(new Integer[]{null}, new Integer[1]));
+        assertThrows(IllegalArgumentException.class, () ->
+                table.getAll(new Integer[]{1, 2}, new Integer[1]));
+    }
+
+    @Test
+    void snapshotRoundTrip() throws IOException {
+        for (boolean incremental : new boolean[]{false, true}) {
+            HashTable<String, Long> table = new HashTable<>(2, 0.75f, incremental);
+            for (long i = 0; i < 5_000; i++) {
+                table.put("key-" + i, i);
+            }
+            for (long i = 0; i < 5_000; i += 3) {
+                table.remove("key-" + i);
+            }
+
+            for (boolean rawLayout : new boolean[]{false, true}) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                table.writeSnapshot(Channels.newChannel(bytes), Codec.STRING, Codec.LONG, rawLayout);
+
+                HashTable<String, Long> restored = HashTable.readSnapshot(
+                        Channels.newChannel(new ByteArrayInputStream(bytes.toByteArray())), Codec.STRING, Codec.LONG);
+                assertEquals(table, restored);
+                assertNull(restored.get("key-0"));
+                assertEquals(1L, restored.put("key-1", -1L));
+                assertNull(restored.put("new", 1L));
+                assertEquals(table.size() + 1, restored.size());
+            }
+        }
+    }
+
+    @Test
+    void corruptSnapshotsAreRejected() throws IOException {
+        HashTable<Integer, Integer> table = new HashTable<>();
+        for (int i = 0; i < 100; i++) {
+            table.put(i, i);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        table.writeSnapshot(Channels.newChannel(out), Codec.INTEGER, Codec.INTEGER, false);
+        byte[] bytes = out.toByteArray();
+
+        byte[] flipped = bytes.clone();
+        flipped[100] ^= 1;
+        assertThrows(IOException.class, () -> HashTable.readSnapshot(
+                Channels.newChannel(new ByteArrayInputStream(flipped)), Codec.INTEGER, Codec.INTEGER));
+
+        byte[] truncated = Arrays.copyOf(bytes, bytes.length - 10);
+        assertThrows(IOException.class, () -> HashTable.readSnapshot(
+                Channels.newChannel(new ByteArrayInputStream(truncated)), Codec.INTEGER, Codec.INTEGER));
+
+        assertThrows(IOException.class, () -> HashTable.readSnapshot(
+                Channels.newChannel(new ByteArrayInputStream(new byte[64])), Codec.INTEGER, Codec.INTEGER));
+    }
+
+    @Test
+    void boundedTableStaysWithinMaximum() {
+        for (HashTable.Eviction eviction : HashTable.Eviction.values()) {
+            HashTable<Integer, Integer> table = new HashTable<>(100, eviction);
+            Random random = new Random(17);
+            for (int i = 0; i < 50_000; i++) {
+                int key = random.nextInt(1_000);
+                switch (random.nextInt(4)) {
+                    case 0:
+                        table.remove(key);
+                        break;
+                    case 1:
+                        assertNotEquals(Integer.valueOf(-1), table.get(key));
+                        break;
+                    default:
+                        table.put(key, key);
+                }
+                assertTrue(table.size() <= 100);
+            }
+
+            assertEquals(table.size(), table.weightedSize());
+            assertTrue(table.evictionCount() > 0);
+            int count = 0;
+            for (Map.Entry<Integer, Integer> entry : table.entrySet()) {
+                assertEquals(entry.getKey(), entry.getValue());
+                assertEquals(entry.getValue(), table.get(entry.getKey()));
+                count++;
+            }
+            assertEquals(table.size(), count);
+        }
+    }
+
+    @Test
+    void clockSparesReferencedEntries() {
+        HashTable<Integer, Integer> table = new HashTable<>(100, HashTable.Eviction.CLOCK);
+        for (int i = 0; i < 100; i++) {
+            table.put(i, i);
+        }
+        for (int i = 0; i < 50; i++) {
+            assertEquals(i, table.get(i));
+        }
+        assertNull(table.get(1_000));
+        for (int i = 100; i < 150; i++) {
+            table.put(i, i);
+        }
+
+        assertEquals(100, table.size());
+        assertEquals(50, table.evictionCount());
+        assertEquals(50, table.hitCount());
+        assertEquals(1, table.missCount());
+        for (int i = 0; i < 50; i++) {
+            assertTrue(table.containsKey(i));
+        }
+    }
+
+    @Test
+    void batchReadsCountAsReads() {
+        HashTable<Integer, Integer> table = new HashTable<>(100, HashTable.Eviction.CLOCK);
+        for (int i = 0; i < 100; i++) {
+            table.put(i, i);
+        }
+        Integer[] keys = new Integer[51];
+        for (int i = 0; i < 50; i++) {
+            keys[i] = i;
+        }
+        keys[50] = 1_000;
+        assertEquals(50, table.getAll(keys, new Integer[keys.length]));
+        for (int i = 100; i < 150; i++) {
+            table.put(i, i);
+        }
+
+        assertEquals(50, table.evictionCount());
+        assertEquals(50, table.hitCount());
+        assertEquals(1, table.missCount());
+        for (int i = 0; i < 50; i++) {
+            assertTrue(table.containsKey(i));
+        }
+    }
+
+    @Test
+    void tinyLfuKeepsFrequentEntriesThroughAScan() {
+        Map<HashTable.Eviction, Integer> kept = new HashMap<>();
+        for (HashTable.Eviction eviction : HashTable.Eviction.values()) {
+            HashTable<Integer, Integer> table = new HashTable<>(100, eviction);
+            for (int i = 0; i < 100; i++) {
+                table.put(i, i);
+                for (int j = 0; j < 5; j++) {
+                    table.get(i);
+                }
+            }
+//          Keys read once each; the sketch ages every 10 * 100 increments, so the scan stays shorter than that
+            for (int i = 100; i < 600; i++) {
+                table.computeIfAbsent(i, key -> key);
+            }
+
+            assertEquals(100, table.size());
+            int count = 0;
+            for (int i = 0; i < 100; i++) {
+                count += table.containsKey(i) ? 1 : 0;
+            }
+            kept.put(eviction, count);
+        }
+        assertTrue(kept.get(HashTable.Eviction.TINY_LFU) >= 95, kept.toString());
+        assertTrue(kept.get(HashTable.Eviction.CLOCK) < 10, kept.toString());
+    }
+
+    @Test
+    void weightedTableBoundsTotalWeight() {
+        HashTable<String, String> table = new HashTable<>(1_000, (key, value) -> value.length(), HashTable.Eviction.CLOCK);
+        for (int i = 0; i < 1_000; i++) {
+            table.put("key" + i, "v".repeat(1 + i % 20));
+            assertTrue(table.weightedSize() <= 1_000);
+        }
+
+        int weight = 0;
+        for (String value : table.values()) {
+            weight += value.length();
+        }
+        assertEquals(weight, table.weightedSize());
+
+        String key = table.keySet().iterator().next();
+        table.put(key, "v".repeat(500));
+        assertTrue(table.weightedSize() <= 1_000);
+
+        HashTable<String, String> negative = new HashTable<>(10, (k, v) -> -1, HashTable.Eviction.CLOCK);
+        assertThrows(IllegalArgumentException.class, () ->
+                negative.put("a", "b"));
+        assertThrows(IllegalArgumentException.class, () ->
+                new HashTable<String, String>(-1, HashTable.Eviction.CLOCK));
+    }
+
+    @Test
+    void heavierReplacementsEvictOnceTheLoopIsDone() {
+        HashTable<Integer, String> table = new HashTable<>(1_000, (key, value) -> value.length(), HashTable.Eviction.CLOCK);
+        for (int i = 0; i < 100; i++) {
+            table.put(i, "v".repeat(10));
+        }
+
+        Set<Integer> visited = new HashSet<>();
+        table.replaceAll((key, value) -> {
+            assertTrue(visited.add(key));
+            return value.repeat(2);
+        });
+        assertEquals(100, visited.size());
+        assertTrue(table.weightedSize() <= 1_000);
+        assertTrue(table.evictionCount() > 0);
+        table.forEach((key, value) -> assertEquals(20, value.length()));
+
+        int size = table.size();
+        HashTable.Cursor<Integer, String> cursor = table.cursor();
+        int count = 0;
+        while (cursor.advance()) {
+            cursor.setValue(cursor.value() + "v".repeat(20));
+            count++;
+        }
+        assertEquals(size, count);
+        assertTrue(table.weightedSize() <= 1_000);
+        table.forEach((key, value) -> assertEquals(40, value.length()));
+
+        assertThrows(ConcurrentModificationException.class, () ->
+                table.replaceAll((key, value) -> {
+                    table.remove(key);
+                    return value;
+                }));
+    }
+
+    @Test
+    void entriesExpireAfterTheirTtl() {
+        long[] now = {0};
+        HashTable<String, Integer> table = new HashTable<>(16, null, null, () -> now[0]);
+        table.put("a", 1, Duration.ofSeconds(1));
+        table.put("b", 2);
+
+        now[0] = 999_999_999;
+        assertEquals(1, table.get("a"));
+        now[0] = 1_000_000_000;
+        assertNull(table.get("a"));
+        assertFalse(table.containsKey("a"));
+        assertFalse(table.containsValue(1));
+        assertNull(table.remove("a"));
+        assertEquals(2, table.get("b"));
+
+//      A put over an entry that has expired but is not reclaimed yet finds no previous value
+        assertNull(table.put("a", 3, Duration.ofSeconds(1)));
+        assertEquals(3, table.get("a"));
+        assertEquals(2, table.size());
+
+        now[0] += 2_000_000_000;
+        assertNull(table.putIfAbsent("c", 4));
+        assertEquals(Map.of("b", 2, "c", 4), table);
+
+        assertThrows(IllegalArgumentException.class, () ->
+                table.put("d", 5, Duration.ZERO));
+    }
+
+    @Test
+    void expiryPolicies() {
+        long[] now = {0};
+        HashTable<String, Integer> afterWrite =
+                new HashTable<>(16, HashTable.Expiry.AFTER_WRITE, Duration.ofSeconds(10), () -> now[0]);
+        HashTable<String, Integer> afterAccess =
+                new HashTable<>(16, HashTable.Expiry.AFTER_ACCESS, Duration.ofSeconds(10), () -> now[0]);
+        for (HashTable<String, Integer> table : List.of(afterWrite, afterAccess)) {
+            table.put("read", 1);
+            table.put("written", 1);
+        }
+
+        for (int i = 0; i < 5; i++) {
+            now[0] += 4_000_000_000L;
+            for (HashTable<String, Integer> table : List.of(afterWrite, afterAccess)) {
+                table.get("read");
+                table.merge("written", 1, Integer::sum);
+            }
+        }
+
+        assertNull(afterWrite.get("read"));
+        assertEquals(6, afterWrite.get("written"));
+        assertEquals(1, afterAccess.get("read"));
+        assertEquals(6, afterAccess.get("written"));
+
+        afterAccess.cleanUp();
+        afterWrite.cleanUp();
+        assertEquals(Set.of("written"), afterWrite.keySet());
+        assertEquals(2, afterAccess.size());
+
+        now[0] += 11_000_000_000L;
+        afterAccess.cleanUp();
+        assertTrue(afterAccess.isEmpty());
+    }
+
+    @Test
+    void timingWheelReclaimsExpiredEntries() {
+        long[] now = {0};
+        HashTable<Integer, Integer> table = new HashTable<>(16, null, null, () -> now[0]);
+        Map<Integer, Long> deadlines = new HashMap<>();
+        Random random = new Random(11);
+//      Deadlines up to two days away go through every level of the wheel and beyond its top level
+        long[] spans = {5_000_000L, 1_000_000_000L, 600_000_000_000L, 172_800_000_000_000L};
+        for (int round = 0; round < 200; round++) {
+            for (int i = 0; i < 100; i++) {
+                int key = random.nextInt(5_000);
+                if (random.nextInt(10) == 0) {
+                    table.remove(key);
+                    deadlines.remove(key);
+                } else {
+                    long ttl = 1 + (long) (random.nextDouble() * spans[random.nextInt(spans.length)]);
+                    table.put(key, round, Duration.ofNanos(ttl));
+                    deadlines.put(key, now[0] + ttl);
+                }
+            }
+
+            now[0] += (long) (random.nextDouble() * spans[random.nextInt(spans.length)] / 10);
+            table.cleanUp();
+            for (Map.Entry<Integer, Long> entry : deadlines.entrySet()) {
+                assertEquals(entry.getValue() > now[0], table.get(entry.getKey()) != null);
+            }
+//          Reclaimed within about two milliseconds, the span of a level 0 bucket and the tick in progress
+            for (Integer key : table.keySet()) {
+                assertTrue(deadlines.get(key) > now[0] - (2L << 20), "not reclaimed: " + key);
+            }
+        }
+
+        now[0] += 172_800_000_000_000L;
+        table.cleanUp();
+        assertTrue(table.isEmpty());
+    }
+
+    @Test
+    void statsReportShapeAndProbes() {
+        HashTable<Integer, Integer> table = new HashTable<>(16, 0.75f);
+        for (int i = 0; i < 1_000; i++) {
+            table.put(i, i);
+        }
+        for (int i = 0; i < 100; i++) {
+            table.remove(i);
+        }
+        for (int i = 0; i < 2_000; i++) {
+            table.get(i);
+        }
+
+        HashTableStats stats = table.stats();
+        assertEquals(900, stats.size());
+        assertEquals(2048, stats.capacity());
+        assertEquals(100, stats.deletedCount());
+        assertEquals(900 / 2048.0, stats.load());
+        assertEquals(100 / 2048.0, stats.tombstoneRatio());
+        assertEquals(HashTableMetrics.ENABLED, stats.metricsEnabled());
+
+        long hits = Arrays.stream(stats.hitProbes()).sum();
+        long misses = Arrays.stream(stats.missProbes()).sum();
+        if (stats.metricsEnabled()) {
+//          Every put missed, every remove hit, and the gets hit 900 keys and missed the rest
+            assertEquals(100 + 900, hits);
+            assertEquals(1_000 + 1_100, misses);
+            assertEquals(7, stats.rehashCount());
+            assertTrue(stats.rehashNanos() > 0);
+            assertTrue(stats.failedProbes() > 0);
+            assertTrue(stats.hitProbes()[0] > 0);
+        } else {
+            assertEquals(0, hits + misses + stats.failedProbes() + stats.rehashCount() + stats.purgeCount());
+        }
+
+        assertEquals(0, HashTableMetrics.bucketOf(1));
+        assertEquals(1, HashTableMetrics.bucketOf(3));
+        assertEquals(5, HashTableMetrics.bucketOf(32));
+        assertEquals(HashTableMetrics.BUCKETS - 1, HashTableMetrics.bucketOf(Integer.MAX_VALUE));
+    }
+
+    @Test
+    void failedProbesLeaveOutTheSlotThatWasFound() {
+//      Every key has the same home slot and step, so the k-th key inserted probes past k taken slots
+        HashTable<Integer, Integer> table = new HashTable<>(16, 0.75f, new HashingStrategy<Integer>() {
+            @Override
+            public int hash(Integer key) {
+                return 0;
+            }
+
+            @Override
+            public boolean equals(Integer stored, Integer key) {
+                return stored.equals(key);
+            }
+        });
+        for (int i = 0; i < 3; i++) {
+            table.put(i, i);
+        }
+        table.get(2);
+        table.get(3);
+
+        HashTableStats stats = table.stats();
+        if (stats.metricsEnabled()) {
+//          0 + 1 + 2 for the puts, 2 for the hit, and all 4 slots of the miss
+            assertEquals(9, stats.failedProbes());
+        } else {
+            assertEquals(0, stats.failedProbes());
+        }
+    }
+
+    @Test
+    void spliteratorsSplitBySlotRanges() {
+        HashTable<Integer, Integer> table = new HashTable<>(16, 0.75f, true);
+        Map<Integer, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 10_000; i++) {
+            table.put(i, i % 7);
+            expected.put(i, i % 7);
+        }
+
+        Spliterator<Integer> keys = table.keySet().spliterator();
+        assertTrue(keys.hasCharacteristics(Spliterator.SIZED | Spliterator.DISTINCT | Spliterator.NONNULL));
+        assertEquals(10_000, keys.estimateSize());
+        assertFalse(table.values().spliterator().hasCharacteristics(Spliterator.DISTINCT));
+
+        Deque<Spliterator<Integer>> parts = new ArrayDeque<>(List.of(keys));
+        Set<Integer> seen = new HashSet<>();
+        int splits = 0;
+        while (!parts.isEmpty()) {
+            Spliterator<Integer> part = parts.pop();
+            Spliterator<Integer> prefix = part.estimateSize() > 100 ? part.trySplit() : null;
+            if (prefix != null) {
+                splits++;
+                assertFalse(prefix.hasCharacteristics(Spliterator.SIZED));
+                parts.push(prefix);
+                parts.push(part);
+            } else {
+                part.forEachRemaining(key -> assertTrue(seen.add(key)));
+            }
+        }
+        assertTrue(splits > 32);
+        assertEquals(expected.keySet(), seen);
+
+        assertEquals(expected.keySet(), table.keySet().parallelStream().collect(Collectors.toSet()));
+        assertEquals(expected.values().stream().mapToLong(v -> v).sum(),
+                table.values().parallelStream().mapToLong(v -> v).sum());
+        assertEquals(expected, StreamSupport.stream(table.entrySet().spliterator(), true)
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue)));
+    }
+
+    @Test
+    void iteratorsFailFast() {
+        HashTable<String, Integer> table = new HashTable<>();
+        table.put("a", 1);
+        table.put("b", 2);
+
+        Iterator<String> keys = table.keySet().iterator();
+        keys.next();
+        table.put("c", 3);
+        assertThrows(ConcurrentModificationException.class, keys::next);
+
+        Iterator<Integer> values = table.values().iterator();
+        values.next();
+        values.next();
+        values.next();
+        assertFalse(values.hasNext());
+        assertThrows(NoSuchElementException.class, values::next);
+
+        assertThrows(ConcurrentModificationException.class, () ->
+                table.keySet().spliterator().forEachRemaining(key -> table.remove("a")));
+        assertThrows(ConcurrentModificationException.class, () ->
+                table.entrySet().spliterator().tryAdvance(entry -> table.put("d", 4)));
+    }
+
+    @Test
+    void parallelBulkOperations() {
+        HashTable<Integer, Integer> table = new HashTable<>(16, 0.75f, true);
+        assertNull(table.reduceValues(1, Integer::sum));
+        assertEquals(7, table.reduceValuesToLong(1, Integer::longValue, 7, Long::sum));
+
+        long sum = 0;
+        for (int i = 0; i < 100_000; i++) {
+            table.put(i, i);
+            sum += i;
+        }
+
+        for (long threshold : new long[]{1, 10_000, Long.MAX_VALUE}) {
+            LongAdder total = new LongAdder();
+            LongAdder count = new LongAdder();
+            table.forEach(threshold, (key, value) -> {
+                assertEquals(key, value);
+                total.add(value);
+                count.increment();
+            });
+            assertEquals(sum, total.sum());
+            assertEquals(100_000, count.sum());
+
+            assertEquals(99_999, table.reduceValues(threshold, Math::max));
+            assertEquals(sum, table.reduceValues(threshold, Long::valueOf, Long::sum));
+            assertEquals(sum, table.reduceValuesToLong(threshold, Integer::longValue, 0, Long::sum));
+            assertEquals(50_000, table.reduceValues(threshold, v -> v % 2 == 0 ? 1 : null, Integer::sum));
+            assertEquals("found 77777", table.search(threshold, (key, value) -> key == 77_777 ? "found " + key : null));
+            assertNull(table.search(threshold, (key, value) -> key < 0 ? key : null));
+        }
+
+        assertThrows(ConcurrentModificationException.class, () ->
+                table.forEach(Long.MAX_VALUE, (key, value) -> table.remove(key)));
+    }
+
+    @Test
+    void cursorWalksUpdatesAndRemoves() {
+        HashTable<Integer, Integer> table = new HashTable<>(16, 0.75f, true);
+        for (int i = 0; i < 1_000; i++) {
+            table.put(i, i);
+        }
+
+        HashTable.Cursor<Integer, Integer> cursor = table.cursor();
+        assertThrows(IllegalStateException.class, cursor::key);
+        Set<Integer> seen = new HashSet<>();
+        while (cursor.advance()) {
+            assertTrue(seen.add(cursor.key()));
+            if (cursor.key() % 2 == 0) {
+                cursor.remove();
+                assertThrows(IllegalStateException.class, cursor::value);
+            } else {
+                assertEquals(cursor.key(), cursor.setValue(-cursor.value()));
+            }
+        }
+        assertFalse(cursor.advance());
+        assertEquals(1_000, seen.size());
+        assertEquals(500, table.size());
+
+        cursor.reset();
+        int count = 0;
+        while (cursor.advance()) {
+            assertEquals(-cursor.key(), cursor.value());
+            count++;
+        }
+        assertEquals(500, count);
+
+        cursor.reset();
+        cursor.advance();
+        table.put(-1, -1);
+        assertThrows(ConcurrentModificationException.class, cursor::advance);
+        cursor.reset();
+        assertTrue(cursor.advance());
+    }
+
+    @Test
+    void removeIfOnTableAndViews() {
+        HashTable<Integer, String> table = new HashTable<>();
+        for (int i = 0; i < 1_000; i++) {
+            table.put(i, "v" + i % 10);
+        }
+
+        assertTrue(table.removeIf((key, value) -> key < 100));
+        assertFalse(table.removeIf((key, value) -> key < 100));
+        assertTrue(table.keySet().removeIf(key -> key >= 900));
+        assertTrue(table.values().removeIf("v0"::equals));
+        assertTrue(table.entrySet().removeIf(entry -> entry.getKey() % 10 == 1 && entry.getValue().equals("v1")));
+        assertEquals(640, table.size());
+        for (int i = 0; i < 1_000; i++) {
+            assertEquals(i >= 100 && i < 900 && i % 10 > 1, table.containsKey(i));
+        }
+
+        assertThrows(ConcurrentModificationException.class, () ->
+                table.removeIf((key, value) -> table.put(-key - 1, value) == null));
+    }
+
+    @Test
+    void slotLoopsFailFast() {
+        HashTable<Integer, Integer> table = new HashTable<>();
+        for (int i = 0; i < 100; i++) {
+            table.put(i, i);
+        }
+        assertThrows(ConcurrentModificationException.class, () ->
+                table.forEach((key, value) -> table.remove(key)));
+        assertThrows(ConcurrentModificationException.class, () ->
+                table.replaceAll((key, value) -> {
+                    table.put(key + 1_000, value);
+                    return value;
+                }));
+        assertThrows(NullPointerException.class, () ->
+                table.replaceAll((key, value) -> null));
+    }
+
+//  All 2^bits strings of "Aa" and "BB" blocks, which share one hashCode()
+    private static List<String> collidingStrings(int bits) {
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 1 << bits; i++) {
+            StringBuilder key = new StringBuilder();
+            for (int bit = 0; bit < bits; bit++) {
+                key.append((i >>> bit & 1) == 0 ? "Aa" : "BB");
+            }
+            keys.add(key.toString());
+        }
+        return keys;
+    }
+
+    @Test
+    void tablesAreSeededIndependently() {
+        Set<List<Integer>> orders = new HashSet<>();
+        for (int n = 0; n < 4; n++) {
+            HashTable<Integer, Integer> table = new HashTable<>();
+            for (int i = 0; i < 1_000; i++) {
+                table.put(i, i);
+            }
+            orders.add(new ArrayList<>(table.keySet()));
+        }
+        assertTrue(orders.size() > 1);
+    }
+
+    @Test
+    void collidingKeysMakeTheTableReseed() {
+        List<String> keys = collidingStrings(12);
+        HashTable<String, Integer> table = new HashTable<>();
+        for (int i = 0; i < keys.size(); i++) {
+            table.put(keys.get(i), i);
+        }
+        HashTableStats stats = table.stats();
+        assertTrue(stats.keyedHashing());
+        assertEquals(1, stats.reseedCount());
+        for (int i = 0; i < keys.size(); i++) {
+            assertEquals(i, table.get(keys.get(i)));
+            assertTrue(table.probeLength(keys.get(i)) < 32);
+        }
+
+//      A batch whose own keys set off the reseed finishes with hashes taken after it
+        HashTable<String, Integer> batched = new HashTable<>();
+        batched.putAll(keys.toArray(new String[0]), keys.stream().map(String::length).toArray(Integer[]::new));
+        assertTrue(batched.stats().keyedHashing());
+        assertEquals(keys.size(), batched.size());
+        for (String key : keys) {
+            assertEquals(24, batched.get(key));
+        }
+
+//      Random keys never probe long enough to look like an attack
+        HashTable<Integer, Integer> random = new HashTable<>(16, 0.9f);
+        for (int i = 0; i < 200_000; i++) {
+            random.put(i * 31, i);
+        }
+        assertEquals(0, random.stats().reseedCount());
+    }
+
+    @Test
+    void keyedHashingKeepsEntriesDeadlinesAndSnapshots() throws IOException {
+        long[] now = {0};
+        HashTable<String, Long> table = new HashTable<>(16, null, null, () -> now[0]);
+        for (long i = 0; i < 1_000; i++) {
+            table.put("key" + i, i, Duration.ofSeconds(1 + i % 2));
+        }
+        table.useKeyedHashing();
+        assertTrue(table.stats().keyedHashing());
+        for (long i = 0; i < 1_000; i++) {
+            assertEquals(i, table.get("key" + i));
+        }
+
+//      The wheel was rehashed along with the table, so it still finds the keys it reclaims
+        now[0] += 1_500_000_000L;
+        table.cleanUp();
+        assertEquals(500, table.size());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        table.writeSnapshot(Channels.newChannel(bytes), Codec.STRING, Codec.LONG, true);
+        HashTable<String, Long> copy = HashTable.readSnapshot(
+                Channels.newChannel(new ByteArrayInputStream(bytes.toByteArray())), Codec.STRING, Codec.LONG);
+        assertTrue(copy.stats().keyedHashing());
+        assertEquals(table, copy);
+        for (long i = 1; i < 1_000; i += 2) {
+            assertEquals(i, copy.get("key" + i));
+        }
+    }
+
+    @Test
+    void hashingStrategies() {
+        HashTable<byte[], Integer> bytes = new HashTable<>(HashingStrategy.BYTE_ARRAYS);
+        bytes.put(new byte[]{1, 2, 3}, 1);
+        bytes.put(new byte[]{1, 2, 3}, 2);
+        bytes.put(new byte[0], 3);
+        assertEquals(2, bytes.size());
+        assertEquals(2, bytes.get(new byte[]{1, 2, 3}));
+        assertEquals(3, bytes.remove(new byte[0]));
+        assertNull(bytes.get(new byte[]{1, 2}));
+
+        HashTable<Object[], Integer> nested = new HashTable<>(HashingStrategy.OBJECT_ARRAYS);
+        nested.put(new Object[]{"a", new int[]{1}}, 1);
+        assertEquals(1, nested.get(new Object[]{"a", new int[]{1}}));
+
+        HashTable<String, Integer> identity = new HashTable<>(HashingStrategy.IDENTITY);
+        String key = "key";
+        identity.put(key, 1);
+        identity.put(new String(key), 2);
+        assertEquals(2, identity.size());
+        assertEquals(1, identity.get(key));
+
+        HashTable<String, Integer> caseInsensitive = new HashTable<>(HashingStrategy.CASE_INSENSITIVE);
+        caseInsensitive.put("Hello", 1);
+        caseInsensitive.merge("HELLO", 1, Integer::sum);
+        caseInsensitive.merge("hello", 1, Integer::sum);
+        caseInsensitive.put("Straße", 1);
+        assertEquals(3, caseInsensitive.get("hELLo"));
+        assertNull(caseInsensitive.get("STRASSE"));
+        assertEquals(Set.of("Hello", "Straße"), new HashSet<>(caseInsensitive.keySet()));
+
+//      A reused CharBuffer over slices of one char[] finds the String keys
+        HashTable<CharSequence, Integer> words = new HashTable<>(HashingStrategy.CHAR_SEQUENCES);
+        words.put("alpha", 1);
+        words.put("beta", 2);
+        char[] line = "alpha beta gamma".toCharArray();
+        java.nio.CharBuffer slice = java.nio.CharBuffer.wrap(line);
+        int[] found = new int[3];
+        int start = 0;
+        for (int i = 0; i < 3; i++) {
+            int end = start;
+            while (end < line.length && line[end] != ' ') {
+                end++;
+            }
+            slice.limit(end).position(start);
+            found[i] = words.getOrDefault(slice, 0);
+            start = end + 1;
+        }
+        assertArrayEquals(new int[]{1, 2, 0}, found);
+    }
+
+    @Test
+    void byteArrayKeysGetKeyedHashingAndSnapshots() throws IOException {
+        HashTable<byte[], Integer> table = new HashTable<>(HashingStrategy.BYTE_ARRAYS);
+        List<String> keys = collidingStrings(12);
+        for (int i = 0; i < keys.size(); i++) {
+            table.put(keys.get(i).getBytes(java.nio.charset.StandardCharsets.US_ASCII), i);
+        }
+        assertTrue(table.stats().keyedHashing());
+        for (int i = 0; i < keys.size(); i++) {
+            byte[] key = keys.get(i).getBytes(java.nio.charset.StandardCharsets.US_ASCII);
+            assertEquals(i, table.get(key));
+            assertTrue(table.probeLength(key) < 32);
+        }
+
+        for (boolean rawLayout : new boolean[]{false, true}) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            table.writeSnapshot(Channels.newChannel(out), Codec.BYTES, Codec.INTEGER, rawLayout);
+            HashTable<byte[], Integer> copy = HashTable.readSnapshot(Channels.newChannel(
+                    new ByteArrayInputStream(out.toByteArray())), Codec.BYTES, Codec.INTEGER, HashingStrategy.BYTE_ARRAYS);
+            assertEquals(keys.size(), copy.size());
+            for (int i = 0; i < keys.size(); i++) {
+                assertEquals(i, copy.get(keys.get(i).getBytes(java.nio.charset.StandardCharsets.US_ASCII)));
+            }
+        }
+    }
+
+    @Test
+    void bidirectionalTableIndexesValues() {
+        HashTable<Integer, Integer> table = HashTable.bidirectional(16, 0.75f);
+        Map<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random(11);
+        for (int n = 0; n < 50_000; n++) {
+            int key = random.nextInt(2_000);
+            int value = random.nextInt(4_000);
+            boolean taken = expected.containsValue(value) && !Integer.valueOf(value).equals(expected.get(key));
+            switch (random.nextInt(6)) {
+                case 0:
+                    if (taken) {
+                        assertThrows(IllegalArgumentException.class, () -> table.put(key, value));
+                    } else {
+                        assertEquals(expected.put(key, value), table.put(key, value));
+                    }
+                    break;
+                case 1:
+                    assertEquals(expected.remove(key), table.remove(key));
+                    break;
+                case 2:
+                    if (taken && expected.containsKey(key)) {
+                        assertThrows(IllegalArgumentException.class, () -> table.replace(key, value));
+                    } else {
+                        assertEquals(expected.replace(key, value), table.replace(key, value));
+                    }
+                    break;
+                case 3:
+                    if (taken) {
+                        assertThrows(IllegalArgumentException.class, () -> table.merge(key, value, (a, b) -> b));
+                    } else {
+                        assertEquals(expected.merge(key, value, (a, b) -> b), table.merge(key, value, (a, b) -> b));
+                    }
+                    break;
+                case 4:
+                    if (!taken) {
+                        assertEquals(expected.compute(key, (k, v) -> v == null ? value : null),
+                                table.compute(key, (k, v) -> v == null ? value : null));
+                    }
+                    break;
+                default:
+                    assertEquals(expected.containsValue(value), table.containsValue(value));
+                    assertEquals(expected.containsValue(value), table.values().contains(value));
+                    break;
+            }
+        }
+        assertEquals(expected, table);
+        for (Map.Entry<Integer, Integer> entry : expected.entrySet()) {
+            assertEquals(entry.getKey(), table.inverse().get(entry.getValue()));
+        }
+
+        table.removeIf((key, value) -> key % 2 == 0);
+        HashTable.Cursor<Integer, Integer> cursor = table.cursor();
+        while (cursor.advance()) {
+            if (cursor.key() % 3 == 0) {
+                cursor.remove();
+            }
+        }
+        expected.keySet().removeIf(key -> key % 2 == 0 || key % 3 == 0);
+        for (int value = 0; value < 4_000; value++) {
+            assertEquals(expected.containsValue(value), table.containsValue(value));
+        }
+        table.clear();
+        assertFalse(table.containsValue(expected.values().iterator().next()));
+
+        HashTable<String, List<Integer>> lists = HashTable.bidirectional(16, 0.75f);
+        assertThrows(IllegalStateException.class, () -> lists.upsert("a", ArrayList::new, list -> list.add(1)));
+        assertTrue(lists.isEmpty());
+    }
+
+    @Test
+    void inverseView() {
+        HashTable<String, Integer> table = HashTable.bidirectional(16, 0.75f);
+        table.put("one", 1);
+        table.put("two", 2);
+        Map<Integer, String> inverse = table.inverse();
+        assertSame(inverse, table.inverse());
+        assertEquals(Map.of(1, "one", 2, "two"), inverse);
+        assertTrue(inverse.containsKey(1));
+        assertTrue(inverse.containsValue("two"));
+
+        assertEquals("one", inverse.put(1, "uno"));
+        assertEquals(Map.of("uno", 1, "two", 2), table);
+        assertThrows(IllegalArgumentException.class, () -> inverse.put(3, "two"));
+        assertNull(inverse.put(3, "three"));
+        assertEquals("two", inverse.remove(2));
+        assertEquals(Map.of("uno", 1, "three", 3), table);
+
+        assertEquals(Set.of(1, 3), inverse.keySet());
+        assertEquals(Set.of("uno", "three"), new HashSet<>(inverse.values()));
+
+//      An expired entry that has not been reclaimed yet gives its value up
+        table.put("brief", 7, Duration.ofNanos(1));
+        while (table.containsKey("brief")) {
+            Thread.onSpinWait();
+        }
+        assertFalse(inverse.containsKey(7));
+        table.put("later", 7);
+        assertEquals("later", inverse.get(7));
+        assertThrows(IllegalStateException.class, () -> new HashTable<String, Integer>().inverse());
+    }
+}
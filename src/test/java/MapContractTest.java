@@ -0,0 +1,169 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// The Map contract every engine keeps, checked the same way for each of them. An engine's test extends this with
+// a factory for its table and adds only the cases that depend on how the engine places its entries.
+abstract class MapContractTest {
+
+    abstract <K, V> Map<K, V> create(int capacity, float loadFactor);
+
+    @Test
+    void mapOperations() {
+        Map<String, Integer> table = create(16, 0.75f);
+        HashTableTest.setTable(table);
+
+        assertEquals(5, table.size());
+        assertEquals(10, table.get("A"));
+        assertNull(table.get("GG"));
+        assertTrue(table.containsValue(50));
+        assertFalse(table.containsValue(60));
+
+        assertEquals(10, table.put("A", 11));
+        assertEquals(11, table.putIfAbsent("A", 12));
+        assertNull(table.putIfAbsent("F", 60));
+
+        assertFalse(table.remove("B", 99));
+        assertTrue(table.remove("B", 20));
+        assertFalse(table.containsKey("B"));
+        assertNull(table.remove("B"));
+
+        assertTrue(table.replace("C", 30, 31));
+        assertFalse(table.replace("C", 30, 32));
+        assertEquals(31, table.replace("C", 33));
+        assertNull(table.replace("GG", 1));
+        assertFalse(table.containsKey("GG"));
+        assertEquals(21, table.merge("C", -12, Integer::sum));
+
+        assertEquals(Map.of("A", 11, "C", 21, "D", 40, "E", 50, "F", 60), table);
+
+        assertThrows(NullPointerException.class, () ->
+                table.put(null, 1));
+        assertThrows(NullPointerException.class, () ->
+                table.put("X", null));
+        assertThrows(NullPointerException.class, () ->
+                table.get(null));
+    }
+
+    @Test
+    void computeAndMerge() {
+        Map<String, Integer> table = create(16, 0.75f);
+        HashTableTest.setTable(table);
+
+        assertEquals(10, table.computeIfAbsent("A", key -> 100));
+        assertEquals(71, table.computeIfAbsent("G", key -> (int) key.charAt(0)));
+        assertEquals(20, table.computeIfPresent("A", (key, value) -> value * 2));
+        assertNull(table.computeIfPresent("GG", (key, value) -> 1));
+
+        assertNull(table.compute("A", (key, value) -> null));
+        assertFalse(table.containsKey("A"));
+        assertEquals(1, table.compute("A", (key, value) -> value == null ? 1 : value + 1));
+
+        assertEquals(21, table.merge("B", 1, Integer::sum));
+        assertEquals(5, table.merge("H", 5, Integer::sum));
+        assertNull(table.merge("H", 5, (a, b) -> null));
+        assertFalse(table.containsKey("H"));
+    }
+
+    @Test
+    void highLoadChurnMatchesHashMap() {
+        Map<Integer, Integer> table = create(16, 0.95f);
+        Map<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random(7);
+
+        for (int i = 0; i < 200_000; i++) {
+//          Keys from a narrow range collide often and keep reusing the same slots, so removals and inserts
+//          meet every way the engine has of displacing, shifting or spilling entries
+            int key = random.nextInt(5_000) * 64;
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), table.remove(key));
+            } else {
+                assertEquals(expected.put(key, i), table.put(key, i));
+            }
+        }
+
+        assertEquals(expected.size(), table.size());
+        assertEquals(expected, table);
+        for (int i = 0; i < 5_000; i++) {
+            assertEquals(expected.get(i * 64 + 1), table.get(i * 64 + 1));
+        }
+    }
+
+    @Test
+    void iteratorRemoveVisitsEveryEntryOnce() {
+        Map<Integer, Integer> table = create(64, 0.95f);
+        for (int i = 0; i < 60; i++) {
+            table.put(i * 64, i);
+        }
+
+        Set<Integer> seen = new HashSet<>();
+        Iterator<Map.Entry<Integer, Integer>> iterator = table.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Integer, Integer> entry = iterator.next();
+            assertTrue(seen.add(entry.getKey()));
+            if (entry.getValue() % 2 == 0) {
+                iterator.remove();
+            } else {
+                entry.setValue(-entry.getValue());
+            }
+        }
+
+        assertEquals(60, seen.size());
+        assertEquals(30, table.size());
+        for (int i = 0; i < 60; i++) {
+            assertEquals(i % 2 == 0 ? null : Integer.valueOf(-i), table.get(i * 64));
+        }
+
+        table.keySet().removeIf(key -> key < 64 * 30);
+        assertEquals(15, table.size());
+    }
+
+//  Distinct keys that all have the same hashCode(), so only equals() tells them apart
+    static List<List<Integer>> collidingKeys(int count) {
+        List<List<Integer>> keys = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            keys.add(new ArrayList<Integer>(List.of(i)) {
+                @Override
+                public int hashCode() {
+                    return 42;
+                }
+            });
+        }
+        return keys;
+    }
+
+    @Test
+    void equalHashCodesStayDistinct() {
+        Map<List<Integer>, Integer> table = create(16, 0.9f);
+        List<List<Integer>> keys = collidingKeys(100);
+        for (int i = 0; i < 100; i++) {
+            table.put(keys.get(i), i);
+        }
+        for (int i = 0; i < 100; i += 3) {
+            assertEquals(i, table.remove(keys.get(i)));
+        }
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i % 3 == 0 ? null : Integer.valueOf(i), table.get(keys.get(i)));
+        }
+        assertEquals(66, table.size());
+        assertEquals(66, new ArrayList<>(table.values()).size());
+    }
+
+    @Test
+    void entrySetValueAfterRemoveDoesNotReAddTheKey() {
+        Map<String, Integer> table = create(16, 0.75f);
+        table.put("A", 1);
+        table.put("B", 2);
+        Map.Entry<String, Integer> entry = table.entrySet().iterator().next();
+        String key = entry.getKey();
+        table.remove(key);
+
+        assertEquals(entry.getValue(), entry.setValue(5));
+        assertEquals(5, entry.getValue());
+        assertFalse(table.containsKey(key));
+        assertEquals(1, table.size());
+    }
+}
@@ -0,0 +1,242 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedHashTableTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void entriesSurviveReopen() throws IOException {
+        Path file = dir.resolve("table");
+        Map<Integer, String> expected = new HashMap<>();
+        try (MappedHashTable<Integer, String> table =
+                     MappedHashTable.create(file, Codec.INTEGER, Codec.STRING, 2, 0.75f, 4096)) {
+            Random random = new Random(5);
+            for (int i = 0; i < 20_000; i++) {
+                int key = random.nextInt(8_000);
+                if (random.nextInt(4) == 0) {
+                    assertEquals(expected.remove(key), table.remove(key));
+                } else {
+                    String value = "value-" + i + "-ключ";
+                    assertEquals(expected.put(key, value), table.put(key, value));
+                }
+            }
+            assertEquals(expected, table);
+        }
+
+        try (MappedHashTable<Integer, String> table =
+                     MappedHashTable.open(file, Codec.INTEGER, Codec.STRING, false)) {
+            assertEquals(expected, table);
+            table.put(-1, "added");
+            expected.put(-1, "added");
+        }
+
+        try (MappedHashTable<Integer, String> first = MappedHashTable.open(file, Codec.INTEGER, Codec.STRING, true);
+             MappedHashTable<Integer, String> second = MappedHashTable.open(file, Codec.INTEGER, Codec.STRING, true)) {
+            assertTrue(first.isReadOnly());
+            assertEquals(expected, first);
+            assertEquals("added", second.get(-1));
+            assertThrows(UnsupportedOperationException.class, () ->
+                    first.put(1, "x"));
+            assertThrows(UnsupportedOperationException.class, () ->
+                    first.remove(1));
+        }
+    }
+
+    @Test
+    void dirtyFileIsRecoveredOnlyForWriting() throws IOException {
+        Path file = dir.resolve("table");
+        Path crashed = dir.resolve("crashed");
+        try (MappedHashTable<String, Long> table = MappedHashTable.create(file, Codec.STRING, Codec.LONG)) {
+            for (long i = 0; i < 1_000; i++) {
+                table.put("key" + i, i);
+            }
+            table.force();
+            table.remove("key0");
+            table.put("key1", -1L);
+//          A copy taken before close() looks like a file left behind by a crash
+            Files.copy(file, crashed);
+            assertThrows(IOException.class, () ->
+                    MappedHashTable.open(file, Codec.STRING, Codec.LONG, false));
+        }
+
+        assertThrows(IOException.class, () ->
+                MappedHashTable.open(crashed, Codec.STRING, Codec.LONG, true));
+        try (MappedHashTable<String, Long> table = MappedHashTable.open(crashed, Codec.STRING, Codec.LONG, false)) {
+            assertEquals(999, table.size());
+            assertNull(table.get("key0"));
+            assertEquals(-1L, table.get("key1"));
+            table.verify();
+        }
+        try (MappedHashTable<String, Long> table = MappedHashTable.open(crashed, Codec.STRING, Codec.LONG, true)) {
+            assertEquals(999, table.size());
+        }
+    }
+
+    @Test
+    void tornEntriesAreDroppedOnRecovery() throws IOException {
+        Path file = dir.resolve("table");
+        Path crashed = dir.resolve("crashed");
+        try (MappedHashTable<String, Long> table =
+                     MappedHashTable.create(file, Codec.STRING, Codec.LONG, 16, 0.75f, 4096)) {
+            table.put("a", 1L);
+            table.put("b", 2L);
+            table.force();
+            table.put("c", 3L);
+            Files.copy(file, crashed);
+        }
+
+//      The header and the index take one 4 KiB chunk each, so "a" is the first entry after them;
+//      its value follows the 12-byte entry header and the one-byte key
+        for (Path path : new Path[]{file, crashed}) {
+            try (RandomAccessFile raf = new RandomAccessFile(path.toFile(), "rw")) {
+                raf.seek(2 * 4096 + 12 + 1);
+                raf.write(0x55);
+            }
+        }
+
+        try (MappedHashTable<String, Long> table = MappedHashTable.open(file, Codec.STRING, Codec.LONG, true)) {
+            assertThrows(IOException.class, table::verify);
+            assertThrows(UncheckedIOException.class, () -> table.get("a"));
+            assertEquals(2L, table.get("b"));
+        }
+        try (MappedHashTable<String, Long> table = MappedHashTable.open(crashed, Codec.STRING, Codec.LONG, false)) {
+            assertEquals(Map.of("b", 2L, "c", 3L), table);
+        }
+    }
+
+    @Test
+    void durableEntriesAreNeverOverwritten() throws IOException {
+        Path file = dir.resolve("table");
+        try (MappedHashTable<String, Long> table =
+                     MappedHashTable.create(file, Codec.STRING, Codec.LONG, 16, 0.75f, 4096)) {
+            table.put("a", 1L);
+            table.force();
+            byte[] durable = readEntry(file);
+
+//          A value of the same length goes into a new entry, and the forced one keeps its bytes until the next force
+            table.put("a", 2L);
+            assertEquals(2L, table.get("a"));
+            assertArrayEquals(durable, readEntry(file));
+            long garbage = table.garbageBytes();
+            assertTrue(garbage > 0);
+
+//          The new entry is not durable yet, so it is overwritten in place
+            table.put("a", 3L);
+            assertEquals(garbage, table.garbageBytes());
+            assertEquals(3L, table.get("a"));
+        }
+    }
+
+//  The 21 bytes of the first entry: header, the one-byte key and the long value
+    private static byte[] readEntry(Path file) throws IOException {
+        byte[] entry = new byte[21];
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "r")) {
+            raf.seek(2 * 4096);
+            raf.readFully(entry);
+        }
+        return entry;
+    }
+
+    @Test
+    void entrySetValueAfterRemoveDoesNotReAddTheKey() throws IOException {
+        try (MappedHashTable<Integer, String> table =
+                     MappedHashTable.create(dir.resolve("table"), Codec.INTEGER, Codec.STRING, 2, 0.75f, 4096)) {
+            table.put(1, "one");
+            Map.Entry<Integer, String> entry = table.entrySet().iterator().next();
+            table.remove(1);
+
+            entry.setValue("five");
+            assertFalse(table.containsKey(1));
+            assertEquals(0, table.size());
+        }
+    }
+
+    @Test
+    void emptyTableReopens() throws IOException {
+        Path file = dir.resolve("table");
+//      The index is reserved in whole chunks, but the file only grows as far as the index is mapped
+        MappedHashTable.create(file, Codec.INTEGER, Codec.STRING).close();
+
+        try (MappedHashTable<Integer, String> table = MappedHashTable.open(file, Codec.INTEGER, Codec.STRING, true)) {
+            assertTrue(table.isEmpty());
+        }
+        try (MappedHashTable<Integer, String> table = MappedHashTable.open(file, Codec.INTEGER, Codec.STRING, false)) {
+            table.put(1, "one");
+        }
+        try (MappedHashTable<Integer, String> table = MappedHashTable.open(file, Codec.INTEGER, Codec.STRING, true)) {
+            assertEquals(Map.of(1, "one"), table);
+        }
+    }
+
+    @Test
+    void readersAndWriterExcludeEachOther() throws IOException {
+        Path file = dir.resolve("table");
+        MappedHashTable.create(file, Codec.INTEGER, Codec.STRING).close();
+
+        MappedHashTable<Integer, String> first = MappedHashTable.open(file, Codec.INTEGER, Codec.STRING, true);
+        try (MappedHashTable<Integer, String> second = MappedHashTable.open(file, Codec.INTEGER, Codec.STRING, true)) {
+            assertThrows(IOException.class, () ->
+                    MappedHashTable.open(file, Codec.INTEGER, Codec.STRING, false));
+//          The readers hold a lock on the file, which is what keeps writers of other processes out
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                assertThrows(OverlappingFileLockException.class, channel::tryLock);
+            }
+            first.close();
+            assertThrows(IOException.class, () ->
+                    MappedHashTable.open(file, Codec.INTEGER, Codec.STRING, false));
+        }
+
+        try (MappedHashTable<Integer, String> writer = MappedHashTable.open(file, Codec.INTEGER, Codec.STRING, false)) {
+            writer.put(1, "one");
+            assertThrows(IOException.class, () ->
+                    MappedHashTable.open(file, Codec.INTEGER, Codec.STRING, true));
+        }
+        try (MappedHashTable<Integer, String> reader = MappedHashTable.open(file, Codec.INTEGER, Codec.STRING, true)) {
+            assertEquals("one", reader.get(1));
+        }
+    }
+
+    @Test
+    void rejectsForeignFiles() throws IOException {
+        Path file = dir.resolve("table");
+        Files.write(file, new byte[100]);
+        assertThrows(IOException.class, () ->
+                MappedHashTable.open(file, Codec.STRING, Codec.LONG, true));
+
+        MappedHashTable.create(file, Codec.STRING, Codec.LONG).close();
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(4);
+            raf.write(2);
+        }
+        IOException version = assertThrows(IOException.class, () ->
+                MappedHashTable.open(file, Codec.STRING, Codec.LONG, true));
+        assertTrue(version.getMessage().contains("version"));
+    }
+
+    @Test
+    void singleWriter() throws IOException {
+        Path file = dir.resolve("table");
+        try (MappedHashTable<String, Long> table = MappedHashTable.create(file, Codec.STRING, Codec.LONG)) {
+            table.put("a", 1L);
+            assertThrows(IOException.class, () ->
+                    MappedHashTable.open(file, Codec.STRING, Codec.LONG, false));
+        }
+        MappedHashTable.open(file, Codec.STRING, Codec.LONG, false).close();
+    }
+}
@@ -0,0 +1,117 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NonBlockingHashTableTest extends MapContractTest {
+
+    @Override
+    <K, V> Map<K, V> create(int capacity, float loadFactor) {
+        return new NonBlockingHashTable<>(capacity, loadFactor);
+    }
+
+    @Test
+    void growthAndChurn() {
+        NonBlockingHashTable<Integer, Integer> table = new NonBlockingHashTable<>(2);
+        Map<Integer, Integer> expected = new HashMap<>();
+
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 20_000; i++) {
+                table.put(i, i + round);
+                expected.put(i, i + round);
+            }
+            for (int i = 0; i < 20_000; i += 2) {
+                table.remove(i);
+                expected.remove(i);
+            }
+        }
+
+        assertEquals(expected.size(), table.size());
+        assertEquals(expected, table);
+        assertEquals(table, expected);
+
+        table.clear();
+        assertTrue(table.isEmpty());
+        assertNull(table.get(1));
+    }
+
+    @Test
+    void concurrentMergeDuringResize() throws Exception {
+        NonBlockingHashTable<Integer, Integer> counts = new NonBlockingHashTable<>(2);
+        int threads = 8;
+        int perThread = 50_000;
+        int keys = 5_000;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int offset = t * 37;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        int key = (i + offset) % keys;
+                        counts.merge(key, 1, Integer::sum);
+                        assertNotNull(counts.get(key));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(keys, counts.size());
+        long total = 0;
+        for (int value : counts.values()) {
+            total += value;
+        }
+        assertEquals((long) threads * perThread, total);
+    }
+
+    @Test
+    void concurrentPutAndRemoveOfDisjointKeys() throws Exception {
+        NonBlockingHashTable<Integer, Integer> table = new NonBlockingHashTable<>(2);
+        int threads = 6;
+        int perThread = 20_000;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int base = t * perThread;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        table.put(base + i, i);
+                    }
+                    for (int i = 0; i < perThread; i += 2) {
+                        assertEquals(i, table.remove(base + i));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(threads * perThread / 2, table.size());
+        for (int t = 0; t < threads; t++) {
+            for (int i = 0; i < perThread; i++) {
+                Integer value = table.get(t * perThread + i);
+                if (i % 2 == 0) {
+                    assertNull(value);
+                } else {
+                    assertEquals(i, value);
+                }
+            }
+        }
+    }
+}
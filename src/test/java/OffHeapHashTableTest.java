@@ -0,0 +1,171 @@
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffHeapHashTableTest {
+
+    @Test
+    void putGetRemove() {
+        OffHeapHashTable<String, Long> table = new OffHeapHashTable<>(Codec.STRING, Codec.LONG);
+
+        assertNull(table.put("A", 10L));
+        assertNull(table.put("B", 20L));
+        assertEquals(10L, table.put("A", 11L));
+
+        assertEquals(11L, table.get("A"));
+        assertEquals(20L, table.get("B"));
+        assertNull(table.get("C"));
+        assertTrue(table.containsKey("B"));
+
+        assertEquals(20L, table.remove("B"));
+        assertNull(table.remove("B"));
+        assertEquals(1, table.size());
+
+        assertThrows(NullPointerException.class, () ->
+                table.put(null, 1L));
+        assertThrows(NullPointerException.class, () ->
+                table.put("X", null));
+    }
+
+    @Test
+    void variableLengthValuesAndGrowth() {
+        OffHeapHashTable<Integer, String> table =
+                new OffHeapHashTable<>(Codec.INTEGER, Codec.STRING, 2, 0.75f, 256);
+        Map<Integer, String> expected = new HashMap<>();
+
+        for (int i = 0; i < 20_000; i++) {
+            String value = "value-" + i + "-ключ";
+            table.put(i, value);
+            expected.put(i, value);
+        }
+        for (int i = 0; i < 20_000; i += 3) {
+            table.put(i, "x");
+            expected.put(i, "x");
+        }
+        for (int i = 1; i < 20_000; i += 3) {
+            table.remove(i);
+            expected.remove(i);
+        }
+
+        assertEquals(expected, table);
+        assertEquals(table, expected);
+    }
+
+    @Test
+    void updateChurnKeepsTheArenaBounded() {
+        OffHeapHashTable<Integer, String> table =
+                new OffHeapHashTable<>(Codec.INTEGER, Codec.STRING, 256, 0.75f, 256);
+        for (int i = 0; i < 100; i++) {
+            table.put(i, "v");
+        }
+        long bound = 0;
+//      Values alternate in length, so every put discards the entry and appends a new one without a rehash
+        for (int round = 0; round < 1_000; round++) {
+            for (int i = 0; i < 100; i++) {
+                table.put(i, round % 2 == 0 ? "long value " + round : "v" + round % 10);
+            }
+            if (round == 10) {
+                bound = 2 * table.offHeapBytes();
+            }
+            assertTrue(round <= 10 || table.offHeapBytes() <= bound, "arena grew to " + table.offHeapBytes());
+        }
+        for (int i = 0; i < 100; i++) {
+            assertEquals("v9", table.get(i));
+        }
+    }
+
+    @Test
+    void entriesLargerThanAChunk() {
+        OffHeapHashTable<String, byte[]> table =
+                new OffHeapHashTable<>(Codec.STRING, Codec.BYTES, 16, 0.75f, 64);
+
+        byte[] big = new byte[1000];
+        big[999] = 7;
+        table.put("big", big);
+        table.put("small", new byte[]{1});
+
+        assertArrayEquals(big, table.get("big"));
+        assertArrayEquals(new byte[]{1}, table.get("small"));
+    }
+
+    @Test
+    void getValueBuffer() {
+        OffHeapHashTable<String, Long> table = new OffHeapHashTable<>(Codec.STRING, Codec.LONG);
+        table.put("A", 42L);
+
+        ByteBuffer value = table.getValueBuffer("A");
+        assertEquals(Long.BYTES, value.remaining());
+        assertEquals(42L, value.getLong(0));
+        assertTrue(value.isReadOnly());
+
+        assertNull(table.getValueBuffer("B"));
+    }
+
+    @Test
+    void iteratorRemoveAndSetValue() {
+        OffHeapHashTable<Integer, Integer> table = new OffHeapHashTable<>(Codec.INTEGER, Codec.INTEGER);
+        for (int i = 0; i < 100; i++) {
+            table.put(i, i);
+        }
+
+        Iterator<Map.Entry<Integer, Integer>> iterator = table.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Integer, Integer> entry = iterator.next();
+            if (entry.getKey() % 2 == 0) {
+                iterator.remove();
+            } else {
+                entry.setValue(-entry.getValue());
+            }
+        }
+
+        assertEquals(50, table.size());
+        assertNull(table.get(10));
+        assertEquals(-11, table.get(11));
+    }
+
+    @Test
+    void entrySetValueAfterRemoveDoesNotReAddTheKey() {
+        OffHeapHashTable<Integer, Integer> table = new OffHeapHashTable<>(Codec.INTEGER, Codec.INTEGER);
+        table.put(1, 1);
+        Map.Entry<Integer, Integer> entry = table.entrySet().iterator().next();
+        table.remove(1);
+
+        entry.setValue(5);
+        assertFalse(table.containsKey(1));
+        assertEquals(0, table.size());
+    }
+
+    @Test
+    void byteArrayKeysMatchByContent() {
+        OffHeapHashTable<byte[], Integer> table = new OffHeapHashTable<>(Codec.BYTES, Codec.INTEGER);
+        for (int i = 0; i < 1_000; i++) {
+            assertNull(table.put(new byte[]{(byte) i, (byte) (i >> 8), 7}, i));
+        }
+
+        assertEquals(7, table.put(new byte[]{7, 0, 7}, -7));
+        assertEquals(1_000, table.size());
+        for (int i = 0; i < 1_000; i++) {
+            byte[] copy = {(byte) i, (byte) (i >> 8), 7};
+            assertEquals(i == 7 ? -7 : i, table.get(copy));
+        }
+        assertNull(table.get(new byte[]{7, 0}));
+        assertEquals(-7, table.remove(new byte[]{7, 0, 7}));
+        assertFalse(table.containsKey(new byte[]{7, 0, 7}));
+    }
+
+    @Test
+    void close() {
+        OffHeapHashTable<Integer, Integer> table = new OffHeapHashTable<>(Codec.INTEGER, Codec.INTEGER);
+        table.put(1, 1);
+        assertTrue(table.offHeapBytes() > 0);
+
+        table.close();
+        assertThrows(IllegalStateException.class, () ->
+                table.get(1));
+    }
+}
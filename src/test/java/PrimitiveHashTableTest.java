@@ -0,0 +1,104 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrimitiveHashTableTest {
+
+    @Test
+    void longLongPutGetRemove() {
+        LongLongHashTable table = new LongLongHashTable(4, 0.75f, -1L);
+
+        assertEquals(-1L, table.get(7L));
+        assertEquals(-1L, table.put(7L, 70L));
+        assertEquals(70L, table.put(7L, 71L));
+        assertEquals(71L, table.get(7L));
+        assertTrue(table.containsKey(7L));
+
+        assertEquals(71L, table.remove(7L));
+        assertEquals(-1L, table.remove(7L));
+        assertFalse(table.containsKey(7L));
+        assertTrue(table.isEmpty());
+    }
+
+    @Test
+    void longLongGrowsAndKeepsEveryKey() {
+        LongLongHashTable table = new LongLongHashTable();
+
+        for (long i = -50_000; i < 50_000; i++) {
+            table.put(i << 32, i);
+        }
+        for (long i = -50_000; i < 50_000; i += 2) {
+            table.remove(i << 32);
+        }
+
+        assertEquals(50_000, table.size());
+        for (long i = -49_999; i < 50_000; i += 2) {
+            assertEquals(i, table.get(i << 32));
+        }
+        assertEquals(0L, table.get(-50_000L << 32));
+    }
+
+    @Test
+    void addTo() {
+        LongLongHashTable table = new LongLongHashTable();
+
+        assertEquals(0L, table.addTo(1L, 5L));
+        assertEquals(5L, table.addTo(1L, 5L));
+        assertEquals(10L, table.get(1L));
+
+        IntIntHashTable counts = new IntIntHashTable(16, 0.75f, -1);
+        for (int i = 0; i < 1000; i++) {
+            counts.addTo(i % 10, 1);
+        }
+        assertEquals(10, counts.size());
+        assertEquals(100, counts.get(3));
+    }
+
+    @Test
+    void forEachEntry() {
+        IntLongHashTable table = new IntLongHashTable();
+        for (int i = 0; i < 100; i++) {
+            table.put(i, i * 10L);
+        }
+
+        Map<Integer, Long> seen = new HashMap<>();
+        table.forEachEntry(seen::put);
+
+        assertEquals(100, seen.size());
+        assertEquals(990L, seen.get(99));
+
+        assertThrows(NullPointerException.class, () ->
+                table.forEachEntry(null));
+    }
+
+    @Test
+    void intObject() {
+        IntObjectHashTable<String> table = new IntObjectHashTable<>();
+
+        assertNull(table.put(1, "one"));
+        assertEquals("one", table.put(1, "uno"));
+        assertEquals("uno", table.get(1));
+        assertEquals("none", table.getOrDefault(2, "none"));
+
+        table.clear();
+        assertTrue(table.isEmpty());
+        assertNull(table.get(1));
+    }
+
+    @Test
+    void objectInt() {
+        ObjectIntHashTable<String> table = new ObjectIntHashTable<>(16, 0.75f, Integer.MIN_VALUE);
+
+        assertEquals(Integer.MIN_VALUE, table.get("A"));
+        table.addTo("A", 3);
+        table.addTo("A", 4);
+        assertEquals(7, table.get("A"));
+        assertEquals(Integer.MIN_VALUE, table.noValue());
+
+        assertThrows(NullPointerException.class, () ->
+                table.put(null, 1));
+    }
+}
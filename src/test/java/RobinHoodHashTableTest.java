@@ -0,0 +1,27 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RobinHoodHashTableTest extends MapContractTest {
+
+    @Override
+    <K, V> Map<K, V> create(int capacity, float loadFactor) {
+        return new RobinHoodHashTable<>(capacity, loadFactor);
+    }
+
+    @Test
+    void missesStopEarlyAtHighLoad() {
+        RobinHoodHashTable<Integer, Integer> table = new RobinHoodHashTable<>(1 << 16, 0.95f);
+        for (int i = 0; i < 60_000; i++) {
+            table.put(i, i);
+        }
+
+        long total = 0;
+        for (int i = 0; i < 10_000; i++) {
+            total += table.probeLength(-i - 1);
+        }
+        assertTrue(total < 10_000 * 16L, "mean miss probe " + total / 10_000.0);
+    }
+}
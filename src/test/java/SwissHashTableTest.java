@@ -0,0 +1,40 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SwissHashTableTest extends MapContractTest {
+
+    @Override
+    <K, V> Map<K, V> create(int capacity, float loadFactor) {
+        return new SwissHashTable<>(capacity, loadFactor);
+    }
+
+    @Test
+    void equalHashesSpillIntoFurtherGroups() {
+        SwissHashTable<List<Integer>, Integer> table = new SwissHashTable<>(8, 0.875f);
+        List<List<Integer>> keys = collidingKeys(100);
+        for (int i = 0; i < 100; i++) {
+            table.put(keys.get(i), i);
+        }
+
+//      All keys share a home group of eight slots, so the rest are only found in groups further along
+        int inHomeGroup = 0;
+        for (List<Integer> key : keys) {
+            if (table.probeGroups(key) == 1) {
+                inHomeGroup++;
+            }
+        }
+        assertTrue(inHomeGroup <= 8, String.valueOf(inHomeGroup));
+
+//      Removals in full groups leave DELETED markers, which keep the keys behind them reachable
+        for (int i = 0; i < 100; i += 3) {
+            table.remove(keys.get(i));
+        }
+        for (int i = 1; i < 100; i += 3) {
+            assertEquals(i, table.get(keys.get(i)));
+        }
+        assertTrue(table.probeGroups(keys.get(99)) > 1);
+    }
+}